@@ -26,48 +26,101 @@ package ikvm.internal;
 import cli.System.GC;
 import cli.System.WeakReference;
 
+/**
+ * An identity keyed map with weak keys. It is an open addressed table,
+ * probed linearly from the identity hash code of the key. Entries whose
+ * key has been removed or collected stay in the table as tombstones
+ * until a put reuses their slot or the table is rebuilt.
+ *
+ * get and containsKey don't lock, the table is replaced as a whole when
+ * it is rebuilt and entries are only ever replaced as a whole, so a
+ * reader always sees a consistent entry. put and remove are synchronized.
+ */
 @ikvm.lang.Internal
 public final class WeakIdentityMap
 {
-    private WeakReference[] keys = new WeakReference[16];
-    private Object[] values = new Object[keys.length];
+    private static final int MIN_CAPACITY = 16;
+    private volatile Entry[] table = new Entry[MIN_CAPACITY];
+    // the number of non-null slots, including tombstones
+    private int used;
 
-    public WeakIdentityMap()
+    private static final class Entry
     {
-        for (int i = 0; i < keys.length; i++)
+        final int hash;
+        final WeakReference key;
+        volatile Object value;
+
+        Entry(int hash, Object key, Object value)
         {
-            keys[i] = new WeakReference(null, true);
+            this.hash = hash;
+            this.key = new WeakReference(key, true);
             // NOTE we suppress finalization, to make sure the WeakReference continues to work
             // while the AppDomain is finalizing for unload (note that for this to work,
             // the code that instantiates us also has to call SuppressFinalize on us.)
-            GC.SuppressFinalize(keys[i]);
+            GC.SuppressFinalize(this.key);
+            this.value = value;
+        }
+
+        boolean isDead()
+        {
+            return key.get_Target() == null;
+        }
+
+        // called when the entry is dropped from the table, to release the GC handle
+        void free()
+        {
+            key.set_Target(null);
+            GC.ReRegisterForFinalize(key);
         }
     }
 
     protected void finalize()
     {
-        for (int i = 0; i < keys.length; i++)
+        for (Entry e : table)
         {
-            if (keys[i] != null)
+            if (e != null)
             {
-                GC.ReRegisterForFinalize(keys[i]);
+                GC.ReRegisterForFinalize(e.key);
             }
         }
     }
 
-    public synchronized Object remove(Object key)
+    private static int hash(Object key)
+    {
+        int h = System.identityHashCode(key);
+        // spread the bits, linear probing only uses the low bits
+        return h ^ (h >>> 16);
+    }
+
+    private static Entry find(Entry[] tab, Object key, int hash)
     {
-        for (int i = 0; i < keys.length; i++)
+        int mask = tab.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask)
         {
-            if (keys[i].get_Target() == key)
+            Entry e = tab[i];
+            if (e == null)
+            {
+                return null;
+            }
+            if (e.hash == hash && e.key.get_Target() == key)
             {
-		Object value = values[i];
-		keys[i].set_Target(null);
-		values[i] = null;
-                return value;
+                return e;
             }
         }
-        return null;
+    }
+
+    public synchronized Object remove(Object key)
+    {
+        Entry e = find(table, key, hash(key));
+        if (e == null)
+        {
+            return null;
+        }
+        // the entry stays behind as a tombstone
+        Object value = e.value;
+        e.key.set_Target(null);
+        e.value = null;
+        return value;
     }
 
     // Note that null values are supported, null keys are not
@@ -75,81 +128,92 @@ public final class WeakIdentityMap
     {
         if (key == null)
             throw new NullPointerException();
-        putImpl(key, value, true);
-    }
-
-    private void putImpl(Object key, Object value, boolean tryGC)
-    {
-        int emptySlot = -1;
-        int keySlot = -1;
-        for (int i = 0; i < keys.length; i++)
+        int hash = hash(key);
+        Entry[] tab = table;
+        Entry e = find(tab, key, hash);
+        if (e != null)
         {
-            Object k = keys[i].get_Target();
-            if (k == null)
+            e.value = value;
+            return;
+        }
+        int mask = tab.length - 1;
+        int i = hash & mask;
+        for (;;)
+        {
+            Entry old = tab[i];
+            if (old == null)
             {
-                emptySlot = i;
-                values[i] = null;
+                if ((used + 1) * 4 > tab.length * 3)
+                {
+                    tab = rebuild();
+                    mask = tab.length - 1;
+                    i = hash & mask;
+                    continue;
+                }
+                used++;
+                break;
             }
-            else if (k == key)
+            if (old.isDead())
             {
-                keySlot = i;
+                // reclaim the slot of a removed or collected key
+                old.free();
+                break;
             }
+            i = (i + 1) & mask;
         }
-        if (keySlot != -1)
+        tab[i] = new Entry(hash, key, value);
+    }
+
+    // copies the live entries to a new table, sized so it is at most half full
+    private Entry[] rebuild()
+    {
+        Entry[] tab = table;
+        int live = 0;
+        for (Entry e : tab)
         {
-            values[keySlot] = value;
+            if (e != null && !e.isDead())
+            {
+                live++;
+            }
         }
-        else if (emptySlot != -1)
+        int capacity = MIN_CAPACITY;
+        while (capacity < (live + 1) * 2)
         {
-            keys[emptySlot].set_Target(key);
-            values[emptySlot] = value;
+            capacity *= 2;
         }
-        else
+        Entry[] newtab = new Entry[capacity];
+        int mask = capacity - 1;
+        for (Entry e : tab)
         {
-            if (tryGC)
+            if (e == null)
             {
-                GC.Collect(0);
-                putImpl(key, value, false);
-                return;
+                continue;
             }
-            int len = keys.length;
-            WeakReference[] newkeys = new WeakReference[len * 2];
-            Object[] newvalues = new Object[newkeys.length];
-            cli.System.Array.Copy((cli.System.Array)(Object)keys, (cli.System.Array)(Object)newkeys, len);
-            cli.System.Array.Copy((cli.System.Array)(Object)values, (cli.System.Array)(Object)newvalues, len);
-            keys = newkeys;
-            values = newvalues;
-            for (int i = len; i < keys.length; i++)
+            if (e.isDead())
             {
-                keys[i] = new WeakReference(null, true);
-                GC.SuppressFinalize(keys[i]);
+                e.free();
+                continue;
             }
-            keys[len].set_Target(key);
-            values[len] = value;
+            int i = e.hash & mask;
+            while (newtab[i] != null)
+            {
+                i = (i + 1) & mask;
+            }
+            newtab[i] = e;
         }
+        used = live;
+        table = newtab;
+        return newtab;
     }
 
-    public synchronized Object get(Object key)
+    public Object get(Object key)
     {
-        for (int i = 0; i < keys.length; i++)
-        {
-            if (keys[i].get_Target() == key)
-            {
-                return values[i];
-            }
-        }
-        return null;
+        Entry e = find(table, key, hash(key));
+        return e == null ? null : e.value;
     }
 
-    public synchronized boolean containsKey(Object key)
+    public boolean containsKey(Object key)
     {
-        for (int i = 0; i < keys.length; i++)
-        {
-            if (keys[i].get_Target() == key)
-            {
-                return true;
-            }
-        }
-        return false;
+        return find(table, key, hash(key)) != null;
     }
 }
@@ -0,0 +1,456 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+
+*/
+
+package ikvm.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import sun.nio.ch.DirectBuffer;
+import sun.nio.ch.FileChannelImpl;
+
+/**
+ * Maps a file of any size through a pool of fixed size windows.
+ * A MappedByteBuffer can't be larger than 2 GB, and mapping a whole
+ * 100 GB file would exhaust the address space of a 32 bit process anyway,
+ * so the file is mapped on demand in windows aligned to the window size.
+ * When the mapped windows would exceed the given limit, the least recently
+ * used windows are unmapped. Windows that are still being accessed by
+ * another thread are unmapped when that access completes.
+ *
+ * The windows are reported by the "mapped" BufferPool, see
+ * FileChannelImpl.MappedBufferPool.
+ */
+public final class MappedFile implements Closeable
+{
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_MAX_MAPPED_BYTES = 1024L * 1024 * 1024;
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final int windowSize;
+    private final long maxMappedBytes;
+    private final ConcurrentHashMap<Long, Window> windows = new ConcurrentHashMap<Long, Window>();
+    private final AtomicLong clock = new AtomicLong();
+    // protected by windows lock
+    private long mappedBytes;
+    private volatile int advice = FileChannelImpl.ADVICE_NORMAL;
+    private volatile boolean closed;
+
+    public MappedFile(FileChannel channel, FileChannel.MapMode mode)
+    {
+        this(channel, mode, DEFAULT_WINDOW_SIZE, DEFAULT_MAX_MAPPED_BYTES);
+    }
+
+    /**
+     * @param channel the channel of the file, it must stay open while the file is mapped
+     * @param mode the mode the windows are mapped with
+     * @param windowSize the size of each window, a multiple of 64 KB (the Windows allocation granularity)
+     * @param maxMappedBytes the number of bytes that may be mapped before windows are unmapped
+     */
+    public MappedFile(FileChannel channel, FileChannel.MapMode mode, int windowSize, long maxMappedBytes)
+    {
+        if (channel == null || mode == null)
+        {
+            throw new NullPointerException();
+        }
+        if (windowSize <= 0 || (windowSize & 0xFFFF) != 0)
+        {
+            throw new IllegalArgumentException("invalid window size: " + windowSize);
+        }
+        if (maxMappedBytes < windowSize)
+        {
+            throw new IllegalArgumentException("maxMappedBytes smaller than window size");
+        }
+        this.channel = channel;
+        this.mode = mode;
+        this.windowSize = windowSize;
+        this.maxMappedBytes = maxMappedBytes;
+    }
+
+    public long size() throws IOException
+    {
+        return channel.size();
+    }
+
+    public byte get(long position) throws IOException
+    {
+        Window w = acquire(position, 1);
+        try
+        {
+            return w.buf.get((int)(position - w.start));
+        }
+        finally
+        {
+            w.release();
+        }
+    }
+
+    public void put(long position, byte b) throws IOException
+    {
+        Window w = acquire(position, 1);
+        try
+        {
+            w.buf.put((int)(position - w.start), b);
+        }
+        finally
+        {
+            w.release();
+        }
+    }
+
+    /**
+     * Reads a big endian int, which may straddle two windows.
+     */
+    public int getInt(long position) throws IOException
+    {
+        if (windowOffset(position) <= windowSize - 4)
+        {
+            Window w = acquire(position, 4);
+            try
+            {
+                return w.buf.getInt((int)(position - w.start));
+            }
+            finally
+            {
+                w.release();
+            }
+        }
+        byte[] b = new byte[4];
+        get(position, b, 0, 4);
+        return ByteBuffer.wrap(b).getInt();
+    }
+
+    /**
+     * Reads a big endian long, which may straddle two windows.
+     */
+    public long getLong(long position) throws IOException
+    {
+        if (windowOffset(position) <= windowSize - 8)
+        {
+            Window w = acquire(position, 8);
+            try
+            {
+                return w.buf.getLong((int)(position - w.start));
+            }
+            finally
+            {
+                w.release();
+            }
+        }
+        byte[] b = new byte[8];
+        get(position, b, 0, 8);
+        return ByteBuffer.wrap(b).getLong();
+    }
+
+    public void get(long position, byte[] dst, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || dst.length - off < len)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0)
+        {
+            int n = Math.min(len, windowSize - windowOffset(position));
+            Window w = acquire(position, n);
+            try
+            {
+                ByteBuffer bb = w.buf.duplicate();
+                bb.position((int)(position - w.start));
+                bb.get(dst, off, n);
+            }
+            finally
+            {
+                w.release();
+            }
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void put(long position, byte[] src, int off, int len) throws IOException
+    {
+        if (off < 0 || len < 0 || src.length - off < len)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0)
+        {
+            int n = Math.min(len, windowSize - windowOffset(position));
+            Window w = acquire(position, n);
+            try
+            {
+                ByteBuffer bb = w.buf.duplicate();
+                bb.position((int)(position - w.start));
+                bb.put(src, off, n);
+            }
+            finally
+            {
+                w.release();
+            }
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Sets the access pattern hint (one of the FileChannelImpl.ADVICE_
+     * constants) of the windows that are mapped and those that will be
+     * mapped.
+     */
+    public void advise(int advice)
+    {
+        if (advice < FileChannelImpl.ADVICE_NORMAL || advice > FileChannelImpl.ADVICE_WILLNEED)
+        {
+            throw new IllegalArgumentException("invalid advice: " + advice);
+        }
+        this.advice = advice;
+        for (Window w : windows.values())
+        {
+            if (w.tryRetain())
+            {
+                try
+                {
+                    FileChannelImpl.advise(w.buf, advice);
+                }
+                finally
+                {
+                    w.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the windows covering the given range and asks the OS to read
+     * them in ahead of their use.
+     */
+    public void prefetch(long position, long length) throws IOException
+    {
+        long end = Math.min(position + length, channel.size());
+        while (position < end)
+        {
+            int n = (int)Math.min(end - position, windowSize - windowOffset(position));
+            Window w = acquire(position, n);
+            try
+            {
+                FileChannelImpl.advise(w.buf, FileChannelImpl.ADVICE_WILLNEED);
+            }
+            finally
+            {
+                w.release();
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Forces the changes made through writable windows to the file.
+     */
+    public void force()
+    {
+        for (Window w : windows.values())
+        {
+            if (w.tryRetain())
+            {
+                try
+                {
+                    w.buf.force();
+                }
+                finally
+                {
+                    w.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unmaps all windows, it doesn't close the channel.
+     */
+    public void close()
+    {
+        synchronized (windows)
+        {
+            closed = true;
+            for (Window w : windows.values())
+            {
+                unmap(w);
+            }
+        }
+    }
+
+    private int windowOffset(long position)
+    {
+        return (int)(position % windowSize);
+    }
+
+    private Window acquire(long position, int length) throws IOException
+    {
+        if (position < 0)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        long start = position - windowOffset(position);
+        for (;;)
+        {
+            if (closed)
+            {
+                throw new ClosedChannelException();
+            }
+            Window w = windows.get(start);
+            if (w != null && w.tryRetain())
+            {
+                if (position + length <= w.start + w.buf.capacity())
+                {
+                    w.lastUse = clock.incrementAndGet();
+                    FileChannelImpl.MappedBufferPool.windowHit();
+                    return w;
+                }
+                // the file has grown since the window was mapped
+                w.release();
+                synchronized (windows)
+                {
+                    if (windows.get(start) == w)
+                    {
+                        unmap(w);
+                    }
+                }
+                continue;
+            }
+            synchronized (windows)
+            {
+                if (closed || windows.get(start) != w)
+                {
+                    continue;
+                }
+                return map(start, position + length);
+            }
+        }
+    }
+
+    // called with the windows lock held
+    private Window map(long start, long end) throws IOException
+    {
+        long size = channel.size();
+        if (mode == FileChannel.MapMode.READ_ONLY && end > size)
+        {
+            throw new BufferUnderflowException();
+        }
+        int length = (int)Math.min(windowSize, Math.max(size, end) - start);
+        while (mappedBytes + length > maxMappedBytes && evict())
+        {
+        }
+        MappedByteBuffer buf = channel.map(mode, start, length);
+        int advice = this.advice;
+        if (advice != FileChannelImpl.ADVICE_NORMAL)
+        {
+            FileChannelImpl.advise(buf, advice);
+        }
+        Window w = new Window(start, buf);
+        w.lastUse = clock.incrementAndGet();
+        // one reference for the pool and one for the caller
+        w.refs.incrementAndGet();
+        windows.put(start, w);
+        mappedBytes += length;
+        FileChannelImpl.MappedBufferPool.windowMapped(length);
+        return w;
+    }
+
+    // called with the windows lock held
+    private boolean evict()
+    {
+        Window lru = null;
+        for (Window w : windows.values())
+        {
+            if (lru == null || w.lastUse < lru.lastUse)
+            {
+                lru = w;
+            }
+        }
+        if (lru == null)
+        {
+            return false;
+        }
+        unmap(lru);
+        return true;
+    }
+
+    // called with the windows lock held
+    private void unmap(Window w)
+    {
+        windows.remove(w.start, w);
+        mappedBytes -= w.buf.capacity();
+        // drop the pool's reference, the last user does the actual unmapping
+        w.release();
+    }
+
+    private static final class Window
+    {
+        final long start;
+        final MappedByteBuffer buf;
+        final AtomicInteger refs = new AtomicInteger(1);
+        volatile long lastUse;
+
+        Window(long start, MappedByteBuffer buf)
+        {
+            this.start = start;
+            this.buf = buf;
+        }
+
+        boolean tryRetain()
+        {
+            for (;;)
+            {
+                int n = refs.get();
+                if (n == 0)
+                {
+                    return false;
+                }
+                if (refs.compareAndSet(n, n + 1))
+                {
+                    return true;
+                }
+            }
+        }
+
+        void release()
+        {
+            if (refs.decrementAndGet() == 0)
+            {
+                int size = buf.capacity();
+                ((DirectBuffer)buf).cleaner().clean();
+                FileChannelImpl.MappedBufferPool.windowUnmapped(size);
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+
+*/
+
+package ikvm.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream that deflates on all cores, in the manner of pigz.
+ * The input is cut into blocks that are deflated independently on a
+ * ForkJoinPool, each using the last 32 KB of the previous block as its
+ * dictionary. Every block but the last ends with a sync flush, so the
+ * compressed blocks can simply be concatenated, and the block checksums
+ * are merged with CRC32.combine or Adler32.combine. The result is a
+ * single gzip (like GZIPOutputStream) or zlib (like DeflaterOutputStream)
+ * stream that any inflater can read.
+ *
+ * Compression is slightly worse than a single Deflater, because matches
+ * can't reach further back than the previous block and every block
+ * restarts its Huffman trees.
+ */
+public final class ParallelDeflaterOutputStream extends FilterOutputStream
+{
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private final boolean gzip;
+    private final int level;
+    private final int blockSize;
+    private final ForkJoinPool pool;
+    private final int maxPending;
+    private final ArrayDeque<Block> pending = new ArrayDeque<Block>();
+    private byte[] buf;
+    private int count;
+    private byte[] prev;
+    private int prevLength;
+    private long checksum;
+    private long totalIn;
+    private boolean headerWritten;
+    private boolean finished;
+    private boolean closed;
+
+    public ParallelDeflaterOutputStream(OutputStream out, boolean gzip)
+    {
+        this(out, gzip, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param out the stream the compressed data is written to
+     * @param gzip true to write the gzip format, false to write the zlib format
+     * @param level the compression level, as for Deflater
+     * @param blockSize the number of input bytes deflated by each task
+     * @param pool the pool the blocks are deflated on
+     */
+    public ParallelDeflaterOutputStream(OutputStream out, boolean gzip, int level, int blockSize, ForkJoinPool pool)
+    {
+        super(out);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+        {
+            throw new IllegalArgumentException("invalid level: " + level);
+        }
+        if (blockSize <= 0)
+        {
+            throw new IllegalArgumentException("invalid block size: " + blockSize);
+        }
+        if (pool == null)
+        {
+            throw new NullPointerException();
+        }
+        this.gzip = gzip;
+        this.level = level == Deflater.DEFAULT_COMPRESSION ? 6 : level;
+        this.blockSize = blockSize;
+        this.pool = pool;
+        // enough blocks in flight to keep every worker busy while we write
+        this.maxPending = 2 * pool.getParallelism();
+        this.buf = new byte[blockSize];
+        this.checksum = gzip ? 0 : 1;
+    }
+
+    public void write(int b) throws IOException
+    {
+        ensureOpen();
+        buf[count++] = (byte)b;
+        if (count == blockSize)
+        {
+            submit(false);
+        }
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        ensureOpen();
+        if (off < 0 || len < 0 || b.length - off < len)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0)
+        {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize)
+            {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Deflates the buffered input as a (short) block of its own and writes
+     * out all blocks, so everything written so far can be inflated.
+     */
+    public void flush() throws IOException
+    {
+        ensureOpen();
+        if (count > 0)
+        {
+            submit(false);
+        }
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Writes the remaining compressed data and the trailer, without closing
+     * the underlying stream.
+     */
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+        ensureOpen();
+        submit(true);
+        drain();
+        if (gzip)
+        {
+            writeIntLE((int)checksum);
+            writeIntLE((int)totalIn);
+        }
+        else
+        {
+            writeIntBE((int)checksum);
+        }
+        finished = true;
+        buf = null;
+        prev = null;
+    }
+
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            try
+            {
+                finish();
+            }
+            finally
+            {
+                closed = true;
+                out.close();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (closed || finished)
+        {
+            throw new IOException(closed ? "Stream closed" : "write beyond end of stream");
+        }
+    }
+
+    private void submit(boolean last) throws IOException
+    {
+        if (!headerWritten)
+        {
+            writeHeader();
+            headerWritten = true;
+        }
+        Block block = new Block(buf, count, prev, prevLength, level, gzip, last);
+        pool.execute(block);
+        pending.addLast(block);
+        // the block keeps its buffer, so it can serve as the next block's dictionary
+        prev = buf;
+        prevLength = count;
+        buf = last ? null : new byte[blockSize];
+        count = 0;
+        while (pending.size() > maxPending)
+        {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void drain() throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void writeBlock(Block block) throws IOException
+    {
+        block.join();
+        out.write(block.output, 0, block.outputLength);
+        checksum = gzip
+            ? CRC32.combine(checksum, block.checksum, block.length)
+            : Adler32.combine(checksum, block.checksum, block.length);
+        totalIn += block.length;
+    }
+
+    private void writeHeader() throws IOException
+    {
+        if (gzip)
+        {
+            out.write(GZIP_HEADER);
+        }
+        else
+        {
+            // the same header Deflater writes, the dictionaries are internal to the stream
+            int header = (Deflater.DEFLATED + (7 << 4)) << 8;
+            int levelFlags = (level - 1) >> 1;
+            if (levelFlags < 0 || levelFlags > 3)
+            {
+                levelFlags = 3;
+            }
+            header |= levelFlags << 6;
+            header += 31 - (header % 31);
+            out.write(header >> 8);
+            out.write(header);
+        }
+    }
+
+    private void writeIntLE(int i) throws IOException
+    {
+        out.write(i);
+        out.write(i >> 8);
+        out.write(i >> 16);
+        out.write(i >> 24);
+    }
+
+    private void writeIntBE(int i) throws IOException
+    {
+        out.write(i >> 24);
+        out.write(i >> 16);
+        out.write(i >> 8);
+        out.write(i);
+    }
+
+    private static final class Block extends RecursiveTask<Void>
+    {
+        private final byte[] data;
+        private final int length;
+        private final byte[] dict;
+        private final int dictLength;
+        private final int level;
+        private final boolean gzip;
+        private final boolean last;
+        byte[] output;
+        int outputLength;
+        long checksum;
+
+        Block(byte[] data, int length, byte[] dict, int dictLength, int level, boolean gzip, boolean last)
+        {
+            this.data = data;
+            this.length = length;
+            this.dict = dict;
+            this.dictLength = dictLength;
+            this.level = level;
+            this.gzip = gzip;
+            this.last = last;
+        }
+
+        protected Void compute()
+        {
+            Deflater def = new Deflater(level, true);
+            try
+            {
+                if (dictLength > 0)
+                {
+                    int n = Math.min(dictLength, DICTIONARY_SIZE);
+                    def.setDictionary(dict, dictLength - n, n);
+                }
+                def.setInput(data, 0, length);
+                if (last)
+                {
+                    def.finish();
+                }
+                // large enough for stored blocks, so normally a single deflate call does it
+                output = new byte[length + (length >> 10) + 64];
+                for (;;)
+                {
+                    outputLength += def.deflate(output, outputLength, output.length - outputLength,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                    if (last ? def.finished() : outputLength < output.length)
+                    {
+                        break;
+                    }
+                    if (outputLength == output.length)
+                    {
+                        output = Arrays.copyOf(output, output.length * 2);
+                    }
+                }
+            }
+            finally
+            {
+                def.end();
+            }
+            Checksum sum = gzip ? new CRC32() : new Adler32();
+            sum.update(data, 0, length);
+            checksum = sum.getValue();
+            return null;
+        }
+    }
+}
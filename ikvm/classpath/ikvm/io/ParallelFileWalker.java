@@ -0,0 +1,724 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+
+*/
+
+package ikvm.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import sun.nio.fs.BasicFileAttributesHolder;
+
+/**
+ * Walks a file tree on a ForkJoinPool, reading the directories in parallel.
+ * The attributes come from the directory stream when it provides them (the
+ * paths returned by NetFileSystemProvider do), so a walk doesn't read the
+ * attributes of each file separately.
+ *
+ * The entries can be consumed as a stream, which is fed through a bounded
+ * queue, or as FileVisitor callbacks. The callbacks are either made on the
+ * calling thread in the order of Files.walkFileTree, while the directories
+ * ahead are read in the background, or they are made unordered on the pool
+ * threads.
+ *
+ * Symbolic links are not followed.
+ */
+public final class ParallelFileWalker
+{
+    private static final int QUEUE_SIZE = 1024;
+    private static final Object END = new Object();
+    private final Path start;
+    private final int maxDepth;
+    private final PathMatcher filter;
+    private final ForkJoinPool pool;
+    // the number of directories read ahead of an ordered visitor, per directory level
+    private final int window;
+
+    public ParallelFileWalker(Path start)
+    {
+        this(start, Integer.MAX_VALUE, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param start the file or directory to start at
+     * @param maxDepth the maximum number of directory levels to visit, as for Files.walkFileTree
+     * @param filter the files to report (e.g. a glob PathMatcher), or null to report all files;
+     *        it is matched against the full path and doesn't restrict the directories that are walked
+     * @param pool the pool the directories are read on
+     */
+    public ParallelFileWalker(Path start, int maxDepth, PathMatcher filter, ForkJoinPool pool)
+    {
+        if (start == null || pool == null)
+        {
+            throw new NullPointerException();
+        }
+        if (maxDepth < 0)
+        {
+            throw new IllegalArgumentException("'maxDepth' is negative");
+        }
+        this.start = start;
+        this.maxDepth = maxDepth;
+        this.filter = filter;
+        this.pool = pool;
+        this.window = 2 * pool.getParallelism();
+    }
+
+    /**
+     * A file or directory and its attributes.
+     */
+    public static final class Entry
+    {
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private final int depth;
+        // set instead of attributes when they couldn't be read
+        private final IOException exception;
+
+        Entry(Path path, BasicFileAttributes attributes, int depth, IOException exception)
+        {
+            this.path = path;
+            this.attributes = attributes;
+            this.depth = depth;
+            this.exception = exception;
+        }
+
+        public Path path()
+        {
+            return path;
+        }
+
+        public BasicFileAttributes attributes()
+        {
+            return attributes;
+        }
+
+        /**
+         * The number of directory levels below the start.
+         */
+        public int depth()
+        {
+            return depth;
+        }
+
+        public String toString()
+        {
+            return path.toString();
+        }
+    }
+
+    /**
+     * Returns the start and all files and directories below it (those
+     * accepted by the filter), in no particular order. Like Files.walk, an
+     * I/O error is thrown as an UncheckedIOException and the stream should
+     * be closed, so the walk is stopped if the stream isn't consumed to
+     * the end. The stream can be made parallel to process the entries on
+     * multiple threads.
+     */
+    public Stream<Entry> stream() throws IOException
+    {
+        Entry root = entry(start, 0);
+        if (root.exception != null)
+        {
+            throw root.exception;
+        }
+        final StreamWalk walk = new StreamWalk(root);
+        pool.execute(walk);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(walk, Spliterator.DISTINCT | Spliterator.NONNULL), false)
+            .onClose(new Runnable() {
+                public void run()
+                {
+                    walk.stop();
+                }
+            });
+    }
+
+    /**
+     * Walks the tree like Files.walkFileTree. If ordered is true, the
+     * visitor is called on the calling thread in the same order as
+     * Files.walkFileTree. Otherwise the visitor is called concurrently from
+     * the pool threads, visitFile for the files in a directory after its
+     * preVisitDirectory and postVisitDirectory after all of its contents.
+     * SKIP_SIBLINGS stops the directory's remaining entries from being
+     * visited, but entries already handed to other threads are still
+     * visited.
+     */
+    public void walk(FileVisitor<? super Path> visitor, boolean ordered) throws IOException
+    {
+        if (visitor == null)
+        {
+            throw new NullPointerException();
+        }
+        Entry root = entry(start, 0);
+        if (root.exception != null)
+        {
+            visitor.visitFileFailed(start, root.exception);
+        }
+        else if (!isTraversable(root))
+        {
+            if (accept(root))
+            {
+                visitor.visitFile(start, root.attributes);
+            }
+        }
+        else if (ordered)
+        {
+            visitOrdered(visitor, root, submit(new ListTask(root.path, 1)));
+        }
+        else
+        {
+            VisitTask task = new VisitTask(visitor, root, new VisitWalk());
+            pool.invoke(task);
+            if (task.walk.exception != null)
+            {
+                throw task.walk.exception;
+            }
+        }
+    }
+
+    private boolean isTraversable(Entry entry)
+    {
+        return entry.attributes != null && entry.attributes.isDirectory() && entry.depth < maxDepth;
+    }
+
+    private boolean accept(Entry entry)
+    {
+        return filter == null || filter.matches(entry.path);
+    }
+
+    private static Entry entry(Path path, int depth)
+    {
+        try
+        {
+            return new Entry(path, readAttributes(path), depth, null);
+        }
+        catch (IOException x)
+        {
+            return new Entry(path, null, depth, x);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException
+    {
+        // like FileTreeWalker, we only trust the cached attributes if there is no security manager
+        if (path instanceof BasicFileAttributesHolder && System.getSecurityManager() == null)
+        {
+            BasicFileAttributes attrs = ((BasicFileAttributesHolder)path).get();
+            if (attrs != null)
+            {
+                return attrs;
+            }
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    // The contents of a directory. If the directory can't be opened, entries is null
+    // and exception is set, if reading it fails halfway, entries has what was read.
+    private static final class Listing
+    {
+        List<Entry> entries;
+        IOException exception;
+    }
+
+    private static Listing list(Path dir, int depth)
+    {
+        Listing listing = new Listing();
+        DirectoryStream<Path> stream;
+        try
+        {
+            stream = Files.newDirectoryStream(dir);
+        }
+        catch (IOException x)
+        {
+            listing.exception = x;
+            return listing;
+        }
+        listing.entries = new ArrayList<Entry>();
+        try
+        {
+            for (Path path : stream)
+            {
+                listing.entries.add(entry(path, depth));
+            }
+        }
+        catch (DirectoryIteratorException x)
+        {
+            listing.exception = x.getCause();
+        }
+        finally
+        {
+            try
+            {
+                stream.close();
+            }
+            catch (IOException x)
+            {
+                if (listing.exception == null)
+                {
+                    listing.exception = x;
+                }
+            }
+        }
+        return listing;
+    }
+
+    private static final class ListTask extends RecursiveTask<Listing>
+    {
+        private final Path dir;
+        private final int depth;
+
+        ListTask(Path dir, int depth)
+        {
+            this.dir = dir;
+            this.depth = depth;
+        }
+
+        protected Listing compute()
+        {
+            return list(dir, depth);
+        }
+    }
+
+    private <T extends ForkJoinTask<?>> T submit(T task)
+    {
+        if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool)
+        {
+            task.fork();
+        }
+        else
+        {
+            pool.execute(task);
+        }
+        return task;
+    }
+
+    // -- Ordered visiting --
+
+    private FileVisitResult visitOrdered(FileVisitor<? super Path> visitor, Entry dir, ListTask task) throws IOException
+    {
+        Listing listing = task.join();
+        if (listing.entries == null)
+        {
+            return visitor.visitFileFailed(dir.path, listing.exception);
+        }
+        FileVisitResult result = visitor.preVisitDirectory(dir.path, dir.attributes);
+        if (result != FileVisitResult.CONTINUE)
+        {
+            return result;
+        }
+        List<Entry> entries = listing.entries;
+        ListTask[] tasks = new ListTask[entries.size()];
+        // the subdirectories ahead are read in the background, at most window at a time
+        int next = 0;
+        int ahead = 0;
+        try
+        {
+            for (int i = 0; i < tasks.length; i++)
+            {
+                for (; next < tasks.length && ahead < window; next++)
+                {
+                    Entry e = entries.get(next);
+                    if (isTraversable(e))
+                    {
+                        tasks[next] = submit(new ListTask(e.path, e.depth + 1));
+                        ahead++;
+                    }
+                }
+                Entry e = entries.get(i);
+                if (tasks[i] != null)
+                {
+                    ahead--;
+                    ListTask t = tasks[i];
+                    tasks[i] = null;
+                    result = visitOrdered(visitor, e, t);
+                }
+                else if (e.exception != null)
+                {
+                    result = visitor.visitFileFailed(e.path, e.exception);
+                }
+                else if (accept(e))
+                {
+                    result = visitor.visitFile(e.path, e.attributes);
+                }
+                else
+                {
+                    result = FileVisitResult.CONTINUE;
+                }
+                if (result == FileVisitResult.TERMINATE)
+                {
+                    return result;
+                }
+                if (result == FileVisitResult.SKIP_SIBLINGS)
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            for (ListTask t : tasks)
+            {
+                if (t != null)
+                {
+                    t.cancel(false);
+                }
+            }
+        }
+        result = visitor.postVisitDirectory(dir.path, listing.exception);
+        // like Files.walkFileTree, SKIP_SIBLINGS is a no-op for postVisitDirectory
+        return result == FileVisitResult.SKIP_SIBLINGS ? FileVisitResult.CONTINUE : result;
+    }
+
+    // -- Unordered visiting --
+
+    private static final class VisitWalk
+    {
+        volatile boolean terminated;
+        // the first exception thrown by the visitor
+        IOException exception;
+
+        synchronized void fail(IOException x)
+        {
+            if (exception == null)
+            {
+                exception = x;
+            }
+            terminated = true;
+        }
+    }
+
+    private final class VisitTask extends RecursiveAction
+    {
+        private final FileVisitor<? super Path> visitor;
+        private final Entry dir;
+        final VisitWalk walk;
+
+        VisitTask(FileVisitor<? super Path> visitor, Entry dir, VisitWalk walk)
+        {
+            this.visitor = visitor;
+            this.dir = dir;
+            this.walk = walk;
+        }
+
+        protected void compute()
+        {
+            try
+            {
+                visit();
+            }
+            catch (IOException x)
+            {
+                walk.fail(x);
+            }
+        }
+
+        private void visit() throws IOException
+        {
+            if (walk.terminated)
+            {
+                return;
+            }
+            Listing listing = list(dir.path, dir.depth + 1);
+            if (listing.entries == null)
+            {
+                check(visitor.visitFileFailed(dir.path, listing.exception));
+                return;
+            }
+            FileVisitResult result = visitor.preVisitDirectory(dir.path, dir.attributes);
+            if (!check(result) || result != FileVisitResult.CONTINUE)
+            {
+                return;
+            }
+            ArrayList<VisitTask> subdirs = new ArrayList<VisitTask>();
+            for (Entry e : listing.entries)
+            {
+                if (walk.terminated)
+                {
+                    break;
+                }
+                if (isTraversable(e))
+                {
+                    VisitTask task = new VisitTask(visitor, e, walk);
+                    task.fork();
+                    subdirs.add(task);
+                    continue;
+                }
+                if (e.exception != null)
+                {
+                    result = visitor.visitFileFailed(e.path, e.exception);
+                }
+                else if (accept(e))
+                {
+                    result = visitor.visitFile(e.path, e.attributes);
+                }
+                if (!check(result) || result == FileVisitResult.SKIP_SIBLINGS)
+                {
+                    break;
+                }
+            }
+            for (VisitTask task : subdirs)
+            {
+                task.join();
+            }
+            if (!walk.terminated)
+            {
+                check(visitor.postVisitDirectory(dir.path, listing.exception));
+            }
+        }
+
+        private boolean check(FileVisitResult result)
+        {
+            if (result == FileVisitResult.TERMINATE)
+            {
+                walk.terminated = true;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // -- Streaming --
+
+    // Feeds the entries into a bounded queue, which is drained by the stream's iterator.
+    private final class StreamWalk extends RecursiveAction implements Iterator<Entry>
+    {
+        private final ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+        private final Entry root;
+        private volatile boolean stopped;
+        private Object next;
+        private boolean done;
+
+        StreamWalk(Entry root)
+        {
+            this.root = root;
+        }
+
+        protected void compute()
+        {
+            try
+            {
+                put(root);
+                if (isTraversable(root))
+                {
+                    new StreamTask(this, root).invoke();
+                }
+            }
+            catch (Throwable x)
+            {
+                put(x);
+            }
+            finally
+            {
+                put(END);
+            }
+        }
+
+        void put(Object element)
+        {
+            if (element instanceof Entry && !accept((Entry)element))
+            {
+                return;
+            }
+            Put put = new Put(element);
+            try
+            {
+                ForkJoinPool.managedBlock(put);
+            }
+            catch (InterruptedException _)
+            {
+                Thread.currentThread().interrupt();
+                stopped = true;
+            }
+        }
+
+        boolean isStopped()
+        {
+            return stopped;
+        }
+
+        void stop()
+        {
+            stopped = true;
+            // make room for the producers blocked on a full queue,
+            // they drain it in turn (see Put.block)
+            queue.clear();
+        }
+
+        public boolean hasNext()
+        {
+            if (next == null && !done)
+            {
+                try
+                {
+                    next = queue.take();
+                }
+                catch (InterruptedException x)
+                {
+                    stop();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(x);
+                }
+                if (next == END)
+                {
+                    next = null;
+                    done = true;
+                }
+                else if (next instanceof IOException)
+                {
+                    IOException x = (IOException)next;
+                    next = null;
+                    done = true;
+                    stop();
+                    throw new UncheckedIOException(x);
+                }
+                else if (next instanceof Throwable)
+                {
+                    Throwable x = (Throwable)next;
+                    next = null;
+                    done = true;
+                    stop();
+                    if (x instanceof Error)
+                    {
+                        throw (Error)x;
+                    }
+                    throw (RuntimeException)x;
+                }
+            }
+            return next != null;
+        }
+
+        public Entry next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            Entry e = (Entry)next;
+            next = null;
+            return e;
+        }
+
+        public void remove()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        private final class Put implements ForkJoinPool.ManagedBlocker
+        {
+            private final Object element;
+
+            Put(Object element)
+            {
+                this.element = element;
+            }
+
+            public boolean block() throws InterruptedException
+            {
+                queue.put(element);
+                if (stopped)
+                {
+                    // nobody takes the elements anymore, make room for the next producer
+                    queue.clear();
+                }
+                return true;
+            }
+
+            public boolean isReleasable()
+            {
+                return stopped || queue.offer(element);
+            }
+        }
+    }
+
+    private final class StreamTask extends RecursiveAction
+    {
+        private final StreamWalk walk;
+        private final Entry dir;
+
+        StreamTask(StreamWalk walk, Entry dir)
+        {
+            this.walk = walk;
+            this.dir = dir;
+        }
+
+        protected void compute()
+        {
+            if (walk.isStopped())
+            {
+                return;
+            }
+            Listing listing = list(dir.path, dir.depth + 1);
+            if (listing.entries != null)
+            {
+                ArrayList<StreamTask> subdirs = new ArrayList<StreamTask>();
+                for (Entry e : listing.entries)
+                {
+                    if (walk.isStopped())
+                    {
+                        break;
+                    }
+                    if (e.exception != null)
+                    {
+                        walk.put(e.exception);
+                        continue;
+                    }
+                    walk.put(e);
+                    if (isTraversable(e))
+                    {
+                        StreamTask task = new StreamTask(walk, e);
+                        task.fork();
+                        subdirs.add(task);
+                    }
+                }
+                for (StreamTask task : subdirs)
+                {
+                    task.join();
+                }
+            }
+            if (listing.exception != null)
+            {
+                walk.put(listing.exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+
+*/
+
+package ikvm.lang;
+
+import java.io.Serializable;
+
+/**
+ * A String together with its hash code, for use as a key in hash based
+ * collections. On IKVM a java.lang.String is a CLR string, which has no
+ * field to cache its hash code in, so String.hashCode hashes the whole
+ * string on every call. A HashedString hashes it once, and a failed
+ * equals check against another HashedString usually only compares the
+ * hash codes. It only helps code that chooses to use it as the key type.
+ */
+public final class HashedString implements CharSequence, Comparable<HashedString>, Serializable
+{
+    private static final long serialVersionUID = 1L;
+    private final String value;
+    private final int hash;
+
+    public HashedString(String value)
+    {
+        this.value = value;
+        this.hash = value.hashCode();
+    }
+
+    public int length()
+    {
+        return value.length();
+    }
+
+    public char charAt(int index)
+    {
+        return value.charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end)
+    {
+        return value.subSequence(start, end);
+    }
+
+    public int compareTo(HashedString other)
+    {
+        return value.compareTo(other.value);
+    }
+
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof HashedString))
+        {
+            return false;
+        }
+        HashedString other = (HashedString)obj;
+        return hash == other.hash && value.equals(other.value);
+    }
+
+    public String toString()
+    {
+        return value;
+    }
+}
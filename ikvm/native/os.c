@@ -59,6 +59,13 @@
 	#include <gmodule.h>
 	#include <sys/types.h>
 	#include <sys/mman.h>
+	#include <sys/uio.h>
+	#include <stdint.h>
+	#include <unistd.h>
+	#include <errno.h>
+	#ifdef __linux__
+		#include <sys/sendfile.h>
+	#endif
 	#include "jni.h"
 
 	JNIEXPORT void* JNICALL ikvm_LoadLibrary(char* psz)
@@ -97,4 +104,124 @@
 	{
 		return msync(address, size, MS_SYNC);
 	}
+
+	/* advice is one of the sun.nio.ch.FileChannelImpl.ADVICE_ constants,
+	 * address doesn't have to be page aligned */
+	JNIEXPORT int JNICALL ikvm_madvise(void* address, jlong size, jint advice)
+	{
+		uintptr_t page = (uintptr_t)sysconf(_SC_PAGESIZE);
+		char* start = (char*)((uintptr_t)address & ~(page - 1));
+		int flag;
+		switch (advice)
+		{
+			case 1:
+				flag = MADV_RANDOM;
+				break;
+			case 2:
+				flag = MADV_SEQUENTIAL;
+				break;
+			case 3:
+				flag = MADV_WILLNEED;
+				break;
+			default:
+				flag = MADV_NORMAL;
+				break;
+		}
+		return madvise(start, (size_t)(size + ((char*)address - start)), flag);
+	}
+
+	JNIEXPORT jint JNICALL ikvm_pread(int fd, void* buf, jint count, jlong position)
+	{
+		ssize_t result;
+		do
+		{
+			result = pread(fd, buf, count, (off_t)position);
+		}
+		while (result == -1 && errno == EINTR);
+		return (jint)result;
+	}
+
+	/* Returns the number of bytes sent, -2 if the socket isn't ready, -6 if
+	 * sendfile isn't supported for these descriptors and -1 with errno set
+	 * on other errors.  The values are those of sun.nio.ch.IOStatus.  The
+	 * runtime keeps its sockets non-blocking, so -2 is also returned for
+	 * sockets that are blocking to Java, the caller has to fall back to a
+	 * write that waits.
+	 */
+	JNIEXPORT jlong JNICALL ikvm_sendfile(int out_fd, int in_fd, jlong position, jint count)
+	{
+#ifdef __linux__
+		off_t offset = (off_t)position;
+		ssize_t result;
+		do
+		{
+			result = sendfile(out_fd, in_fd, &offset, count);
+		}
+		while (result == -1 && errno == EINTR);
+		if (result == -1)
+		{
+			if (errno == EAGAIN)
+				return -2;
+			if (errno == EINVAL || errno == ENOSYS)
+				return -6;
+			return -1;
+		}
+		return (jlong)result;
+#else
+		return -6;
+#endif
+	}
+
+	JNIEXPORT jint JNICALL ikvm_pwrite(int fd, void* buf, jint count, jlong position)
+	{
+		ssize_t result;
+		do
+		{
+			result = pwrite(fd, buf, count, (off_t)position);
+		}
+		while (result == -1 && errno == EINTR);
+		return (jint)result;
+	}
+
+	#define IKVM_IOV_MAX 1024
+
+	/* Reads into (write == 0) or writes from count memory segments with a
+	 * single system call, at the current file position if position is -1.
+	 * Returns the number of bytes transferred, -2 if the (non-blocking)
+	 * descriptor isn't ready and -1 on other errors.
+	 */
+	static jlong ikvm_iov(int fd, void** addresses, jint* lengths, jint count, jlong position, int write)
+	{
+		struct iovec iov[IKVM_IOV_MAX];
+		ssize_t result;
+		int i;
+		if (count > IKVM_IOV_MAX)
+			count = IKVM_IOV_MAX;
+		for (i = 0; i < count; i++)
+		{
+			iov[i].iov_base = addresses[i];
+			iov[i].iov_len = (size_t)lengths[i];
+		}
+		do
+		{
+			if (position == -1)
+				result = write ? writev(fd, iov, count) : readv(fd, iov, count);
+			else
+				result = write ? pwritev(fd, iov, count, (off_t)position) : preadv(fd, iov, count, (off_t)position);
+		}
+		while (result == -1 && errno == EINTR);
+		if (result == -1)
+			return errno == EAGAIN || errno == EWOULDBLOCK ? -2 : -1;
+		return (jlong)result;
+	}
+
+	JNIEXPORT jlong JNICALL ikvm_readv(int fd, void** addresses, jint* lengths, jint count, jlong position)
+	{
+		return ikvm_iov(fd, addresses, lengths, count, position, 0);
+	}
+
+	JNIEXPORT jlong JNICALL ikvm_writev(int fd, void** addresses, jint* lengths, jint count, jlong position)
+	{
+		return ikvm_iov(fd, addresses, lengths, count, position, 1);
+	}
 #endif
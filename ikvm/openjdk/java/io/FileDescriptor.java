@@ -463,6 +463,138 @@ public final class FileDescriptor {
         }
     }
 
+    /**
+     * Reads up to len bytes from the file, starting at the given file
+     * position, without changing the file pointer.  On Unix this allows
+     * multiple threads to read from the same file concurrently, on Windows
+     * the file pointer is moved by the read and put back afterwards, so
+     * callers must not use the file pointer concurrently.
+     *
+     * @return the number of bytes read or -1 at end of file
+     */
+    @ikvm.lang.Internal
+    public int readBytes(byte buf[], int offset, int len, long position) throws IOException
+    {
+        // NOTE we start by dereferencing buf, to make sure you get a NullPointerException first if you pass a null reference.
+        int bufLen = buf.length;
+        if ((offset < 0) || (offset > bufLen) || (len < 0) || (len > (bufLen - offset)))
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (position < 0)
+        {
+            throw new IllegalArgumentException("Negative position");
+        }
+
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        cli.System.IO.Stream stream = this.stream;
+        if (stream == null)
+        {
+            throw new IOException("Stream Closed");
+        }
+
+        if (stream instanceof FileStream)
+        {
+            try
+            {
+                if (false) throw new cli.System.ObjectDisposedException(null);
+                int count = pread((FileStream)stream, buf, offset, len, position);
+                if (count == 0)
+                {
+                    count = -1;
+                }
+                return count;
+            }
+            catch (cli.System.ObjectDisposedException x)
+            {
+                throw new java.nio.channels.ClosedChannelException();
+            }
+        }
+
+        // not a real file (e.g. a virtual file system stream), so we have to seek
+        synchronized (this)
+        {
+            long filePointer = getFilePointer();
+            try
+            {
+                seek(position);
+                return readBytes(buf, offset, len);
+            }
+            finally
+            {
+                seek(filePointer);
+            }
+        }
+    }
+
+    private static native int pread(FileStream fs, byte[] buf, int offset, int len, long position) throws IOException;
+
+    /**
+     * Writes up to len bytes to the file, starting at the given file
+     * position, without changing the file pointer.  See readBytes.
+     *
+     * @return the number of bytes written
+     */
+    @ikvm.lang.Internal
+    public int writeBytes(byte buf[], int offset, int len, long position) throws IOException
+    {
+        // NOTE we start by dereferencing buf, to make sure you get a NullPointerException first if you pass a null reference.
+        int bufLen = buf.length;
+        if ((offset < 0) || (offset > bufLen) || (len < 0) || (len > (bufLen - offset)))
+        {
+            throw new IndexOutOfBoundsException();
+        }
+        if (position < 0)
+        {
+            throw new IllegalArgumentException("Negative position");
+        }
+
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        cli.System.IO.Stream stream = this.stream;
+        if (stream == null)
+        {
+            throw new IOException("Stream Closed");
+        }
+
+        if (stream instanceof FileStream)
+        {
+            try
+            {
+                if (false) throw new cli.System.ObjectDisposedException(null);
+                return pwrite((FileStream)stream, buf, offset, len, position);
+            }
+            catch (cli.System.ObjectDisposedException x)
+            {
+                throw new java.nio.channels.ClosedChannelException();
+            }
+        }
+
+        synchronized (this)
+        {
+            long filePointer = getFilePointer();
+            try
+            {
+                seek(position);
+                writeBytes(buf, offset, len);
+                return len;
+            }
+            finally
+            {
+                seek(filePointer);
+            }
+        }
+    }
+
+    private static native int pwrite(FileStream fs, byte[] buf, int offset, int len, long position) throws IOException;
+
     long skip(long n) throws IOException
     {
         checkOpen();
@@ -641,7 +641,7 @@ final class ProcessImpl extends Process {
             connectPipe(stdout, stdoutDrain);
             stdHandles[1] = null;
         } else if (redirectErrorStream) {
-            PipeStream pipe = new PipeStream();
+            PipeStream pipe = new PipeStream(PIPE_SIZE);
             connectPipe(stdout, pipe);
             connectPipe(stderr, pipe);
             stdHandles[1] = pipe;
@@ -664,53 +664,148 @@ final class ProcessImpl extends Process {
         return proc;
     }
 
+    /**
+     * The size of the merged stdout and stderr pipe and of the buffers that
+     * relay between the process and redirected streams. It is rounded up
+     * to a power of two.
+     */
+    private static final int PIPE_SIZE = pipeSize(
+        java.security.AccessController.doPrivileged(
+            new sun.security.action.GetIntegerAction("ikvm.process.pipeSize", 64 * 1024)));
+
+    private static int pipeSize(int size) {
+        return size <= 4096 ? 4096 : Integer.highestOneBit(Math.min(size - 1, 1 << 29)) << 1;
+    }
+
+    /**
+     * A ring buffer that merges stdout and stderr when redirectErrorStream
+     * is set. Readers and writers each have their own lock and exchange
+     * the wrapping read and write counts through volatiles, so the two
+     * sides only meet on the monitor when one of them has to wait for an
+     * empty or a full pipe.
+     */
     private static final class PipeStream extends Stream
     {
-        private final byte[] buf = new byte[4096];
-        private int pos;
+        private final byte[] buf;
+        private final int mask;
+        private final Object readLock = new Object();
+        private final Object writeLock = new Object();
+        private volatile int readCount;
+        private volatile int writeCount;
+        private volatile boolean readerWaiting;
+        private volatile boolean writerWaiting;
+        private volatile boolean closed;
         private int users = 2;
 
+        PipeStream(int size)
+        {
+            buf = new byte[size];
+            mask = size - 1;
+        }
+
         @Override
-        public synchronized int Read(byte[] buffer, int offset, int count)
+        public int Read(byte[] buffer, int offset, int count)
         {
             if (count == 0)
             {
                 return 0;
             }
-            while (pos == 0)
+            synchronized (readLock)
+            {
+                int r = readCount;
+                int available;
+                while ((available = writeCount - r) == 0)
+                {
+                    if (closed && writeCount == r)
+                    {
+                        return 0;
+                    }
+                    awaitData(r);
+                }
+                int n = Math.min(count, available);
+                int index = r & mask;
+                int first = Math.min(n, buf.length - index);
+                System.arraycopy(buf, index, buffer, offset, first);
+                System.arraycopy(buf, 0, buffer, offset + first, n - first);
+                readCount = r + n;
+                if (writerWaiting)
+                {
+                    synchronized (this)
+                    {
+                        notifyAll();
+                    }
+                }
+                return n;
+            }
+        }
+
+        @Override
+        public void Write(byte[] buffer, int offset, int count)
+        {
+            synchronized (writeLock)
+            {
+                int w = writeCount;
+                while (count > 0)
+                {
+                    int free;
+                    while ((free = buf.length - (w - readCount)) == 0)
+                    {
+                        awaitSpace(w);
+                    }
+                    int n = Math.min(count, free);
+                    int index = w & mask;
+                    int first = Math.min(n, buf.length - index);
+                    System.arraycopy(buffer, offset, buf, index, first);
+                    System.arraycopy(buffer, offset + first, buf, 0, n - first);
+                    w += n;
+                    writeCount = w;
+                    offset += n;
+                    count -= n;
+                    if (readerWaiting)
+                    {
+                        synchronized (this)
+                        {
+                            notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        private synchronized void awaitData(int r)
+        {
+            // the writer checks readerWaiting after publishing writeCount,
+            // so either we see the new count or it sees the flag
+            readerWaiting = true;
+            try
             {
-                try
+                while (writeCount == r && !closed)
                 {
                     wait();
                 }
-                catch (InterruptedException _) { }
             }
-            if (pos == -1)
+            catch (InterruptedException _) { }
+            finally
             {
-                return 0;
+                readerWaiting = false;
             }
-            count = Math.min(count, pos);
-            System.arraycopy(buf, 0, buffer, offset, count);
-            pos -= count;
-            System.arraycopy(buf, count, buf, 0, pos);
-            notifyAll();
-            return count;
         }
 
-        @Override
-        public synchronized void Write(byte[] buffer, int offset, int count)
+        private synchronized void awaitSpace(int w)
         {
-            while (buf.length - pos < count)
+            writerWaiting = true;
+            try
             {
-                try
+                while (w - readCount == buf.length)
                 {
                     wait();
                 }
-                catch (InterruptedException _) { }
             }
-            System.arraycopy(buffer, offset, buf, pos, count);
-            pos += count;
-            notifyAll();
+            catch (InterruptedException _) { }
+            finally
+            {
+                writerWaiting = false;
+            }
         }
 
         @Override
@@ -718,7 +813,8 @@ final class ProcessImpl extends Process {
         {
             if (--users == 0)
             {
-                pos = -1;
+                // the reader still gets the buffered data
+                closed = true;
                 notifyAll();
             }
         }
@@ -809,7 +905,7 @@ final class ProcessImpl extends Process {
     }
 
     private static void connectPipe(final Stream in, final Stream out) {
-        final byte[] buf = new byte[4096];
+        final byte[] buf = new byte[PIPE_SIZE];
         final AsyncCallback[] callback = new AsyncCallback[1];
         callback[0] = new AsyncCallback(new AsyncCallback.Method() {
             public void Invoke(IAsyncResult ar) {
@@ -817,7 +913,11 @@ final class ProcessImpl extends Process {
                     int count = in.EndRead(ar);
                     if (count > 0) {
                         out.Write(buf, 0, count);
-                        out.Flush();
+                        // a full buffer means more data is waiting, so we
+                        // only flush when the process has caught its breath
+                        if (count < buf.length) {
+                            out.Flush();
+                        }
                         in.BeginRead(buf, 0, buf.length, callback[0], null);
                     } else {
                         out.Close();
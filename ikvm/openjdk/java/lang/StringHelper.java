@@ -45,6 +45,7 @@ import java.util.Spliterators;
 import java.util.function.IntConsumer;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
+import sun.nio.cs.StringCodecs;
 
 /**
  * The {@code String} class represents character strings. All
@@ -327,6 +328,9 @@ final class StringHelper
         if (charsetName == null)
             throw new NullPointerException("charsetName");
         checkBounds(bytes, offset, length);
+        String s = decodeFast(StringCodecs.of(charsetName), bytes, offset, length);
+        if (s != null)
+            return s;
         char[] v = StringCoding.decode(charsetName, bytes, offset, length);
         return new String(v);
     }
@@ -365,6 +369,9 @@ final class StringHelper
         if (charset == null)
             throw new NullPointerException("charset");
         checkBounds(bytes, offset, length);
+        String s = decodeFast(StringCodecs.of(charset), bytes, offset, length);
+        if (s != null)
+            return s;
         char[] v = StringCoding.decode(charset, bytes, offset, length);
         return new String(v);
     }
@@ -449,10 +456,29 @@ final class StringHelper
      */
     static String NewString(byte bytes[], int offset, int length) {
         checkBounds(bytes, offset, length);
+        String s = decodeFast(StringCodecs.of(Charset.defaultCharset()), bytes, offset, length);
+        if (s != null)
+            return s;
         char[] v  = StringCoding.decode(bytes, offset, length);
         return new String(v);
     }
 
+    /**
+     * Decodes US-ASCII, ISO-8859-1 and UTF-8 without a CharsetDecoder.
+     * Returns null when StringCoding has to do the decoding.
+     */
+    private static String decodeFast(int codec, byte[] bytes, int offset, int length) {
+        return codec == StringCodecs.NONE ? null : StringCodecs.decode(codec, bytes, offset, length);
+    }
+
+    /**
+     * Encodes US-ASCII, ISO-8859-1 and UTF-8 without a CharsetEncoder.
+     * Returns null when StringCoding has to do the encoding.
+     */
+    private static byte[] encodeFast(int codec, String s) {
+        return codec == StringCodecs.NONE ? null : StringCodecs.encode(codec, s);
+    }
+
     /**
      * Constructs a new {@code String} by decoding the specified array of bytes
      * using the platform's default charset.  The length of the new {@code
@@ -813,6 +839,9 @@ final class StringHelper
     static byte[] getBytes(String _this, String charsetName)
             throws UnsupportedEncodingException {
         if (charsetName == null) throw new NullPointerException();
+        byte[] b = encodeFast(StringCodecs.of(charsetName), _this);
+        if (b != null)
+            return b;
         char[] value = _this.toCharArray();
         return StringCoding.encode(charsetName, value, 0, value.length);
     }
@@ -837,6 +866,9 @@ final class StringHelper
      */
     static byte[] getBytes(String _this, Charset charset) {
         if (charset == null) throw new NullPointerException();
+        byte[] b = encodeFast(StringCodecs.of(charset), _this);
+        if (b != null)
+            return b;
         char[] value = _this.toCharArray();
         return StringCoding.encode(charset, value, 0, value.length);
     }
@@ -855,6 +887,9 @@ final class StringHelper
      * @since      JDK1.1
      */
     static byte[] getBytes(String _this) {
+        byte[] b = encodeFast(StringCodecs.of(Charset.defaultCharset()), _this);
+        if (b != null)
+            return b;
         char[] value = _this.toCharArray();
         return StringCoding.encode(value, 0, value.length);
     }
@@ -100,6 +100,12 @@ public class Adler32 implements Checksum
   /** largest prime smaller than 65536 */
   private static final int BASE = 65521;
 
+  /**
+   * The largest n such that 255n(n+1)/2 + (n+1)(BASE-1) fits in 32 bits
+   * (unsigned), the number of bytes the modulo operation can be deferred.
+   */
+  private static final int NMAX = 5552;
+
   private int adler; //we do all in int.
 
   //Note that java doesn't have unsigned integers,
@@ -143,8 +149,8 @@ public class Adler32 implements Checksum
   }
 
   /**
-   * Updates the checksum with the bytes taken from the array. 
-   * 
+   * Updates the checksum with the bytes taken from the array.
+   *
    * @param buffer an array of bytes
    */
   public void update (byte[] buffer)
@@ -160,6 +166,56 @@ public class Adler32 implements Checksum
    * @param len the number of bytes to use for this update
    */
   public void update (byte[] buf, int off, int len)
+  {
+    if (off < 0 || len < 0 || off > buf.length - len)
+      throw new ArrayIndexOutOfBoundsException();
+    adler = update(adler, buf, off, len);
+  }
+
+  /**
+   * Updates the checksum with the remaining bytes of the buffer. Array backed
+   * buffers are summed in place, other buffers are read with absolute gets,
+   * so the data is never copied.
+   *
+   * @param buffer the buffer, its position is advanced to its limit
+   */
+  public void update(java.nio.ByteBuffer buffer)
+  {
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    if (pos >= limit)
+      return;
+    if (buffer.hasArray())
+      {
+        adler = update(adler, buffer.array(), buffer.arrayOffset() + pos,
+                       limit - pos);
+      }
+    else
+      {
+        int s1 = adler & 0xffff;
+        int s2 = adler >>> 16;
+        while (pos < limit)
+          {
+            int n = Math.min(NMAX, limit - pos);
+            for (int end = pos + n; pos < end; pos++)
+              {
+                s1 += buffer.get(pos) & 0xFF;
+                s2 += s1;
+              }
+            s1 %= BASE;
+            s2 = Integer.remainderUnsigned(s2, BASE);
+          }
+        adler = (s2 << 16) | s1;
+      }
+    buffer.position(limit);
+  }
+
+  /**
+   * Updates the checksum value adler with len bytes of buf starting at off.
+   * The modulo is deferred to once per NMAX bytes and the inner loop is
+   * unrolled sixteen times.
+   */
+  static int update (int adler, byte[] buf, int off, int len)
   {
     //(By Per Bothner)
     int s1 = adler & 0xffff;
@@ -167,39 +223,75 @@ public class Adler32 implements Checksum
 
     while (len > 0)
       {
-        // We can defer the modulo operation:
-        // s1 maximally grows from 65521 to 65521 + 255 * 3800
-        // s2 maximally grows by 3800 * median(s1) = 2090079800 < 2^31
-        int n = 3800;
+        int n = NMAX;
         if (n > len)
           n = len;
         len -= n;
+        while (n >= 16)
+          {
+            s1 += buf[off] & 0xFF;        s2 += s1;
+            s1 += buf[off + 1] & 0xFF;    s2 += s1;
+            s1 += buf[off + 2] & 0xFF;    s2 += s1;
+            s1 += buf[off + 3] & 0xFF;    s2 += s1;
+            s1 += buf[off + 4] & 0xFF;    s2 += s1;
+            s1 += buf[off + 5] & 0xFF;    s2 += s1;
+            s1 += buf[off + 6] & 0xFF;    s2 += s1;
+            s1 += buf[off + 7] & 0xFF;    s2 += s1;
+            s1 += buf[off + 8] & 0xFF;    s2 += s1;
+            s1 += buf[off + 9] & 0xFF;    s2 += s1;
+            s1 += buf[off + 10] & 0xFF;   s2 += s1;
+            s1 += buf[off + 11] & 0xFF;   s2 += s1;
+            s1 += buf[off + 12] & 0xFF;   s2 += s1;
+            s1 += buf[off + 13] & 0xFF;   s2 += s1;
+            s1 += buf[off + 14] & 0xFF;   s2 += s1;
+            s1 += buf[off + 15] & 0xFF;   s2 += s1;
+            off += 16;
+            n -= 16;
+          }
         while (--n >= 0)
           {
-            s1 = s1 + (buf[off++] & 0xFF);
-            s2 = s2 + s1;
+            s1 += buf[off++] & 0xFF;
+            s2 += s1;
           }
         s1 %= BASE;
-        s2 %= BASE;
+        // s2 may have passed 2^31, it is still correct as an unsigned value
+        s2 = Integer.remainderUnsigned(s2, BASE);
       }
 
-    /*Old implementation, borrowed from somewhere:
-    int n;
-    
-    while (len-- > 0) {
-
-      s1 = (s1 + (bs[offset++] & 0xff)) % BASE; 
-      s2 = (s2 + s1) % BASE;
-    }*/
-    
-    adler = (s2 << 16) | s1;
+    return (s2 << 16) | s1;
   }
 
-  public void update(java.nio.ByteBuffer buffer)
+  /**
+   * Combines two Adler32 checksums.  Given the checksum adler1 of a
+   * sequence A and the checksum adler2 of a sequence B of length len2,
+   * returns the checksum of A followed by B.  This allows checksums
+   * that were computed independently, for example in parallel over
+   * separate chunks, to be merged.
+   *
+   * @param adler1 the checksum of the first sequence
+   * @param adler2 the checksum of the second sequence
+   * @param len2 the length of the second sequence
+   * @return the checksum of the concatenated sequences
+   * @throws IllegalArgumentException if len2 is negative
+   */
+  public static long combine(long adler1, long adler2, long len2)
   {
-    byte[] buf = new byte[buffer.remaining()];
-    buffer.get(buf);
-    update(buf, 0, buf.length);
+    if (len2 < 0)
+      throw new IllegalArgumentException("negative length: " + len2);
+    long rem = len2 % BASE;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (rem * sum1) % BASE;
+    sum1 += (adler2 & 0xffff) + BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + BASE - rem;
+    if (sum1 >= BASE)
+      sum1 -= BASE;
+    if (sum1 >= BASE)
+      sum1 -= BASE;
+    if (sum2 >= ((long) BASE << 1))
+      sum2 -= ((long) BASE << 1);
+    if (sum2 >= BASE)
+      sum2 -= BASE;
+    return (sum2 << 16) | sum1;
   }
 
   /**
@@ -65,6 +65,33 @@ public class CRC32 implements Checksum
   /** The fast CRC table. Computed once when the CRC32 class is loaded. */
   private static int[] crc_table = make_crc_table();
 
+  /**
+   * The slicing-by-8 tables.  crc_table_k[n] is the CRC of byte n followed
+   * by k zero bytes, so eight input bytes can be folded into the CRC with
+   * eight independent table lookups instead of eight dependent ones.
+   */
+  private static final int[] crc_table_1;
+  private static final int[] crc_table_2;
+  private static final int[] crc_table_3;
+  private static final int[] crc_table_4;
+  private static final int[] crc_table_5;
+  private static final int[] crc_table_6;
+  private static final int[] crc_table_7;
+
+  static
+  {
+    crc_table_1 = make_slice_table(crc_table);
+    crc_table_2 = make_slice_table(crc_table_1);
+    crc_table_3 = make_slice_table(crc_table_2);
+    crc_table_4 = make_slice_table(crc_table_3);
+    crc_table_5 = make_slice_table(crc_table_4);
+    crc_table_6 = make_slice_table(crc_table_5);
+    crc_table_7 = make_slice_table(crc_table_6);
+  }
+
+  /** Inputs shorter than this are not worth the slicing set up. */
+  private static final int SLICE_THRESHOLD = 16;
+
   /** Make the table for a fast CRC. */
   private static int[] make_crc_table ()
   {
@@ -84,6 +111,61 @@ public class CRC32 implements Checksum
     return crc_table;
   }
 
+  /** Make the table that advances prev by one more zero byte. */
+  private static int[] make_slice_table (int[] prev)
+  {
+    int[] table = new int[256];
+    for (int n = 0; n < 256; n++)
+      {
+        int c = prev[n];
+        table[n] = crc_table[c & 0xff] ^ (c >>> 8);
+      }
+    return table;
+  }
+
+  /**
+   * Folds the eight bytes lo (first four, little endian) and hi (last
+   * four, little endian) into the inverted crc c.
+   */
+  private static int slice8 (int c, int lo, int hi)
+  {
+    c ^= lo;
+    return crc_table_7[c & 0xff]
+      ^ crc_table_6[(c >>> 8) & 0xff]
+      ^ crc_table_5[(c >>> 16) & 0xff]
+      ^ crc_table_4[c >>> 24]
+      ^ crc_table_3[hi & 0xff]
+      ^ crc_table_2[(hi >>> 8) & 0xff]
+      ^ crc_table_1[(hi >>> 16) & 0xff]
+      ^ crc_table[hi >>> 24];
+  }
+
+  /** Updates the inverted crc c with len bytes of buf starting at off. */
+  static int update (int c, byte[] buf, int off, int len)
+  {
+    if (len >= SLICE_THRESHOLD)
+      {
+        int end = off + (len & ~7);
+        len &= 7;
+        while (off < end)
+          {
+            int lo = (buf[off] & 0xff)
+              | (buf[off + 1] & 0xff) << 8
+              | (buf[off + 2] & 0xff) << 16
+              | buf[off + 3] << 24;
+            int hi = (buf[off + 4] & 0xff)
+              | (buf[off + 5] & 0xff) << 8
+              | (buf[off + 6] & 0xff) << 16
+              | buf[off + 7] << 24;
+            c = slice8(c, lo, hi);
+            off += 8;
+          }
+      }
+    while (--len >= 0)
+      c = crc_table[(c ^ buf[off++]) & 0xff] ^ (c >>> 8);
+    return c;
+  }
+
   /**
    * Returns the CRC32 data checksum computed so far.
    */
@@ -92,6 +174,77 @@ public class CRC32 implements Checksum
     return (long) crc & 0xffffffffL;
   }
 
+  /**
+   * Combines two CRC32 checksums.  Given the checksum crc1 of a sequence
+   * A and the checksum crc2 of a sequence B of length len2, returns the
+   * checksum of A followed by B.  This allows checksums that were
+   * computed independently, for example in parallel over separate
+   * chunks, to be merged.
+   *
+   * @param crc1 the checksum of the first sequence
+   * @param crc2 the checksum of the second sequence
+   * @param len2 the length of the second sequence
+   * @return the checksum of the concatenated sequences
+   * @throws IllegalArgumentException if len2 is negative
+   */
+  public static long combine (long crc1, long crc2, long len2)
+  {
+    if (len2 < 0)
+      throw new IllegalArgumentException("negative length: " + len2);
+    /* Appending len2 bytes to A multiplies its crc by x^(8*len2). */
+    int c = multmodp(x2nmodp(len2, 3), (int) crc1) ^ (int) crc2;
+    return (long) c & 0xffffffffL;
+  }
+
+  /** x^(2^n) modulo the CRC polynomial, for n = 0..31. */
+  private static final int[] x2n_table = make_x2n_table();
+
+  private static int[] make_x2n_table ()
+  {
+    int[] table = new int[32];
+    int p = 1 << 30;   /* x^1 */
+    table[0] = p;
+    for (int n = 1; n < 32; n++)
+      table[n] = p = multmodp(p, p);
+    return table;
+  }
+
+  /**
+   * Multiplies a and b modulo the CRC polynomial, in the reflected bit
+   * order the crc uses.  a must not be zero.
+   */
+  private static int multmodp (int a, int b)
+  {
+    int m = 1 << 31;
+    int p = 0;
+    for (;;)
+      {
+        if ((a & m) != 0)
+          {
+            p ^= b;
+            if ((a & (m - 1)) == 0)
+              break;
+          }
+        m >>>= 1;
+        b = (b & 1) != 0 ? (b >>> 1) ^ 0xedb88320 : b >>> 1;
+      }
+    return p;
+  }
+
+  /** Returns x^(n*2^k) modulo the CRC polynomial. */
+  private static int x2nmodp (long n, int k)
+  {
+    int p = 1 << 31;   /* x^0 == 1 */
+    while (n != 0)
+      {
+        if ((n & 1) != 0)
+          p = multmodp(x2n_table[k & 31], p);
+        n >>>= 1;
+        k++;
+      }
+    return p;
+  }
+
   /**
    * Resets the CRC32 data checksum as if no update was ever called.
    */
@@ -119,10 +272,9 @@ public class CRC32 implements Checksum
    */
   public void update (byte[] buf, int off, int len)
   {
-    int c = ~crc;
-    while (--len >= 0)
-      c = crc_table[(c ^ buf[off++]) & 0xff] ^ (c >>> 8);
-    crc = ~c;
+    if (off < 0 || len < 0 || off > buf.length - len)
+      throw new ArrayIndexOutOfBoundsException();
+    crc = ~update(~crc, buf, off, len);
   }
 
   /**
@@ -130,10 +282,42 @@ public class CRC32 implements Checksum
    */
   public void update (byte[] buf) { update(buf, 0, buf.length); }
 
+  /**
+   * Updates the checksum with the remaining bytes of the buffer. Array backed
+   * buffers are checksummed in place, other buffers (direct or read-only)
+   * are read eight bytes at a time, so the data is never copied.
+   *
+   * @param buffer the buffer, its position is advanced to its limit
+   */
   public void update(java.nio.ByteBuffer buffer)
   {
-    byte[] buf = new byte[buffer.remaining()];
-    buffer.get(buf);
-    update(buf, 0, buf.length);
+    int pos = buffer.position();
+    int limit = buffer.limit();
+    if (pos >= limit)
+      return;
+    int c = ~crc;
+    if (buffer.hasArray())
+      {
+        c = update(c, buffer.array(), buffer.arrayOffset() + pos, limit - pos);
+      }
+    else
+      {
+        if (limit - pos >= SLICE_THRESHOLD)
+          {
+            java.nio.ByteBuffer le = buffer.duplicate()
+              .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            int end = pos + ((limit - pos) & ~7);
+            while (pos < end)
+              {
+                long l = le.getLong(pos);
+                c = slice8(c, (int) l, (int) (l >>> 32));
+                pos += 8;
+              }
+          }
+        while (pos < limit)
+          c = crc_table[(c ^ buffer.get(pos++)) & 0xff] ^ (c >>> 8);
+      }
+    crc = ~c;
+    buffer.position(limit);
   }
 }
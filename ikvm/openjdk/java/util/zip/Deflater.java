@@ -203,7 +203,7 @@ public class Deflater
       throw new IllegalArgumentException();
 
     pending = new DeflaterPending();
-    engine = new DeflaterEngine(pending);
+    engine = new DeflaterEngine(pending, nowrap);
     this.noHeader = nowrap;
     setStrategy(DEFAULT_STRATEGY);
     setLevel(lvl);
@@ -509,22 +509,15 @@ public class Deflater
               }
             else if (flush != NO_FLUSH)
               {
-                if (level != NO_COMPRESSION)
-                  {
-                    /* We have to supply some lookahead.  8 bit lookahead
-                     * are needed by the zlib inflater, and we must fill 
-                     * the next byte, so that all bits are flushed.
-                     */
-                    int neededbits = 8 + ((-pending.getBitCount()) & 7);
-                    while (neededbits > 0)
-                      {
-                        /* write a static tree block consisting solely of
-                         * an EOF:
-                         */
-                        pending.writeBits(2, 10);
-                        neededbits -= 10;
-                      }
-                  }
+                /* Like zlib, end with an empty stored block.  This
+                 * leaves the output byte aligned, so an inflater gets
+                 * all bits and independently deflated streams can be
+                 * concatenated at this point.
+                 */
+                pending.writeBits(DeflaterConstants.STORED_BLOCK << 1, 3);
+                pending.alignToByte();
+                pending.writeShort(0);
+                pending.writeShort(0xffff);
                 if (flush == FULL_FLUSH)
                   engine.clearHash();
               }
@@ -560,6 +553,17 @@ public class Deflater
    */
   public void setDictionary(byte[] dict, int offset, int length)
   {
+    if (noHeader)
+      {
+        /* There is no header to record the dictionary in, so it can be
+         * set as long as no input went into the window yet.
+         */
+        if (state != BUSY_STATE || !engine.isUnused())
+          throw new IllegalStateException();
+        engine.setDictionary(dict, offset, length);
+        engine.resetAdler();
+        return;
+      }
     if (state != INIT_STATE)
       throw new IllegalStateException();
 
@@ -69,10 +69,12 @@ interface DeflaterConstants
   int DEFLATE_STORED = 0;
   int DEFLATE_FAST   = 1;
   int DEFLATE_SLOW   = 2;
+  /* Like DEFLATE_FAST, but only probes the head of each hash chain. */
+  int DEFLATE_QUICK  = 3;
 
   int GOOD_LENGTH[] = { 0,4, 4, 4, 4, 8,  8,  8,  32,  32 };
   int MAX_LAZY[]    = { 0,4, 5, 6, 4,16, 16, 32, 128, 258 };
   int NICE_LENGTH[] = { 0,8,16,32,16,32,128,128, 258, 258 };
-  int MAX_CHAIN[]   = { 0,4, 8,32,16,32,128,256,1024,4096 };
-  int COMPR_FUNC[]  = { 0,1, 1, 1, 1, 2,  2,  2,   2,   2 };
+  int MAX_CHAIN[]   = { 0,1, 1, 1,16,32,128,256,1024,4096 };
+  int COMPR_FUNC[]  = { 0,3, 3, 3, 1, 2,  2,  2,   2,   2 };
 }
@@ -41,6 +41,10 @@ final class DeflaterEngine implements DeflaterConstants
 {
   private static final int TOO_FAR = 4096;
 
+  /** Whether getLong loads bytes in little endian order. */
+  private static final boolean LITTLE_ENDIAN
+    = cli.System.BitConverter.IsLittleEndian;
+
   private int ins_h;
 
   /**
@@ -103,7 +107,7 @@ final class DeflaterEngine implements DeflaterConstants
   private DeflaterPending pending;
   private DeflaterHuffman huffman;
 
-  /** The adler checksum */
+  /** The adler checksum, null if the stream has no header to use it. */
   private Adler32 adler;
 
   /* DEFLATE ALGORITHM:
@@ -122,10 +126,11 @@ final class DeflaterEngine implements DeflaterConstants
    */
 
 
-  DeflaterEngine(DeflaterPending pending) {
+  DeflaterEngine(DeflaterPending pending, boolean noHeader) {
     this.pending = pending;
     huffman = new DeflaterHuffman(pending);
-    adler = new Adler32();
+    if (!noHeader)
+      adler = new Adler32();
 
     window = new byte[2*WSIZE];
     head   = new short[HASH_SIZE];
@@ -140,7 +145,7 @@ final class DeflaterEngine implements DeflaterConstants
   public void reset()
   {
     huffman.reset();
-    adler.reset();
+    resetAdler();
     clearHash();
     totalIn = 0;
   }
@@ -159,11 +164,14 @@ final class DeflaterEngine implements DeflaterConstants
 
   public final void resetAdler()
   {
-    adler.reset();
+    if (adler != null)
+      adler.reset();
   }
 
   public final int getAdler()
   {
+    if (adler == null)
+      return 1;
     int chksum = (int) adler.getValue();
     return chksum;
   }
@@ -201,6 +209,7 @@ final class DeflaterEngine implements DeflaterConstants
               }
             updateHash();
             break;
+          case DEFLATE_QUICK:
           case DEFLATE_FAST:
             if (strstart > blockStart)
               {
@@ -310,7 +319,8 @@ final class DeflaterEngine implements DeflaterConstants
 
         System.arraycopy(inputBuf, inputOff, 
                          window, strstart + lookahead, more);
-        adler.update(inputBuf, inputOff, more);
+        if (adler != null)
+          adler.update(inputBuf, inputOff, more);
         inputOff += more;
         totalIn  += more;
         lookahead += more;
@@ -320,6 +330,40 @@ final class DeflaterEngine implements DeflaterConstants
       updateHash();
   }
 
+  /**
+   * Reads eight bytes of buf starting at off in one load.
+   */
+  private static long getLong(byte[] buf, int off) {
+    return cli.System.BitConverter.ToInt64(buf, off);
+  }
+
+  /**
+   * Returns the length of the common prefix of the strings at scan and
+   * match, where the first len bytes are known to match, but at most
+   * MAX_MATCH.  Compares eight bytes at a time; the first differing
+   * byte is the lowest set byte of the difference.
+   *
+   * Preconditions:
+   *    scan + MAX_MATCH <= window.length and match < scan.
+   */
+  private int compareStrings(int scan, int match, int len) {
+    byte[] window = this.window;
+    if (LITTLE_ENDIAN)
+      {
+        while (len <= MAX_MATCH - 8)
+          {
+            long diff = getLong(window, scan + len) 
+              ^ getLong(window, match + len);
+            if (diff != 0)
+              return len + (Long.numberOfTrailingZeros(diff) >>> 3);
+            len += 8;
+          }
+      }
+    while (len < MAX_MATCH && window[scan + len] == window[match + len])
+      len++;
+    return len;
+  }
+
   /**
    * Find the best (longest) string in the window matching the 
    * string starting at strstart.
@@ -334,16 +378,16 @@ final class DeflaterEngine implements DeflaterConstants
     int chainLength = this.max_chain;
     int niceLength = this.niceLength;
     short[] prev = this.prev;
+    byte[] window = this.window;
     int scan  = this.strstart;
-    int match;
-    int best_end = this.strstart + matchLen;
     int best_len = Math.max(matchLen, MIN_MATCH - 1);
     
     int limit = Math.max(strstart - MAX_DIST, 0);
 
-    int strend = scan + MAX_MATCH - 1;
-    byte scan_end1 = window[best_end - 1];
-    byte scan_end  = window[best_end];
+    byte scan_end1 = window[scan + best_len - 1];
+    byte scan_end  = window[scan + best_len];
+    byte scan_start0 = window[scan];
+    byte scan_start1 = window[scan + 1];
 
     /* Do not waste too much time if we already have a good match: */
     if (best_len >= this.goodLength)
@@ -362,42 +406,25 @@ final class DeflaterEngine implements DeflaterConstants
     do {
       if (DeflaterConstants.DEBUGGING && curMatch >= strstart)
         throw new InternalError("future match");
+      /* Only a candidate that also matches at the end of the best match
+       * so far can be longer, so check that first.
+       */
       if (window[curMatch + best_len] != scan_end
           || window[curMatch + best_len - 1] != scan_end1
-          || window[curMatch] != window[scan]
-          || window[curMatch+1] != window[scan + 1])
+          || window[curMatch] != scan_start0
+          || window[curMatch + 1] != scan_start1)
         continue;
 
-      match = curMatch + 2;      
-      scan += 2;
-
-      /* We check for insufficient lookahead only every 8th comparison;
-       * the 256th check will be made at strstart+258.
-       */
-      while (window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && window[++scan] == window[++match]
-             && scan < strend)
-        ;
-
-      if (scan > best_end) {
-//      if (DeflaterConstants.DEBUGGING && ins_h == 0)
-//        System.err.println("Found match: "+curMatch+"-"+(scan-strstart));
+      int len = compareStrings(scan, curMatch, 2);
+      if (len > best_len) {
         matchStart = curMatch;
-        best_end = scan;
-        best_len = scan - strstart;
+        best_len = len;
         if (best_len >= niceLength)
           break;
 
-        scan_end1  = window[best_end-1];
-        scan_end   = window[best_end];
+        scan_end1  = window[scan + best_len - 1];
+        scan_end   = window[scan + best_len];
       }
-      scan = strstart;
     } while ((curMatch = (prev[curMatch & WMASK] & 0xffff)) > limit
              && --chainLength != 0);
 
@@ -405,10 +432,35 @@ final class DeflaterEngine implements DeflaterConstants
     return matchLen >= MIN_MATCH;
   }
 
+  /**
+   * Checks only the most recent string with the same hash, which is
+   * all the quick levels do.  Sets matchStart and matchLen like
+   * findLongestMatch.
+   */
+  private boolean findQuickMatch(int curMatch) {
+    int len = compareStrings(strstart, curMatch, 0);
+    if (len > lookahead)
+      len = lookahead;
+    if (len < MIN_MATCH)
+      return false;
+    matchStart = curMatch;
+    matchLen = len;
+    return true;
+  }
+
+  /**
+   * Returns true if neither a dictionary nor input went into the
+   * window yet.
+   */
+  boolean isUnused() {
+    return strstart == 1 && lookahead == 0;
+  }
+
   void setDictionary(byte[] buffer, int offset, int length) {
     if (DeflaterConstants.DEBUGGING && strstart != 1)
       throw new IllegalStateException("strstart not 1");
-    adler.update(buffer, offset, length);
+    if (adler != null)
+      adler.update(buffer, offset, length);
     if (length < MIN_MATCH)
       return;
     if (length > MAX_DIST) {
@@ -439,13 +491,20 @@ final class DeflaterEngine implements DeflaterConstants
 
     int storedLen = strstart - blockStart;
 
-    if ((storedLen >= DeflaterConstants.MAX_BLOCK_SIZE) 
+    if (flush && !finish && storedLen == 0)
+      /* Everything is flushed already, an empty block makes no progress. */
+      return false;
+
+    if ((storedLen >= DeflaterConstants.MAX_BLOCK_SIZE)
         /* Block is full */
         || (blockStart < WSIZE && storedLen >= MAX_DIST)
         /* Block may move out of window */
         || flush)
       {
-        boolean lastBlock = finish;
+        /* Only the block that takes all remaining input may be the last,
+         * even if the window forces us to flush earlier.
+         */
+        boolean lastBlock = finish && flush;
         if (storedLen > DeflaterConstants.MAX_BLOCK_SIZE)
           {
             storedLen = DeflaterConstants.MAX_BLOCK_SIZE;
@@ -492,7 +551,9 @@ final class DeflaterEngine implements DeflaterConstants
             && (hashHead = insertString()) != 0
             && strategy != Deflater.HUFFMAN_ONLY
             && strstart - hashHead <= MAX_DIST
-            && findLongestMatch(hashHead))
+            && (comprFunc == DEFLATE_QUICK
+                ? findQuickMatch(hashHead)
+                : findLongestMatch(hashHead)))
           {
             /* longestMatch sets matchStart and matchLen */
             if (DeflaterConstants.DEBUGGING)
@@ -661,6 +722,7 @@ final class DeflaterEngine implements DeflaterConstants
           case DEFLATE_STORED:
             progress = deflateStored(canFlush, finish);
             break;
+          case DEFLATE_QUICK:
           case DEFLATE_FAST:
             progress = deflateFast(canFlush, finish);
             break;
@@ -326,7 +326,8 @@ public class Inflater
         else if (len > 0)
           {
             int more = outputWindow.copyOutput(buf, off, len);
-            adler.update(buf, off, more);
+            if (!nowrap)
+              adler.update(buf, off, more);
             off += more;
             count += more;
             totalOut += more;
@@ -506,6 +507,8 @@ public class Inflater
    */
   private boolean decodeHuffman () throws DataFormatException
   {
+    if (mode == DECODE_HUFFMAN && decodeHuffmanFast())
+      return true;
     int free = outputWindow.getFreeSpace();
     while (free >= 258)
       {
@@ -591,6 +594,134 @@ public class Inflater
     return true;
   }
 
+  /**
+   * Decodes huffman encoded symbols as long as there is enough input
+   * and free space in the output window that no symbol can run out of
+   * either.  This allows to keep the bit buffer, the input position and
+   * the window position in locals, to refill the bit buffer a whole word
+   * at a time and to skip all the checks of the general decoding loop,
+   * which then continues with whatever is left.
+   * @return true if the current block ends.
+   * @exception DataFormatException if deflated stream is invalid.
+   */
+  private boolean decodeHuffmanFast () throws DataFormatException
+  {
+    /* A length/distance pair needs at most 15+5+15+13 bits, so after
+     * a refill to at least 56 bits the bit buffer always suffices, and
+     * each refill reads at most 8 bytes.
+     */
+    byte[] in = input.window;
+    int inPos = input.window_start;
+    int inLast = input.window_end - 8;
+    long bitBuf = input.buffer;
+    int bitCount = input.bits_in_buffer;
+
+    byte[] window = outputWindow.window;
+    int winPos = outputWindow.window_end;
+    int filled = outputWindow.window_filled;
+    int lastFilled = OutputWindow.WINDOW_SIZE - 258;
+
+    short[] litlen = litlenTree.tree;
+    short[] dist = distTree.tree;
+    boolean endOfBlock = false;
+
+    while (inPos <= inLast && filled <= lastFilled)
+      {
+        if (bitCount < 56)
+          {
+            /* Bits above bitCount are either zero or the same bits of
+             * the next input byte we put there in the last refill, so
+             * we can OR the next word into the buffer and advance only
+             * by the whole bytes that fit.
+             */
+            long word = in[inPos] & 0xffL
+              | (in[inPos + 1] & 0xffL) << 8
+              | (in[inPos + 2] & 0xffL) << 16
+              | (in[inPos + 3] & 0xffL) << 24
+              | (in[inPos + 4] & 0xffL) << 32
+              | (in[inPos + 5] & 0xffL) << 40
+              | (in[inPos + 6] & 0xffL) << 48
+              | (long) in[inPos + 7] << 56;
+            bitBuf |= word << bitCount;
+            int bytes = (63 - bitCount) >> 3;
+            inPos += bytes;
+            bitCount += bytes << 3;
+          }
+
+        int symbol = litlen[(int) bitBuf & 511];
+        if (symbol < 0)
+          symbol = litlen[-(symbol >> 4)
+                          | ((int) bitBuf & ((1 << (symbol & 15)) - 1)) >> 9];
+        bitBuf >>>= symbol & 15;
+        bitCount -= symbol & 15;
+        symbol >>= 4;
+
+        if (symbol < 256)
+          {
+            window[winPos] = (byte) symbol;
+            winPos = (winPos + 1) & OutputWindow.WINDOW_MASK;
+            filled++;
+            continue;
+          }
+        if (symbol == 256)
+          {
+            endOfBlock = true;
+            break;
+          }
+
+        symbol -= 257;
+        if (symbol >= CPLENS.length)
+          throw new DataFormatException("Illegal rep length code");
+        int len = CPLENS[symbol];
+        int bits = CPLEXT[symbol];
+        len += (int) bitBuf & ((1 << bits) - 1);
+        bitBuf >>>= bits;
+        bitCount -= bits;
+
+        symbol = dist[(int) bitBuf & 511];
+        if (symbol < 0)
+          symbol = dist[-(symbol >> 4)
+                        | ((int) bitBuf & ((1 << (symbol & 15)) - 1)) >> 9];
+        bitBuf >>>= symbol & 15;
+        bitCount -= symbol & 15;
+        symbol >>= 4;
+        if (symbol >= CPDIST.length)
+          throw new DataFormatException("Illegal rep dist code");
+        int distance = CPDIST[symbol];
+        bits = CPDEXT[symbol];
+        distance += (int) bitBuf & ((1 << bits) - 1);
+        bitBuf >>>= bits;
+        bitCount -= bits;
+
+        int from = (winPos - distance) & OutputWindow.WINDOW_MASK;
+        int border = OutputWindow.WINDOW_SIZE - len;
+        if (from <= border && winPos <= border)
+          OutputWindow.copyRepeat(window, from, winPos, len);
+        else
+          {
+            for (int i = 0; i < len; i++)
+              window[(winPos + i) & OutputWindow.WINDOW_MASK]
+                = window[(from + i) & OutputWindow.WINDOW_MASK];
+          }
+        winPos = (winPos + len) & OutputWindow.WINDOW_MASK;
+        filled += len;
+      }
+
+    input.window_start = inPos;
+    input.buffer = bitBuf & ((1L << bitCount) - 1);
+    input.bits_in_buffer = bitCount;
+    outputWindow.window_end = winPos;
+    outputWindow.window_filled = filled;
+
+    if (endOfBlock)
+      {
+        distTree = null;
+        litlenTree = null;
+        mode = DECODE_BLOCKS;
+      }
+    return endOfBlock;
+  }
+
   /**
    * Decodes the adler checksum after the deflate stream.
    * @return false if more input is needed. 
@@ -41,7 +41,7 @@ class InflaterHuffmanTree
 {
   private static final int MAX_BITLEN = 15;
 
-  private short[] tree;
+  short[] tree;
 
   static InflaterHuffmanTree defLitLenTree, defDistTree;
 
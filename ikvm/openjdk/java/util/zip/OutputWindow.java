@@ -48,12 +48,12 @@ package java.util.zip;
  */
 class OutputWindow
 {
-  private static final int WINDOW_SIZE = 1 << 15;
-  private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+  static final int WINDOW_SIZE = 1 << 15;
+  static final int WINDOW_MASK = WINDOW_SIZE - 1;
 
-  private byte[] window = new byte[WINDOW_SIZE]; //The window is 2^15 bytes
-  private int window_end  = 0;
-  private int window_filled = 0;
+  byte[] window = new byte[WINDOW_SIZE]; //The window is 2^15 bytes
+  int window_end  = 0;
+  int window_filled = 0;
 
   public void write(int abyte)
   {
@@ -82,23 +82,43 @@ class OutputWindow
     int border = WINDOW_SIZE - len;
     if (rep_start <= border && window_end < border)
       {
-        if (len <= dist)
-          {
-            System.arraycopy(window, rep_start, window, window_end, len);
-            window_end += len;
-          }
-        else
-          {
-            /* We have to copy manually, since the repeat pattern overlaps.
-             */
-            while (len-- > 0)
-              window[window_end++] = window[rep_start++];
-          }
+        copyRepeat(window, rep_start, window_end, len);
+        window_end += len;
       }
     else
       slowRepeat(rep_start, len, dist);
   }
 
+  /**
+   * Copies len bytes starting at rep_start to window_end, where neither
+   * range wraps around the end of the window.  If the repeat pattern
+   * overlaps, the bytes already copied repeat the pattern, so we can
+   * still copy in chunks that double in size every step.
+   */
+  static void copyRepeat(byte[] window, int rep_start, int window_end,
+                         int len)
+  {
+    int dist = window_end - rep_start;
+    if (dist <= 0 || len <= dist)
+      {
+        System.arraycopy(window, rep_start, window, window_end, len);
+        return;
+      }
+    if (len <= 8)
+      {
+        while (len-- > 0)
+          window[window_end++] = window[rep_start++];
+        return;
+      }
+    int end = window_end + len;
+    while (window_end < end)
+      {
+        int chunk = Math.min(window_end - rep_start, end - window_end);
+        System.arraycopy(window, rep_start, window, window_end, chunk);
+        window_end += chunk;
+      }
+  }
+
   public int copyStored(StreamManipulator input, int len)
   {
     len = Math.min(Math.min(len, WINDOW_SIZE - window_filled), 
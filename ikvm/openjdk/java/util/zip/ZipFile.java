@@ -39,20 +39,28 @@ exception statement from your version. */
 
 package java.util.zip;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.InputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.jar.JarFile;
 import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import static java.util.zip.ZipConstants64.*;
 
 /**
@@ -84,6 +92,17 @@ public class ZipFile implements ZipConstants, Closeable
    */
   static final int ENDNRD =  4;
 
+  /**
+   * The maximum number of idle inflaters kept per zip file.
+   */
+  private static final int INFLATER_CACHE_SIZE = 8;
+
+  /**
+   * Deflated entries up to this size are inflated in one go when their
+   * input stream is opened.
+   */
+  private static final int INFLATE_EAGERLY_SIZE = 64 * 1024;
+
   // Name of this zip file.
   private final String name;
 
@@ -93,8 +112,33 @@ public class ZipFile implements ZipConstants, Closeable
   // File from which zip entries are read.
   private final RandomAccessFile raf;
 
-  // The entries of this zip file when initialized and not yet closed.
-  private LinkedHashMap<String, ZipEntry> entries;
+  // The descriptor of raf, used for positional reads.
+  private final FileDescriptor fd;
+
+  // The central directory of this zip file when initialized and not yet
+  // closed.  It is read once and ZipEntry objects are only created from it
+  // when they are asked for.
+  private byte[] cen;
+
+  // For each central directory record, in file order, the hash code of its
+  // name followed by the offset of the record in cen.
+  private int[] entryTable;
+
+  // The number of central directory records.
+  private int entryCount;
+
+  // Open addressing hash table (linear probing) that maps the hash code of
+  // an entry name to the entry number + 1, zero marks a free slot.
+  private int[] index;
+
+  // The class stub entries added by expandIkvmClasses, or null.
+  private LinkedHashMap<String, ZipEntry> stubs;
+
+  // The entry number of the ikvm class list entry that stubs replaces.
+  private int stubsEntry = -1;
+
+  // Inflaters released by closed entry streams, ready to be reused.
+  private final ArrayDeque<Inflater> inflaterCache = new ArrayDeque<Inflater>();
 
   private boolean closed = false;
   final boolean hasLocHeader;
@@ -191,6 +235,7 @@ public class ZipFile implements ZipConstants, Closeable
     if ((mode & OPEN_DELETE) != 0)
       file.deleteOnExit();
     this.raf = new RandomAccessFile(file, "r");
+    this.fd = raf.getFD();
     this.name = file.getPath();
     this.charset = charset;
     this.hasLocHeader = raf.length() >= 4 && raf.readInt() == (int)((LOCSIG << 24) | ((LOCSIG & 0xFF00) << 8) | ((LOCSIG & 0xFF0000) >> 8) | (LOCSIG >> 24));
@@ -200,7 +245,7 @@ public class ZipFile implements ZipConstants, Closeable
     try 
       {
         readEntries();
-        ClassStubZipEntry.expandIkvmClasses(this, entries);
+        expandIkvmClasses();
         valid = true;
       }
     catch (EOFException _)
@@ -232,9 +277,39 @@ public class ZipFile implements ZipConstants, Closeable
   }
 
   /**
-   * Read the central directory of a zip file and fill the entries
-   * array.  This is called exactly once when first needed. It is called
-   * while holding the lock on <code>raf</code>.
+   * close() clears the central directory fields, so the lookups that can
+   * race with it read each field once through these, which then throw
+   * the exception of checkClosed() instead of a NullPointerException.
+   */
+  private byte[] cen()
+  {
+    byte[] cen = this.cen;
+    if (cen == null)
+      throw new IllegalStateException("zip file closed");
+    return cen;
+  }
+
+  private int[] entryTable()
+  {
+    int[] entryTable = this.entryTable;
+    if (entryTable == null)
+      throw new IllegalStateException("zip file closed");
+    return entryTable;
+  }
+
+  private int[] index()
+  {
+    int[] index = this.index;
+    if (index == null)
+      throw new IllegalStateException("zip file closed");
+    return index;
+  }
+
+  /**
+   * Read the central directory of a zip file into the cen array and
+   * build the name index.  This is called exactly once when the file
+   * is opened.  No ZipEntry objects are created, the records are only
+   * validated and their names hashed.
    *
    * @exception IOException if a i/o error occured.
    * @exception ZipException if the central directory is malformed 
@@ -274,54 +349,365 @@ public class ZipFile implements ZipConstants, Closeable
     if (centralOffset > pos - centralSize)
       throw new ZipException("invalid END header (bad central directory offset)");
 
-    entries = new LinkedHashMap<String, ZipEntry> (count+count/2);
-    inp.seek(pos - centralSize);
-    
-    while (inp.position() <= pos - CENHDR)
+    if (centralSize > Integer.MAX_VALUE)
+      throw new ZipException("invalid END header (central directory too large)");
+
+    cen = new byte[(int) centralSize];
+    readAt(pos - centralSize, cen, 0, cen.length);
+
+    int[] table = new int[Math.max(16, Math.min(count, cen.length / CENHDR) * 2)];
+    int n = 0;
+    int off = 0;
+    while (off <= cen.length - CENHDR)
       {
-        if (inp.readLeInt() != CENSIG)
+        if (cenInt(cen, off) != CENSIG)
           throw new ZipException("invalid CEN header (bad signature)");
 
-        inp.skip(4);
-        int flags = inp.readLeUnsignedShort();
+        int flags = cenUnsignedShort(cen, off + CENFLG);
         if ((flags & 1) != 0)
           throw new ZipException("invalid CEN header (encrypted entry)");
-        int method = inp.readLeUnsignedShort();
+        int method = cenUnsignedShort(cen, off + CENHOW);
         if (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
           throw new ZipException("invalid CEN header (bad compression method)");
-        ZipEntry entry = new ZipEntry();
-        entry.flag = flags;
-        entry.method = method;
-        entry.xdostime = inp.readLeUnsignedInt();
-        entry.crc = inp.readLeUnsignedInt();
-        entry.csize = inp.readLeUnsignedInt();
-        entry.size = inp.readLeUnsignedInt();
-        int nameLen = inp.readLeUnsignedShort();
-        int extraLen = inp.readLeUnsignedShort();
-        int commentLen = inp.readLeUnsignedShort();
-        inp.skip(8);
-        entry.offset = inp.readLeUnsignedInt();
-        entry.name = inp.readString(nameLen, (flags & EFS) != 0);
-
-        if (extraLen > 0)
+        int nameLen = cenUnsignedShort(cen, off + CENNAM);
+        int next = off + CENHDR + nameLen
+          + cenUnsignedShort(cen, off + CENEXT) + cenUnsignedShort(cen, off + CENCOM);
+        if (next > cen.length)
+          throw new EOFException();
+
+        if (n * 2 == table.length)
+          table = Arrays.copyOf(table, table.length * 2);
+        table[n * 2] = hashName(off + CENHDR, nameLen, isUtf8(flags));
+        table[n * 2 + 1] = off;
+        n++;
+        if (isManifestName(off + CENHDR, nameLen)) {
+          manifestNum++;
+        }
+        off = next;
+      }
+
+    if (off != cen.length)
+      throw new ZipException("invalid CEN header (bad header size)");
+
+    entryTable = table;
+    entryCount = n;
+    buildIndex();
+  }
+
+  /**
+   * Builds the open addressing name index over entryTable.  When a name
+   * occurs more than once, the last record wins.
+   */
+  private void buildIndex()
+  {
+    int size = Integer.highestOneBit(Math.max(entryCount, 1) * 4 / 3) * 2;
+    int mask = size - 1;
+    int[] index = new int[size];
+    for (int e = 0; e < entryCount; e++)
+      {
+        int hash = entryTable[e * 2];
+        int i = mix(hash) & mask;
+        for (;;)
           {
-            byte[] extra = new byte[extraLen];
-            inp.readFully(extra);
-            entry.setExtra0(extra, false);
-            readZip64ExtraField(entry, extra);
+            int other = index[i] - 1;
+            if (other < 0)
+              break;
+            if (entryTable[other * 2] == hash
+                && cenNameEquals(entryTable[other * 2 + 1], entryTable[e * 2 + 1]))
+              break;
+            i = (i + 1) & mask;
           }
-        if (commentLen > 0)
+        index[i] = e + 1;
+      }
+    this.index = index;
+  }
+
+  /**
+   * Spreads the bits of a String hash code, so that names that only
+   * differ in their last character do not end up in adjacent slots.
+   */
+  private static int mix(int hash)
+  {
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the entry number of the central directory record with the
+   * given name, or -1 if there is no such record.
+   */
+  private int findEntry(String name)
+  {
+    int[] index = index();
+    int[] entryTable = entryTable();
+    byte[] cen = cen();
+    int hash = name.hashCode();
+    int mask = index.length - 1;
+    for (int i = mix(hash) & mask; ; i = (i + 1) & mask)
+      {
+        int e = index[i] - 1;
+        if (e < 0)
+          return -1;
+        if (entryTable[e * 2] == hash && nameEquals(cen, entryTable[e * 2 + 1], name))
+          return e;
+      }
+  }
+
+  /**
+   * Adds the class stub entries of ikvm compiled jars that live in the
+   * virtual file system.  Only jars that contain the ikvm class list entry
+   * need this, for all others the central directory is used unchanged.
+   */
+  private void expandIkvmClasses()
+  {
+    int e = findEntry(CLASS_LIST_NAME);
+    if (e != -1)
+      {
+        LinkedHashMap<String, ZipEntry> map = new LinkedHashMap<String, ZipEntry>();
+        map.put(CLASS_LIST_NAME, getZipEntry(e));
+        ClassStubZipEntry.expandIkvmClasses(this, map);
+        stubs = map;
+        stubsEntry = e;
+      }
+  }
+
+  // Must match JVM.JarClassList in the runtime.
+  private static final String CLASS_LIST_NAME = "--ikvm-classes--/";
+
+  /**
+   * Returns a new ZipEntry for the entry with the given name, or null.
+   */
+  private ZipEntry lookup(String name)
+  {
+    LinkedHashMap<String, ZipEntry> stubs = this.stubs;
+    if (stubs != null)
+      {
+        ZipEntry entry = stubs.get(name);
+        if (entry != null)
+          return (ZipEntry) entry.clone();
+      }
+    int e = findEntry(name);
+    if (e == -1 || e == stubsEntry)
+      return null;
+    return getZipEntry(e);
+  }
+
+  /**
+   * Creates the ZipEntry for the central directory record with the given
+   * entry number.
+   */
+  private ZipEntry getZipEntry(int e)
+  {
+    byte[] cen = cen();
+    int pos = entryTable()[e * 2 + 1];
+    int flags = cenUnsignedShort(cen, pos + CENFLG);
+    boolean utf8 = isUtf8(flags);
+    ZipEntry entry = new ZipEntry();
+    entry.flag = flags;
+    entry.method = cenUnsignedShort(cen, pos + CENHOW);
+    entry.xdostime = cenUnsignedInt(cen, pos + CENTIM);
+    entry.crc = cenUnsignedInt(cen, pos + CENCRC);
+    entry.csize = cenUnsignedInt(cen, pos + CENSIZ);
+    entry.size = cenUnsignedInt(cen, pos + CENLEN);
+    int nameLen = cenUnsignedShort(cen, pos + CENNAM);
+    int extraLen = cenUnsignedShort(cen, pos + CENEXT);
+    int commentLen = cenUnsignedShort(cen, pos + CENCOM);
+    entry.offset = cenUnsignedInt(cen, pos + CENOFF);
+    pos += CENHDR;
+    entry.name = decodeChars(cen, pos, nameLen, utf8);
+    pos += nameLen;
+
+    if (extraLen > 0)
+      {
+        byte[] extra = Arrays.copyOfRange(cen, pos, pos + extraLen);
+        entry.setExtra0(extra, false);
+        readZip64ExtraField(entry, extra);
+        pos += extraLen;
+      }
+    if (commentLen > 0)
+      {
+        entry.comment = decodeChars(cen, pos, commentLen, utf8);
+      }
+    return entry;
+  }
+
+  private boolean isUtf8(int flags)
+  {
+    return (flags & EFS) != 0 || charset == StandardCharsets.UTF_8;
+  }
+
+  /**
+   * Computes the String hash code of an entry name without decoding it,
+   * as long as the name is pure ASCII.
+   */
+  private int hashName(int off, int len, boolean utf8)
+  {
+    if (utf8)
+      {
+        int hash = 0;
+        int end = off + len;
+        for (int i = off; i < end; i++)
           {
-            entry.comment = inp.readString(commentLen, (flags & EFS) != 0);
+            byte b = cen[i];
+            if (b < 0)
+              return decodeChars(cen, off, len, utf8).hashCode();
+            hash = 31 * hash + b;
           }
-        if (isManifestName(entry.name)) {
-          manifestNum++;
-        }
-        entries.put(entry.name, entry);
+        return hash;
       }
+    return decodeChars(cen, off, len, utf8).hashCode();
+  }
 
-    if (inp.position() != pos)
-      throw new ZipException("invalid CEN header (bad header size)");
+  /**
+   * Compares the name of the central directory record at pos with name,
+   * decoding the record's name only when it is not pure ASCII.
+   */
+  private boolean nameEquals(byte[] cen, int pos, String name)
+  {
+    boolean utf8 = isUtf8(cenUnsignedShort(cen, pos + CENFLG));
+    int len = cenUnsignedShort(cen, pos + CENNAM);
+    int off = pos + CENHDR;
+    if (utf8)
+      {
+        int n = Math.min(len, name.length());
+        int i = 0;
+        while (i < n && cen[off + i] == name.charAt(i))
+          i++;
+        // a byte can only be equal to a char when it is ASCII
+        if (i == len)
+          return i == name.length();
+        if (cen[off + i] >= 0)
+          return false;
+      }
+    return decodeChars(cen, off, len, utf8).equals(name);
+  }
+
+  private boolean cenNameEquals(int pos1, int pos2)
+  {
+    int len = cenUnsignedShort(cen, pos1 + CENNAM);
+    if (len != cenUnsignedShort(cen, pos2 + CENNAM))
+      return false;
+    pos1 += CENHDR;
+    pos2 += CENHDR;
+    for (int i = 0; i < len; i++)
+      {
+        if (cen[pos1 + i] != cen[pos2 + i])
+          return false;
+      }
+    return true;
+  }
+
+  private boolean isManifestName(int off, int len)
+  {
+    // skip leading /
+    if (len > 0 && cen[off] == '/')
+      {
+        off++;
+        len--;
+      }
+    if (len != MANIFEST_NAME.length())
+      return false;
+    for (int i = 0; i < len; i++)
+      {
+        int c = cen[off + i];
+        if (c >= 'a' && c <= 'z')
+          c -= 'a' - 'A';
+        if (c != MANIFEST_NAME.charAt(i))
+          return false;
+      }
+    return true;
+  }
+
+  private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+  /**
+   * Returns the names of the entries in META-INF/ (ignoring case), or null
+   * if there are none.  This is used by JarFile when it is opened, so it
+   * only decodes the names that match instead of creating all entries.
+   */
+  String[] getMetaInfEntryNames()
+  {
+    checkClosed();
+    byte[] cen = cen();
+    int[] entryTable = entryTable();
+    LinkedHashMap<String, ZipEntry> stubs = this.stubs;
+    ArrayList<String> list = null;
+    for (int e = 0; e < entryCount; e++)
+      {
+        int pos = entryTable[e * 2 + 1];
+        int len = cenUnsignedShort(cen, pos + CENNAM);
+        if (e != stubsEntry && isMetaInfName(cen, pos + CENHDR, len))
+          {
+            if (list == null)
+              list = new ArrayList<String>();
+            list.add(decodeChars(cen, pos + CENHDR, len,
+                                 isUtf8(cenUnsignedShort(cen, pos + CENFLG))));
+          }
+      }
+    if (stubs != null)
+      {
+        for (String name : stubs.keySet())
+          {
+            if (name.regionMatches(true, 0, META_INF, 0, META_INF.length()))
+              {
+                if (list == null)
+                  list = new ArrayList<String>();
+                list.add(name);
+              }
+          }
+      }
+    return list == null ? null : list.toArray(new String[list.size()]);
+  }
+
+  private static boolean isMetaInfName(byte[] cen, int off, int len)
+  {
+    if (len < META_INF.length())
+      return false;
+    for (int i = 0; i < META_INF.length(); i++)
+      {
+        int c = cen[off + i];
+        if (c >= 'a' && c <= 'z')
+          c -= 'a' - 'A';
+        if (c != META_INF.charAt(i))
+          return false;
+      }
+    return true;
+  }
+
+  private static final String META_INF = "META-INF/";
+
+  private static int cenUnsignedShort(byte[] cen, int off)
+  {
+    return decodeLeUnsignedShort(cen, off);
+  }
+
+  private static int cenInt(byte[] cen, int off)
+  {
+    return decodeLeInt(cen, off);
+  }
+
+  private static long cenUnsignedInt(byte[] cen, int off)
+  {
+    return cenInt(cen, off) & 0xffffffffL;
+  }
+
+  /**
+   * Reads len bytes starting at the given file position.  This uses
+   * positional reads that don't touch the file pointer of raf, so
+   * threads reading from different entry streams don't serialize on it.
+   */
+  private void readAt(long position, byte[] buf, int off, int len)
+    throws IOException
+  {
+    while (len > 0)
+      {
+        int n = fd.readBytes(buf, off, len, position);
+        if (n < 0)
+          throw new EOFException();
+        position += n;
+        off += n;
+        len -= n;
+      }
   }
 
   private static void readZip64ExtraField(ZipEntry entry, byte[] extra)
@@ -363,6 +749,14 @@ public class ZipFile implements ZipConstants, Closeable
     return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
   }
 
+  private static int decodeLeInt(byte[] b, int off)
+  {
+    return (b[off] & 0xFF)
+      | (b[off + 1] & 0xFF) << 8
+      | (b[off + 2] & 0xFF) << 16
+      | b[off + 3] << 24;
+  }
+
   private static long decodeLeLong(byte[] b, int off)
   {
     return 0
@@ -392,7 +786,16 @@ public class ZipFile implements ZipConstants, Closeable
     synchronized (raf)
       {
         closed = true;
-        entries = null;
+        synchronized (inflaterCache)
+          {
+            for (Inflater inf : inflaterCache)
+              inf.end();
+            inflaterCache.clear();
+          }
+        cen = null;
+        entryTable = null;
+        index = null;
+        stubs = null;
         raf.close();
       }
   }
@@ -414,13 +817,14 @@ public class ZipFile implements ZipConstants, Closeable
   public Enumeration<? extends ZipEntry> entries()
   {
     checkClosed();
-    return new ZipEntryEnumeration(entries.values().iterator());
+    return new ZipEntryIterator();
   }
 
   public Stream<? extends ZipEntry> stream()
   {
     checkClosed();
-    return entries.values().stream();
+    return StreamSupport.stream(Spliterators.spliterator(new ZipEntryIterator(),
+        size(), Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
   }
 
   /**
@@ -435,11 +839,11 @@ public class ZipFile implements ZipConstants, Closeable
   public ZipEntry getEntry(String name)
   {
     checkClosed();
-    ZipEntry entry = entries.get(name);
+    ZipEntry entry = lookup(name);
     // If we didn't find it, maybe it's a directory.
     if (entry == null && !name.endsWith("/"))
-      entry = entries.get(name + '/');
-    return entry != null ? (ZipEntry)entry.clone() : null;
+      entry = lookup(name + '/');
+    return entry;
   }
 
   /**
@@ -468,13 +872,21 @@ public class ZipFile implements ZipConstants, Closeable
   {
     checkClosed();
 
-    final ZipEntry zipEntry = entries.get(entry.getName());
+    final ZipEntry zipEntry = lookup(entry.getName());
     if (zipEntry == null)
       return null;
 
     if (zipEntry instanceof ClassStubZipEntry)
       return ((ClassStubZipEntry)zipEntry).getInputStream();
 
+    // Small deflated entries, like most class files, are inflated straight
+    // into an array of the right size, skipping the stream layers.
+    if (zipEntry.getMethod() == ZipOutputStream.DEFLATED
+        && zipEntry.getSize() >= 0
+        && zipEntry.getSize() <= INFLATE_EAGERLY_SIZE
+        && zipEntry.getCompressedSize() <= INFLATE_EAGERLY_SIZE)
+      return new ByteArrayInputStream(readEntry(zipEntry));
+
     PartialInputStream inp = new PartialInputStream(1024) {
         void lazyInitialSeek() throws IOException {
             seek(zipEntry.offset);
@@ -498,15 +910,18 @@ public class ZipFile implements ZipConstants, Closeable
         return inp;
       case ZipOutputStream.DEFLATED:
         inp.addDummyByte();
-        final Inflater inf = new Inflater(true);
+        final Inflater inf = getInflater();
         final int sz = (int) zipEntry.getSize();
         return new InflaterInputStream(inp, inf)
         {
           private boolean closed;
           public void close() throws IOException
           {
+            if (closed)
+              return;
             closed = true;
             super.close();
+            releaseInflater(inf);
           }
           public int available() throws IOException
           {
@@ -523,6 +938,146 @@ public class ZipFile implements ZipConstants, Closeable
         throw new ZipException("invalid compression method");
       }
   }
+
+  /**
+   * Reads the complete uncompressed contents of the given entry into an
+   * array of exactly the entry's size.  The compressed data is read with
+   * a single positional read and inflated in one call, so this is much
+   * cheaper than reading the entry's input stream, in particular for the
+   * small entries that class loaders read.
+   *
+   * @param entry the entry to read.
+   * @return the contents, or null if the requested entry does not exist.
+   *
+   * @exception IllegalStateException when the ZipFile has already been closed
+   * @exception IOException if a i/o error occured.
+   * @exception ZipException if the Zip archive is malformed.  
+   */
+  @ikvm.lang.Internal
+  public byte[] readAllBytes(ZipEntry entry) throws IOException
+  {
+    checkClosed();
+
+    ZipEntry zipEntry = lookup(entry.getName());
+    if (zipEntry == null)
+      return null;
+
+    if (zipEntry instanceof ClassStubZipEntry
+        || zipEntry.getSize() < 0
+        || zipEntry.getSize() > Integer.MAX_VALUE - 8
+        || zipEntry.getCompressedSize() > Integer.MAX_VALUE - 8)
+      {
+        // the slow way
+        try (InputStream in = getInputStream(zipEntry))
+          {
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0)
+              out.write(buf, 0, n);
+            return out.toByteArray();
+          }
+      }
+
+    return readEntry(zipEntry);
+  }
+
+  private byte[] readEntry(ZipEntry zipEntry) throws IOException
+  {
+    long dataOffset = getDataOffset(zipEntry);
+    int size = (int) zipEntry.getSize();
+    int csize = (int) zipEntry.getCompressedSize();
+    byte[] data = new byte[size];
+
+    switch (zipEntry.getMethod())
+      {
+      case ZipOutputStream.STORED:
+        if (csize != size)
+          throw new ZipException("invalid entry size (expected " + size
+                                 + " but got " + csize + " bytes)");
+        readAt(dataOffset, data, 0, size);
+        return data;
+      case ZipOutputStream.DEFLATED:
+        // one extra dummy byte for the nowrap Inflater
+        byte[] compressed = new byte[csize + 1];
+        readAt(dataOffset, compressed, 0, csize);
+        Inflater inf = getInflater();
+        try
+          {
+            inf.setInput(compressed);
+            int count = 0;
+            while (count < size)
+              {
+                int n = inf.inflate(data, count, size - count);
+                if (n == 0)
+                  throw new ZipException("invalid entry size (expected " + size
+                                         + " but got " + count + " bytes)");
+                count += n;
+              }
+            // the deflate stream must end here, otherwise the entry would
+            // be silently truncated to the size in the central directory
+            if (!inf.finished())
+              {
+                if (inf.inflate(new byte[1]) != 0 || !inf.finished())
+                  throw new ZipException("invalid entry size (expected " + size
+                                         + " bytes, but the compressed data is longer)");
+              }
+            return data;
+          }
+        catch (DataFormatException x)
+          {
+            String s = x.getMessage();
+            throw new ZipException(s != null ? s : "Invalid ZLIB data format");
+          }
+        finally
+          {
+            releaseInflater(inf);
+          }
+      default:
+        throw new ZipException("invalid compression method");
+      }
+  }
+
+  /**
+   * Returns the file position of the entry's data, after its local header.
+   */
+  private long getDataOffset(ZipEntry zipEntry) throws IOException
+  {
+    byte[] loc = new byte[LOCHDR];
+    readAt(zipEntry.offset, loc, 0, LOCHDR);
+    if (decodeLeInt(loc, 0) != LOCSIG)
+      throw new ZipException("invalid LOC header (bad signature)");
+    return zipEntry.offset + LOCHDR
+      + decodeLeUnsignedShort(loc, LOCNAM)
+      + decodeLeUnsignedShort(loc, LOCEXT);
+  }
+
+  /**
+   * Returns an idle inflater of this zip file, or a new one.
+   */
+  private Inflater getInflater()
+  {
+    synchronized (inflaterCache)
+      {
+        Inflater inf = inflaterCache.poll();
+        if (inf != null)
+          return inf;
+      }
+    return new Inflater(true);
+  }
+
+  /**
+   * Resets the inflater and keeps it for reuse, unless the cache is full.
+   */
+  private void releaseInflater(Inflater inf)
+  {
+    inf.reset();
+    synchronized (inflaterCache)
+      {
+        if (inflaterCache.size() < INFLATER_CACHE_SIZE)
+          inflaterCache.add(inf);
+      }
+  }
   
   /**
    * Returns the (path) name of this zip file.
@@ -540,7 +1095,11 @@ public class ZipFile implements ZipConstants, Closeable
   public int size()
   {
     checkClosed();
-    return entries.size();
+    int size = entryCount;
+    LinkedHashMap<String, ZipEntry> stubs = this.stubs;
+    if (stubs != null)
+      size += stubs.size() - 1;
+    return size;
   }
 
   /**
@@ -567,26 +1126,79 @@ public class ZipFile implements ZipConstants, Closeable
       }
   }
 
-  private static class ZipEntryEnumeration implements Enumeration<ZipEntry>
+  /**
+   * Decode chars from byte buffer using charset encoding.  This
+   * operation is performance-critical since a jar file contains a
+   * large number of strings for the name of each file in the
+   * archive.  This routine therefore avoids using the expensive
+   * utf8Decoder when decoding is straightforward.
+   *
+   * @param buffer the buffer that contains the encoded character
+   *        data
+   * @param pos the index in buffer of the first byte of the encoded
+   *        data
+   * @param length the length of the encoded data in number of
+   *        bytes.
+   *
+   * @return a String that contains the decoded characters.
+   */
+  private String decodeChars(byte[] buffer, int pos, int length, boolean utf8)
   {
-    private final Iterator<ZipEntry> elements;
+    if (!utf8 && charset != StandardCharsets.UTF_8)
+      return new String(buffer, pos, length, charset);
 
-    public ZipEntryEnumeration(Iterator<ZipEntry> elements)
+    for (int i = pos; i < pos + length; i++)
+      {
+        if (buffer[i] <= 0)
+          return new String(buffer, pos, length, StandardCharsets.UTF_8);
+      }
+    return new String(buffer, 0, pos, length);
+  }
+
+  /**
+   * Creates the entries in central directory order, followed by the class
+   * stub entries (if any).  Every entry returned is a new object, so the
+   * user can't change the entries of this zip file.
+   */
+  private class ZipEntryIterator implements Iterator<ZipEntry>, Enumeration<ZipEntry>
+  {
+    private int next;
+    private Iterator<ZipEntry> stubIterator;
+
+    public boolean hasNext()
+    {
+      if (next == stubsEntry)
+        next++;
+      if (next < entryCount)
+        return true;
+      if (stubIterator == null)
+        {
+          LinkedHashMap<String, ZipEntry> stubs = ZipFile.this.stubs;
+          if (stubs == null)
+            return false;
+          stubIterator = stubs.values().iterator();
+        }
+      return stubIterator.hasNext();
+    }
+
+    public ZipEntry next()
     {
-      this.elements = elements;
+      if (!hasNext())
+        throw new NoSuchElementException();
+      checkClosed();
+      if (next < entryCount)
+        return getZipEntry(next++);
+      return (ZipEntry) stubIterator.next().clone();
     }
 
     public boolean hasMoreElements()
     {
-      return elements.hasNext();
+      return hasNext();
     }
 
     public ZipEntry nextElement()
     {
-      /* We return a clone, just to be safe that the user doesn't
-       * change the entry.  
-       */
-      return (ZipEntry) (elements.next().clone());
+      return next();
     }
   }
 
@@ -652,19 +1264,15 @@ public class ZipFile implements ZipConstants, Closeable
       if (closed)
         throw new ZipException("ZipFile closed");
 
-      synchronized (raf)
+      long len = end - bufferOffset;
+      if (len == 0 && dummyByteCount > 0)
         {
-          long len = end - bufferOffset;
-          if (len == 0 && dummyByteCount > 0)
-            {
-              buffer[0] = 0;
-              dummyByteCount = 0;
-            }
-          else
-            {
-              raf.seek(bufferOffset);
-              raf.readFully(buffer, 0, (int) Math.min(buffer.length, len));
-            }
+          buffer[0] = 0;
+          dummyByteCount = 0;
+        }
+      else
+        {
+          readAt(bufferOffset, buffer, 0, (int) Math.min(buffer.length, len));
         }
     }
     
@@ -838,59 +1446,22 @@ public class ZipFile implements ZipConstants, Closeable
       return readLeUnsignedInt() | (readLeUnsignedInt() << 32);
     }
 
-    /**
-     * Decode chars from byte buffer using charset encoding.  This
-     * operation is performance-critical since a jar file contains a
-     * large number of strings for the name of each file in the
-     * archive.  This routine therefore avoids using the expensive
-     * utf8Decoder when decoding is straightforward.
-     *
-     * @param buffer the buffer that contains the encoded character
-     *        data
-     * @param pos the index in buffer of the first byte of the encoded
-     *        data
-     * @param length the length of the encoded data in number of
-     *        bytes.
-     *
-     * @return a String that contains the decoded characters.
-     */
-    private String decodeChars(byte[] buffer, int pos, int length, boolean utf8)
-      throws IOException
-    {
-      if (!utf8 && charset != StandardCharsets.UTF_8)
-        return new String(buffer, pos, length, charset);
-
-      for (int i = pos; i < pos + length; i++)
-        {
-          if (buffer[i] <= 0)
-            return new String(buffer, pos, length, "UTF-8");
-        }
-      return new String(buffer, 0, pos, length);
-    }
-
     String readString(int length, boolean utf8) throws IOException
     {
       if (length > end - (bufferOffset + pos))
         throw new EOFException();
 
-      String result = null;
-      try
+      String result;
+      if (buffer.length - pos >= length)
         {
-          if (buffer.length - pos >= length)
-            {
-              result = decodeChars(buffer, pos, length, utf8);
-              pos += length;
-            }
-          else
-            {
-              byte[] b = new byte[length];
-              readFully(b);
-              result = decodeChars(b, 0, length, utf8);
-            }
+          result = decodeChars(buffer, pos, length, utf8);
+          pos += length;
         }
-      catch (UnsupportedEncodingException uee)
+      else
         {
-          throw new AssertionError(uee);
+          byte[] b = new byte[length];
+          readFully(b);
+          result = decodeChars(b, 0, length, utf8);
         }
       return result;
     }
@@ -28,6 +28,8 @@ package sun.nio.ch;
 import java.io.IOException;
 import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
+import java.security.AccessController;
+import sun.security.action.GetIntegerAction;
 
 
 /**
@@ -43,11 +45,21 @@ public class DefaultSelectorProvider {
 
     /**
      * Returns the default SelectorProvider.
+     *
+     * With -Dsun.nio.ch.selectorShards=N (N > 1) every selector spreads the
+     * keys it has to poll over N poller threads.  N = -1 uses one poller per
+     * processor.
      */
     public static SelectorProvider create() {
+        int shards = AccessController.doPrivileged(
+            new GetIntegerAction("sun.nio.ch.selectorShards", 0));
+        if (shards < 0) {
+            shards = Runtime.getRuntime().availableProcessors();
+        }
+        final int selectorShards = shards;
         return new SelectorProviderImpl() {
             public AbstractSelector openSelector() throws IOException {
-                return new DotNetSelectorImpl(this);
+                return new DotNetSelectorImpl(this, selectorShards);
             }
         };
     }
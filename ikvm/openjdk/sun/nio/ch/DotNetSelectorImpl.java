@@ -23,16 +23,16 @@
  * questions.
  */
 
-// Parts Copyright (C) 2002-2007 Jeroen Frijters
+// Parts Copyright (C) 2002-2026 Jeroen Frijters
 
 package sun.nio.ch;
 
+import cli.System.AsyncCallback;
+import cli.System.IAsyncResult;
 import cli.System.Net.Sockets.Socket;
 import cli.System.Net.Sockets.SocketException;
-import cli.System.Net.Sockets.AddressFamily;
+import cli.System.Net.Sockets.SocketFlags;
 import cli.System.Net.Sockets.SocketType;
-import cli.System.Net.Sockets.ProtocolType;
-import cli.System.Net.Sockets.SelectMode;
 import cli.System.Collections.ArrayList;
 import java.io.IOException;
 import java.nio.channels.ClosedSelectorException;
@@ -40,19 +40,44 @@ import java.nio.channels.Pipe;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
-import java.nio.channels.spi.AbstractSelectableChannel;
-import java.nio.channels.spi.AbstractSelector;
 import java.nio.channels.spi.SelectorProvider;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * A selector built on Socket.Select and zero-byte receives.
+ *
+ * Socket.Select needs the complete list of sockets on every call, which
+ * doesn't scale to many mostly idle connections. So instead of polling,
+ * a connected stream socket that is interested in OP_READ gets a
+ * zero-byte BeginReceive posted. That completes, without consuming any
+ * data, as soon as data (or end of stream, or an error) is available, and
+ * its callback queues the key and wakes up the selector. Once the key has
+ * been selected the receive is posted again (or the key is queued again
+ * right away, if data is still available), so readiness stays level
+ * triggered like it is for the other selectors.
+ *
+ * Only keys that can't be handled that way (OP_ACCEPT, OP_CONNECT,
+ * OP_WRITE and datagram sockets) are passed to Socket.Select, so the work
+ * per select is proportional to those keys plus the ready keys, not to all
+ * registered keys. Interest set changes are queued by putEventOps and
+ * applied at the start of the next select.
+ *
+ * When the selector is created with shards, those keys are spread over
+ * that many poller threads, which each run Socket.Select on their share
+ * and hand the ready keys back, so a single selector can use more than
+ * one core. A key that has been handed back isn't polled again until the
+ * selecting thread has processed it.
+ */
 final class DotNetSelectorImpl extends SelectorImpl
 {
-    private ArrayList channelArray = new ArrayList();
+    private static final byte[] EMPTY = new byte[0];
+
+    private boolean closed;
     private long updateCount = 0;
 
     //Pipe used as a wakeup object.
@@ -61,24 +86,77 @@ final class DotNetSelectorImpl extends SelectorImpl
     // File descriptors corresponding to source and sink
     private final Socket wakeupSourceFd, wakeupSinkFd;
 
-    // Lock for interrupt triggering and clearing
-    private final Object interruptLock = new Object();
-    private volatile boolean interruptTriggered = false;
+    // Set while a wakeup is pending, so further wakeups are just an atomic check
+    private final AtomicBoolean interruptTriggered = new AtomicBoolean();
+
+    // the poller threads, or null if the selecting thread polls itself
+    private final Poller[] pollers;
+    private int nextPoller;
 
     // class for fdMap entries
-    private final static class MapEntry
+    private final class MapEntry implements AsyncCallback.Method
     {
-        SelectionKeyImpl ski;
+        final SelectionKeyImpl ski;
+        final Socket socket;
+        final boolean stream;
+        final AsyncCallback callback;
         long updateCount = 0;
         long clearedCount = 0;
+        // the following are only used by the selecting thread
+        boolean polled;
+        boolean probing;
+        // the poller the key has been handed to, until it is handed back
+        Poller poller;
+        // the ops the poller polls for, and the events it found
+        volatile int pollOps;
+        int polledEvents;
         MapEntry(SelectionKeyImpl ski)
         {
             this.ski = ski;
+            this.socket = ski.getSocket();
+            this.stream = socket.get_SocketType().Value == SocketType.Stream;
+            this.callback = new AsyncCallback(this);
+        }
+
+        // completion of the zero-byte receive, on a thread pool thread
+        public void Invoke(IAsyncResult ar)
+        {
+            try
+            {
+                socket.EndReceive(ar);
+            }
+            catch (Throwable _)
+            {
+                // the channel will report the error when it is read
+            }
+            readyQueue.add(this);
+            wakeup();
         }
     }
     private final HashMap<Socket, MapEntry> fdMap = new HashMap<Socket, MapEntry>();
 
+    // keys that are passed to Socket.Select
+    private final HashSet<MapEntry> pollSet = new HashSet<MapEntry>();
+
+    // keys with a completed zero-byte receive
+    private final ConcurrentLinkedQueue<MapEntry> readyQueue = new ConcurrentLinkedQueue<MapEntry>();
+
+    // keys handed back by the pollers
+    private final ConcurrentLinkedQueue<MapEntry> polledQueue = new ConcurrentLinkedQueue<MapEntry>();
+
+    // keys selected through a zero-byte receive, which has to be posted again
+    private final ArrayDeque<MapEntry> rearmQueue = new ArrayDeque<MapEntry>();
+
+    // keys whose interest set changed since the last select
+    private final Object updateLock = new Object();
+    private ArrayDeque<SelectionKeyImpl> updateQueue = new ArrayDeque<SelectionKeyImpl>();
+
     DotNetSelectorImpl(SelectorProvider sp) throws IOException
+    {
+        this(sp, 0);
+    }
+
+    DotNetSelectorImpl(SelectorProvider sp, int shards) throws IOException
     {
         super(sp);
         wakeupPipe = Pipe.open();
@@ -88,52 +166,88 @@ final class DotNetSelectorImpl extends SelectorImpl
         SinkChannelImpl sink = (SinkChannelImpl)wakeupPipe.sink();
         (sink.sc).socket().setTcpNoDelay(true);
         wakeupSinkFd = ((SelChImpl)sink).getFD().getSocket();
+
+        if (shards > 1)
+        {
+            pollers = new Poller[shards];
+            try
+            {
+                for (int i = 0; i < shards; i++)
+                {
+                    pollers[i] = new Poller();
+                }
+            }
+            catch (IOException x)
+            {
+                closePollers();
+                wakeupPipe.sink().close();
+                wakeupPipe.source().close();
+                throw x;
+            }
+            for (int i = 0; i < shards; i++)
+            {
+                Thread t = new Thread(pollers[i], "Selector poller " + i);
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        else
+        {
+            pollers = null;
+        }
     }
 
     protected int doSelect(long timeout) throws IOException
     {
-        if (channelArray == null)
+        if (closed)
             throw new ClosedSelectorException();
         processDeregisterQueue();
-        if (interruptTriggered)
+        if (interruptTriggered.get())
         {
             resetWakeupSocket();
-            return 0;
+            if (readyQueue.isEmpty() && polledQueue.isEmpty())
+                return 0;
         }
 
+        processUpdateQueue();
         ArrayList read = new ArrayList();
         ArrayList write = new ArrayList();
         ArrayList error = new ArrayList();
-        for (int i = 0; i < channelArray.get_Count(); i++)
+        for (Iterator<MapEntry> iter = pollSet.iterator(); iter.hasNext(); )
         {
-            SelectionKeyImpl ski = (SelectionKeyImpl)channelArray.get_Item(i);
-            int ops = ski.interestOps();
-            if (ski.channel() instanceof SocketChannelImpl)
+            MapEntry me = iter.next();
+            int ops = update(me);
+            if (ops < 0)
             {
-                // TODO there's a race condition here...
-                if (((SocketChannelImpl)ski.channel()).isConnected())
-                {
-                    ops &= SelectionKey.OP_READ | SelectionKey.OP_WRITE;
-                }
-                else
-                {
-                    ops &= SelectionKey.OP_CONNECT;
-                }
+                me.polled = false;
+                iter.remove();
+                if (pollers == null)
+                    continue;
+            }
+            if (pollers != null)
+            {
+                handToPoller(me, Math.max(ops, 0));
+                continue;
             }
             if ((ops & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0)
             {
-                read.Add(ski.getSocket());
+                read.Add(me.socket);
             }
             if ((ops & (SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT)) != 0)
             {
-                write.Add(ski.getSocket());
+                write.Add(me.socket);
             }
             if ((ops & SelectionKey.OP_CONNECT) != 0)
             {
-                error.Add(ski.getSocket());
+                error.Add(me.socket);
             }
         }
         read.Add(wakeupSourceFd);
+        if (!readyQueue.isEmpty() || !polledQueue.isEmpty())
+        {
+            // don't wait when keys are already known to be ready
+            timeout = 0;
+        }
         try
         {
             begin();
@@ -162,12 +276,154 @@ final class DotNetSelectorImpl extends SelectorImpl
         return updated;
     }
 
+    public void putEventOps(SelectionKeyImpl ski, int ops)
+    {
+        synchronized (updateLock)
+        {
+            updateQueue.add(ski);
+        }
+    }
+
+    private void processUpdateQueue()
+    {
+        ArrayDeque<SelectionKeyImpl> queue;
+        synchronized (updateLock)
+        {
+            queue = updateQueue;
+            if (queue.isEmpty() && rearmQueue.isEmpty())
+                return;
+            updateQueue = new ArrayDeque<SelectionKeyImpl>();
+        }
+        for (SelectionKeyImpl ski : queue)
+        {
+            MapEntry me = fdMap.get(ski.getSocket());
+            if (me != null && me.ski == ski)
+            {
+                if (update(me) < 0)
+                {
+                    if (me.polled)
+                    {
+                        me.polled = false;
+                        pollSet.remove(me);
+                        if (pollers != null)
+                        {
+                            handToPoller(me, 0);
+                        }
+                    }
+                }
+                else if (!me.polled)
+                {
+                    me.polled = true;
+                    pollSet.add(me);
+                }
+            }
+        }
+        MapEntry me;
+        while ((me = rearmQueue.poll()) != null)
+        {
+            if (fdMap.get(me.socket) == me)
+            {
+                update(me);
+            }
+        }
+    }
+
+    /**
+     * Posts a zero-byte receive if the key is interested in OP_READ and
+     * can use one, and returns the ops that need to be polled with
+     * Socket.Select, or -1 if the key doesn't need to be polled.
+     */
+    private int update(MapEntry me)
+    {
+        SelectionKeyImpl ski = me.ski;
+        if (!ski.isValid())
+            return -1;
+        int ops = ski.nioInterestOps();
+        // until a connection is established, the key needs to be polled to see the state change
+        boolean connecting = false;
+        if (ski.channel instanceof SocketChannelImpl)
+        {
+            // TODO there's a race condition here...
+            if (((SocketChannelImpl)ski.channel).isConnected())
+            {
+                ops &= SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            }
+            else
+            {
+                ops &= SelectionKey.OP_CONNECT;
+                connecting = true;
+            }
+        }
+        if ((ops & SelectionKey.OP_READ) != 0 && me.stream && me.socket.get_Connected())
+        {
+            ops &= ~SelectionKey.OP_READ;
+            if (!me.probing)
+            {
+                probe(me);
+            }
+        }
+        return ops == 0 && !connecting ? -1 : ops;
+    }
+
+    /**
+     * Hands the key to a poller, or tells the poller that has it that the
+     * ops to poll for have changed.  With zero ops the poller hands the key
+     * back without events.
+     */
+    private void handToPoller(MapEntry me, int ops)
+    {
+        if (me.poller != null)
+        {
+            if (me.pollOps != ops)
+            {
+                me.pollOps = ops;
+                me.poller.wakeup();
+            }
+        }
+        else if (ops != 0)
+        {
+            me.pollOps = ops;
+            me.poller = pollers[nextPoller];
+            nextPoller = (nextPoller + 1) % pollers.length;
+            me.poller.add(me);
+        }
+    }
+
+    private void probe(MapEntry me)
+    {
+        me.probing = true;
+        try
+        {
+            if (false) throw new SocketException();
+            if (false) throw new cli.System.ObjectDisposedException(null);
+            if (me.socket.get_Available() > 0)
+            {
+                readyQueue.add(me);
+            }
+            else
+            {
+                me.socket.BeginReceive(EMPTY, 0, 0, SocketFlags.wrap(SocketFlags.None), me.callback, null);
+            }
+        }
+        catch (SocketException _)
+        {
+            // the channel will report the error when it is read
+            readyQueue.add(me);
+        }
+        catch (cli.System.ObjectDisposedException _)
+        {
+            readyQueue.add(me);
+        }
+    }
+
     private int updateSelectedKeys(ArrayList read, ArrayList write, ArrayList error)
     {
         updateCount++;
         int keys = processFDSet(updateCount, read, Net.POLLIN);
         keys += processFDSet(updateCount, write, Net.POLLCONN | Net.POLLOUT);
         keys += processFDSet(updateCount, error, Net.POLLIN | Net.POLLCONN | Net.POLLOUT);
+        keys += processReadyQueue(updateCount);
+        keys += processPolledQueue(updateCount);
         return keys;
     }
 
@@ -179,10 +435,7 @@ final class DotNetSelectorImpl extends SelectorImpl
             Socket desc = (Socket)sockets.get_Item(i);
             if (desc == wakeupSourceFd)
             {
-                synchronized (interruptLock)
-                {
-                    interruptTriggered = true;
-                }
+                interruptTriggered.set(true);
                 continue;
             }
             MapEntry me = fdMap.get(desc);
@@ -190,91 +443,145 @@ final class DotNetSelectorImpl extends SelectorImpl
             // processDeregisterQueue.
             if (me == null)
                 continue;
-            SelectionKeyImpl sk = me.ski;
-            if (selectedKeys.contains(sk))
-            { // Key in selected set
-                if (me.clearedCount != updateCount)
+            numKeysUpdated += processKey(updateCount, me, rOps);
+        }
+        return numKeysUpdated;
+    }
+
+    private int processReadyQueue(long updateCount)
+    {
+        int numKeysUpdated = 0;
+        MapEntry me;
+        while ((me = readyQueue.poll()) != null)
+        {
+            me.probing = false;
+            // the key may have been deregistered or have lost interest in the mean time
+            if (fdMap.get(me.socket) != me || !me.ski.isValid()
+                || (me.ski.nioInterestOps() & SelectionKey.OP_READ) == 0)
+                continue;
+            numKeysUpdated += processKey(updateCount, me, Net.POLLIN);
+            rearmQueue.add(me);
+        }
+        return numKeysUpdated;
+    }
+
+    private int processPolledQueue(long updateCount)
+    {
+        int numKeysUpdated = 0;
+        MapEntry me;
+        while ((me = polledQueue.poll()) != null)
+        {
+            int events = me.polledEvents;
+            me.polledEvents = 0;
+            me.poller = null;
+            // if the key is still polled, the next select hands it to a poller again
+            if (events != 0 && fdMap.get(me.socket) == me && me.ski.isValid())
+            {
+                numKeysUpdated += processKey(updateCount, me, events);
+            }
+        }
+        return numKeysUpdated;
+    }
+
+    private int processKey(long updateCount, MapEntry me, int rOps)
+    {
+        int numKeysUpdated = 0;
+        SelectionKeyImpl sk = me.ski;
+        if (selectedKeys.contains(sk))
+        { // Key in selected set
+            if (me.clearedCount != updateCount)
+            {
+                if (sk.channel.translateAndSetReadyOps(rOps, sk) &&
+                    (me.updateCount != updateCount))
                 {
-                    if (sk.channel.translateAndSetReadyOps(rOps, sk) &&
-                        (me.updateCount != updateCount))
-                    {
-                        me.updateCount = updateCount;
-                        numKeysUpdated++;
-                    }
-                }
-                else
-                { // The readyOps have been set; now add
-                    if (sk.channel.translateAndUpdateReadyOps(rOps, sk) &&
-                        (me.updateCount != updateCount))
-                    {
-                        me.updateCount = updateCount;
-                        numKeysUpdated++;
-                    }
+                    me.updateCount = updateCount;
+                    numKeysUpdated++;
                 }
-                me.clearedCount = updateCount;
             }
             else
-            { // Key is not in selected set yet
-                if (me.clearedCount != updateCount)
+            { // The readyOps have been set; now add
+                if (sk.channel.translateAndUpdateReadyOps(rOps, sk) &&
+                    (me.updateCount != updateCount))
                 {
-                    sk.channel.translateAndSetReadyOps(rOps, sk);
-                    if ((sk.nioReadyOps() & sk.nioInterestOps()) != 0)
-                    {
-                        selectedKeys.add(sk);
-                        me.updateCount = updateCount;
-                        numKeysUpdated++;
-                    }
+                    me.updateCount = updateCount;
+                    numKeysUpdated++;
                 }
-                else
-                { // The readyOps have been set; now add
-                    sk.channel.translateAndUpdateReadyOps(rOps, sk);
-                    if ((sk.nioReadyOps() & sk.nioInterestOps()) != 0)
-                    {
-                        selectedKeys.add(sk);
-                        me.updateCount = updateCount;
-                        numKeysUpdated++;
-                    }
+            }
+            me.clearedCount = updateCount;
+        }
+        else
+        { // Key is not in selected set yet
+            if (me.clearedCount != updateCount)
+            {
+                sk.channel.translateAndSetReadyOps(rOps, sk);
+                if ((sk.nioReadyOps() & sk.nioInterestOps()) != 0)
+                {
+                    selectedKeys.add(sk);
+                    me.updateCount = updateCount;
+                    numKeysUpdated++;
                 }
-                me.clearedCount = updateCount;
             }
+            else
+            { // The readyOps have been set; now add
+                sk.channel.translateAndUpdateReadyOps(rOps, sk);
+                if ((sk.nioReadyOps() & sk.nioInterestOps()) != 0)
+                {
+                    selectedKeys.add(sk);
+                    me.updateCount = updateCount;
+                    numKeysUpdated++;
+                }
+            }
+            me.clearedCount = updateCount;
         }
         return numKeysUpdated;
     }
 
     protected void implClose() throws IOException
     {
-        if (channelArray != null)
+        if (!closed)
         {
             // prevent further wakeup
-            synchronized (interruptLock) {
-                interruptTriggered = true;
-            }
+            interruptTriggered.set(true);
+            closePollers();
             wakeupPipe.sink().close();
             wakeupPipe.source().close();
-            for (int i = 0; i < channelArray.get_Count(); i++)
+            for (MapEntry me : fdMap.values())
             { // Deregister channels
-                SelectionKeyImpl ski = (SelectionKeyImpl)channelArray.get_Item(i);
+                SelectionKeyImpl ski = me.ski;
                 deregister(ski);
                 SelectableChannel selch = ski.channel();
                 if (!selch.isOpen() && !selch.isRegistered())
                     ((SelChImpl)selch).kill();
             }
+            fdMap.clear();
+            pollSet.clear();
+            readyQueue.clear();
+            polledQueue.clear();
+            rearmQueue.clear();
             selectedKeys = null;
-            channelArray = null;
+            closed = true;
         }
     }
 
     protected void implRegister(SelectionKeyImpl ski)
     {
-        channelArray.Add(ski);
+        if (closed)
+            throw new ClosedSelectorException();
         fdMap.put(ski.getSocket(), new MapEntry(ski));
         keys.add(ski);
     }
 
     protected void implDereg(SelectionKeyImpl ski) throws IOException
     {
-        channelArray.Remove(ski);
-        fdMap.remove(ski.getSocket());
+        MapEntry me = fdMap.remove(ski.getSocket());
+        if (me != null && me.polled)
+        {
+            pollSet.remove(me);
+            if (pollers != null)
+            {
+                handToPoller(me, 0);
+            }
+        }
         keys.remove(ski);
         selectedKeys.remove(ski);
         deregister(ski);
@@ -287,13 +594,10 @@ final class DotNetSelectorImpl extends SelectorImpl
 
     public Selector wakeup()
     {
-        synchronized (interruptLock)
+        // only the first wakeup after a select has to signal the socket
+        if (!interruptTriggered.get() && interruptTriggered.compareAndSet(false, true))
         {
-            if (!interruptTriggered)
-            {
-                setWakeupSocket();
-                interruptTriggered = true;
-            }
+            setWakeupSocket();
         }
         return this;
     }
@@ -305,20 +609,192 @@ final class DotNetSelectorImpl extends SelectorImpl
 
     // Sets Windows wakeup socket to a non-signaled state.
     private void resetWakeupSocket() {
-        synchronized (interruptLock)
+        if (!interruptTriggered.get())
+            return;
+        resetWakeupSocket0(wakeupSourceFd);
+        interruptTriggered.set(false);
+    }
+
+    private static void resetWakeupSocket0(Socket wakeupSourceFd)
+    {
+        int available;
+        while ((available = wakeupSourceFd.get_Available()) > 0)
         {
-            if (interruptTriggered == false)
-                return;
-            resetWakeupSocket0(wakeupSourceFd);
-            interruptTriggered = false;
+            wakeupSourceFd.Receive(new byte[Math.min(available, 128)]);
         }
     }
 
-    private static void resetWakeupSocket0(Socket wakeupSourceFd)
+    private void closePollers() throws IOException
+    {
+        if (pollers != null)
+        {
+            for (Poller poller : pollers)
+            {
+                if (poller != null)
+                {
+                    poller.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs Socket.Select for its share of the keys on its own thread.  Keys
+     * that are ready, or that no longer need to be polled, are handed back
+     * to the selector through polledQueue.
+     */
+    private final class Poller implements Runnable
     {
-        while (wakeupSourceFd.get_Available() > 0)
+        private final Pipe wakeupPipe;
+        private final Socket wakeupSourceFd, wakeupSinkFd;
+        private final AtomicBoolean interruptTriggered = new AtomicBoolean();
+        private final ConcurrentLinkedQueue<MapEntry> added = new ConcurrentLinkedQueue<MapEntry>();
+        private final HashMap<Socket, MapEntry> entries = new HashMap<Socket, MapEntry>();
+        private volatile boolean closed;
+
+        Poller() throws IOException
+        {
+            wakeupPipe = Pipe.open();
+            wakeupSourceFd = ((SelChImpl)wakeupPipe.source()).getFD().getSocket();
+            SinkChannelImpl sink = (SinkChannelImpl)wakeupPipe.sink();
+            (sink.sc).socket().setTcpNoDelay(true);
+            wakeupSinkFd = ((SelChImpl)sink).getFD().getSocket();
+        }
+
+        void add(MapEntry me)
         {
-            wakeupSourceFd.Receive(new byte[1]);
+            added.add(me);
+            wakeup();
+        }
+
+        void wakeup()
+        {
+            if (!interruptTriggered.get() && interruptTriggered.compareAndSet(false, true))
+            {
+                try
+                {
+                    wakeupSinkFd.Send(new byte[1]);
+                }
+                catch (Throwable _)
+                {
+                    // closed
+                }
+            }
+        }
+
+        void close() throws IOException
+        {
+            closed = true;
+            wakeup();
+            wakeupPipe.sink().close();
+            wakeupPipe.source().close();
+        }
+
+        public void run()
+        {
+            ArrayList read = new ArrayList();
+            ArrayList write = new ArrayList();
+            ArrayList error = new ArrayList();
+            ArrayList ready = new ArrayList();
+            while (!closed)
+            {
+                MapEntry me;
+                while ((me = added.poll()) != null)
+                {
+                    entries.put(me.socket, me);
+                }
+                read.Clear();
+                write.Clear();
+                error.Clear();
+                for (Iterator<MapEntry> iter = entries.values().iterator(); iter.hasNext(); )
+                {
+                    me = iter.next();
+                    int ops = me.pollOps;
+                    if (ops == 0 || !me.ski.isValid())
+                    {
+                        iter.remove();
+                        ready.Add(me);
+                        continue;
+                    }
+                    if ((ops & (SelectionKey.OP_READ | SelectionKey.OP_ACCEPT)) != 0)
+                    {
+                        read.Add(me.socket);
+                    }
+                    if ((ops & (SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT)) != 0)
+                    {
+                        write.Add(me.socket);
+                    }
+                    if ((ops & SelectionKey.OP_CONNECT) != 0)
+                    {
+                        error.Add(me.socket);
+                    }
+                }
+                if (ready.get_Count() == 0)
+                {
+                    read.Add(wakeupSourceFd);
+                    try
+                    {
+                        Socket.Select(read, write, error, Integer.MAX_VALUE);
+                    }
+                    catch (Throwable _)
+                    {
+                        if (closed)
+                        {
+                            break;
+                        }
+                        // a socket was closed, hand everything back and let the selector sort it out
+                        read.Clear();
+                        write.Clear();
+                        error.Clear();
+                        for (MapEntry e : entries.values())
+                        {
+                            ready.Add(e);
+                        }
+                    }
+                    collect(read, Net.POLLIN, ready);
+                    collect(write, Net.POLLCONN | Net.POLLOUT, ready);
+                    collect(error, Net.POLLIN | Net.POLLCONN | Net.POLLOUT, ready);
+                }
+                for (int i = 0; i < ready.get_Count(); i++)
+                {
+                    me = (MapEntry)ready.get_Item(i);
+                    entries.remove(me.socket);
+                    polledQueue.add(me);
+                }
+                if (ready.get_Count() != 0)
+                {
+                    ready.Clear();
+                    DotNetSelectorImpl.this.wakeup();
+                }
+                if (interruptTriggered.get())
+                {
+                    try
+                    {
+                        resetWakeupSocket0(wakeupSourceFd);
+                    }
+                    catch (Throwable _)
+                    {
+                        // closed
+                    }
+                    interruptTriggered.set(false);
+                }
+            }
+        }
+
+        private void collect(ArrayList sockets, int events, ArrayList ready)
+        {
+            for (int i = 0; i < sockets.get_Count(); i++)
+            {
+                MapEntry me = entries.get(sockets.get_Item(i));
+                if (me != null)
+                {
+                    if (me.polledEvents == 0)
+                    {
+                        ready.Add(me);
+                    }
+                    me.polledEvents |= events;
+                }
+            }
         }
     }
 }
@@ -28,7 +28,10 @@ package sun.nio.ch;
 import cli.Microsoft.Win32.SafeHandles.SafeFileHandle;
 import cli.System.IntPtr;
 import cli.System.IO.FileStream;
+import cli.System.Net.Sockets.Socket;
 import cli.System.Runtime.InteropServices.DllImportAttribute;
+import cli.System.Runtime.InteropServices.LayoutKind;
+import cli.System.Runtime.InteropServices.StructLayoutAttribute;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -42,10 +45,12 @@ import java.nio.channels.NonReadableChannelException;
 import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
 import java.nio.channels.WritableByteChannel;
 import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 import sun.misc.Cleaner;
 import sun.security.action.GetPropertyAction;
@@ -402,6 +407,122 @@ public class FileChannelImpl
         }
     }
 
+    // -- Transfers --
+
+    // Initial and maximum size of the buffers used for untrusted channels,
+    // a long transfer doubles the buffer until it reaches the maximum
+    private static final int TRANSFER_SIZE = 8192;
+    private static final int MAX_TRANSFER_SIZE = 256 * 1024;
+
+    // Set to false if sendfile turns out to be unavailable
+    private static volatile boolean transferSupported = true;
+
+    // TransmitFile needs the file pointer and blocks until everything has
+    // been sent, so like the JDK we only use it when asked to
+    private static final boolean fastFileTransfer = win32 && Boolean.parseBoolean(
+        AccessController.doPrivileged(new GetPropertyAction("jdk.nio.enableFastFileTransfer", "false")));
+
+    private static ByteBuffer growTransferBuffer(ByteBuffer bb, long remaining) {
+        int cap = bb.capacity();
+        if (cap < MAX_TRANSFER_SIZE && remaining > cap)
+            return ByteBuffer.allocate((int)Math.min(Math.min(remaining, (long)cap * 2), MAX_TRANSFER_SIZE));
+        bb.clear();
+        return bb;
+    }
+
+    private long transferToDirectly(long position, int icount,
+                                    WritableByteChannel target)
+        throws IOException
+    {
+        if (!transferSupported)
+            return IOStatus.UNSUPPORTED;
+        if (!(target instanceof SelChImpl) || target instanceof FileChannelImpl)
+            return IOStatus.UNSUPPORTED;
+        if (!(fd.getStream() instanceof FileStream))
+            return IOStatus.UNSUPPORTED_CASE;
+        Socket socket = ((SelChImpl)target).getFD().getSocket();
+        if (socket == null)
+            return IOStatus.UNSUPPORTED_CASE;
+        if (win32) {
+            if (!fastFileTransfer || !((SelectableChannel)target).isBlocking())
+                return IOStatus.UNSUPPORTED_CASE;
+            // TransmitFile sends from the file pointer
+            synchronized (positionLock) {
+                long pos = position();
+                try {
+                    position0(fd, position);
+                    return transferToDirectlyInternal(position, icount, socket);
+                } finally {
+                    position0(fd, pos);
+                }
+            }
+        }
+        return transferToDirectlyInternal(position, icount, socket);
+    }
+
+    private long transferToDirectlyInternal(long position, int icount,
+                                            Socket socket)
+        throws IOException
+    {
+        if (icount == 0)
+            return 0;
+        long n = -1;
+        int ti = -1;
+        try {
+            begin();
+            ti = threads.add();
+            if (!isOpen())
+                return -1;
+            n = transferTo0(fd, position, icount, socket);
+            if (n == IOStatus.UNSUPPORTED_CASE) {
+                transferSupported = false;
+                return IOStatus.UNSUPPORTED;
+            }
+            // the runtime emulates blocking sockets on a non-blocking descriptor,
+            // so sendfile doesn't wait, let the caller write through the channel
+            if (n == IOStatus.UNAVAILABLE && socket.get_Blocking())
+                return IOStatus.UNSUPPORTED_CASE;
+            return IOStatus.normalize(n);
+        } finally {
+            threads.remove(ti);
+            end (n > -1);
+        }
+    }
+
+    private long transferToTrustedChannel(long position, long count,
+                                          WritableByteChannel target)
+        throws IOException
+    {
+        boolean isSelChImpl = (target instanceof SelChImpl);
+        if (!((target instanceof FileChannelImpl) || isSelChImpl))
+            return IOStatus.UNSUPPORTED;
+
+        // Trusted target: the array is never exposed, so the cached one is reused
+        byte[] buf = IOUtil.getTemporaryArray(IOUtil.getTemporaryArraySize(count));
+        long remaining = count;
+        try {
+            while (remaining > 0L) {
+                int nr = read(ByteBuffer.wrap(buf, 0, (int)Math.min(remaining, buf.length)), position);
+                if (nr <= 0)
+                    break;
+                // ## Bug: Closing this channel will not terminate the write
+                int nw = target.write(ByteBuffer.wrap(buf, 0, nr));
+                remaining -= nw;
+                // one attempt to write to a non-blocking channel
+                if (nw != nr || (isSelChImpl && !((SelectableChannel)target).isBlocking()))
+                    break;
+                position += nw;
+            }
+        } catch (IOException ioe) {
+            // Only throw exception if no bytes have been written
+            if (remaining == count)
+                throw ioe;
+        } finally {
+            IOUtil.releaseTemporaryArray(buf, 0);
+        }
+        return count - remaining;
+    }
+
     private long transferToArbitraryChannel(long position, int icount,
                                             WritableByteChannel target)
         throws IOException
@@ -413,7 +534,7 @@ public class FileChannelImpl
         long pos = position;
         try {
             while (tw < icount) {
-                bb.limit(Math.min((int)(icount - tw), TRANSFER_SIZE));
+                bb.limit(Math.min((int)(icount - tw), bb.capacity()));
                 int nr = read(bb, pos);
                 if (nr <= 0)
                     break;
@@ -425,7 +546,7 @@ public class FileChannelImpl
                 if (nw != nr)
                     break;
                 pos += nw;
-                bb.clear();
+                bb = growTransferBuffer(bb, icount - tw);
             }
             return tw;
         } catch (IOException x) {
@@ -456,6 +577,16 @@ public class FileChannelImpl
         if ((sz - position) < icount)
             icount = (int)(sz - position);
 
+        long n;
+
+        // Attempt a direct transfer, if the kernel supports it
+        if ((n = transferToDirectly(position, icount, target)) >= 0)
+            return n;
+
+        // Attempt a transfer through a large array, but only to trusted channel types
+        if ((n = transferToTrustedChannel(position, icount, target)) >= 0)
+            return n;
+
         // Slow path for untrusted targets
         return transferToArbitraryChannel(position, icount, target);
     }
@@ -466,11 +597,41 @@ public class FileChannelImpl
     {
         if (!src.readable)
             throw new NonReadableChannelException();
-        return transferFromArbitraryChannel(src, position, count);
+        synchronized (src.positionLock) {
+            long pos = src.position();
+            long max = Math.min(count, src.size() - pos);
+            if (max <= 0)
+                return 0;
+
+            // Trusted source: the array is never exposed, so the cached one is reused
+            byte[] buf = IOUtil.getTemporaryArray(IOUtil.getTemporaryArraySize(max));
+            long remaining = max;
+            long p = pos;
+            try {
+                while (remaining > 0L) {
+                    int nr = src.read(ByteBuffer.wrap(buf, 0, (int)Math.min(remaining, buf.length)), p);
+                    if (nr <= 0)
+                        break;
+                    int nw = write(ByteBuffer.wrap(buf, 0, nr), position);
+                    remaining -= nw;
+                    if (nw != nr)
+                        break;
+                    p += nw;
+                    position += nw;
+                }
+            } catch (IOException ioe) {
+                // Only throw exception if no bytes have been written
+                if (remaining == max)
+                    throw ioe;
+            } finally {
+                IOUtil.releaseTemporaryArray(buf, 0);
+            }
+            long nwritten = max - remaining;
+            src.position(pos + nwritten);
+            return nwritten;
+        }
     }
 
-    private static final int TRANSFER_SIZE = 8192;
-
     private long transferFromArbitraryChannel(ReadableByteChannel src,
                                               long position, long count)
         throws IOException
@@ -482,7 +643,7 @@ public class FileChannelImpl
         long pos = position;
         try {
             while (tw < count) {
-                bb.limit((int)Math.min((count - tw), (long)TRANSFER_SIZE));
+                bb.limit((int)Math.min((count - tw), (long)bb.capacity()));
                 // ## Bug: Will block reading src if this channel
                 // ##      is asynchronously closed
                 int nr = src.read(bb);
@@ -494,7 +655,7 @@ public class FileChannelImpl
                 if (nw != nr)
                     break;
                 pos += nw;
-                bb.clear();
+                bb = growTransferBuffer(bb, count - tw);
             }
             return tw;
         } catch (IOException x) {
@@ -790,26 +951,122 @@ public class FileChannelImpl
      * interface for mapped buffers.
      */
     public static sun.misc.JavaNioAccess.BufferPool getMappedBufferPool() {
-        return new sun.misc.JavaNioAccess.BufferPool() {
-            @Override
-            public String getName() {
-                return "mapped";
-            }
-            @Override
-            public long getCount() {
-                return Unmapper.count;
-            }
-            @Override
-            public long getTotalCapacity() {
-                return Unmapper.totalCapacity;
-            }
-            @Override
-            public long getMemoryUsed() {
-                return Unmapper.totalSize;
+        return new MappedBufferPool();
+    }
+
+    /**
+     * The mapped buffer pool.  Besides the totals of all mappings, it reports
+     * the windows mapped by ikvm.io.MappedFile: the bytes currently mapped,
+     * the number of accesses served by an already mapped window (i.e. the
+     * mappings and page faults avoided), and the number of windows unmapped.
+     */
+    public static final class MappedBufferPool
+        implements sun.misc.JavaNioAccess.BufferPool
+    {
+        private static final LongAdder windowCount = new LongAdder();
+        private static final LongAdder windowMemoryUsed = new LongAdder();
+        private static final LongAdder windowHits = new LongAdder();
+        private static final LongAdder windowUnmaps = new LongAdder();
+
+        MappedBufferPool() { }
+
+        @Override
+        public String getName() {
+            return "mapped";
+        }
+        @Override
+        public long getCount() {
+            return Unmapper.count;
+        }
+        @Override
+        public long getTotalCapacity() {
+            return Unmapper.totalCapacity;
+        }
+        @Override
+        public long getMemoryUsed() {
+            return Unmapper.totalSize;
+        }
+        public long getWindowCount() {
+            return windowCount.sum();
+        }
+        public long getWindowMemoryUsed() {
+            return windowMemoryUsed.sum();
+        }
+        public long getWindowHits() {
+            return windowHits.sum();
+        }
+        public long getWindowUnmaps() {
+            return windowUnmaps.sum();
+        }
+
+        // Invoked by ikvm.io.MappedFile
+        public static void windowMapped(long size) {
+            windowCount.increment();
+            windowMemoryUsed.add(size);
+        }
+        public static void windowUnmapped(long size) {
+            windowCount.decrement();
+            windowMemoryUsed.add(-size);
+            windowUnmaps.increment();
+        }
+        public static void windowHit() {
+            windowHits.increment();
+        }
+    }
+
+    // -- Advice --
+
+    // How a mapped buffer is going to be accessed, see advise
+    public static final int ADVICE_NORMAL = 0;
+    public static final int ADVICE_RANDOM = 1;
+    public static final int ADVICE_SEQUENTIAL = 2;
+    public static final int ADVICE_WILLNEED = 3;
+
+    private static volatile boolean prefetchSupported = true;
+
+    /**
+     * Passes a hint about the access pattern of a mapped buffer to the OS
+     * (madvise).  On Windows only ADVICE_WILLNEED has an effect, and only
+     * on Windows 8 and later (PrefetchVirtualMemory).
+     */
+    @cli.System.Security.SecuritySafeCriticalAttribute.Annotation
+    public static void advise(MappedByteBuffer bb, int advice) {
+        long address = ((DirectBuffer)bb).address();
+        int length = bb.capacity();
+        if (address == 0 || length == 0)
+            return;
+        if (win32) {
+            if (advice == ADVICE_WILLNEED && prefetchSupported) {
+                WIN32_MEMORY_RANGE_ENTRY range = new WIN32_MEMORY_RANGE_ENTRY();
+                range.VirtualAddress = IntPtr.op_Explicit(address);
+                range.NumberOfBytes = IntPtr.op_Explicit(length);
+                try {
+                    if (false) throw new cli.System.EntryPointNotFoundException();
+                    // -1 is the current process pseudo handle
+                    PrefetchVirtualMemory(new IntPtr(-1), new IntPtr(1), range, 0);
+                } catch (cli.System.EntryPointNotFoundException _) {
+                    prefetchSupported = false;
+                }
             }
-        };
+        } else {
+            ikvm_madvise(IntPtr.op_Explicit(address), length, advice);
+        }
+        cli.System.GC.KeepAlive(bb);
+    }
+
+    @StructLayoutAttribute.Annotation(LayoutKind.__Enum.Sequential)
+    private static final class WIN32_MEMORY_RANGE_ENTRY extends cli.System.Object
+    {
+        IntPtr VirtualAddress;
+        IntPtr NumberOfBytes;
     }
 
+    @DllImportAttribute.Annotation("kernel32")
+    private static native int PrefetchVirtualMemory(IntPtr hProcess, IntPtr NumberOfEntries, WIN32_MEMORY_RANGE_ENTRY VirtualAddresses, int Flags);
+
+    @DllImportAttribute.Annotation("ikvm-native")
+    private static native int ikvm_madvise(IntPtr address, long size, int advice);
+
     // -- Locks --
 
 
@@ -1118,6 +1375,41 @@ public class FileChannelImpl
     @DllImportAttribute.Annotation("ikvm-native")
     private static native IntPtr ikvm_mmap(SafeFileHandle handle, byte writeable, byte copy_on_write, long position, int size);
 
+    @cli.System.Security.SecuritySafeCriticalAttribute.Annotation
+    private static long transferTo0(FileDescriptor fd, long position, int count, Socket socket) throws IOException
+    {
+        FileStream fs = (FileStream)fd.getStream();
+        try
+        {
+            if (win32)
+            {
+                // the file pointer has been set to position
+                if (TransmitFile(socket.get_Handle(), fs.get_SafeFileHandle(), count, 0, IntPtr.Zero, IntPtr.Zero, 0) == 0)
+                {
+                    throw new IOException("TransmitFile failed (Win32 error " + cli.System.Runtime.InteropServices.Marshal.GetLastWin32Error() + ")");
+                }
+                return count;
+            }
+            long n = ikvm_sendfile(socket.get_Handle().ToInt32(), fs.get_SafeFileHandle(), position, count);
+            if (n == -1)
+            {
+                throw new IOException("sendfile failed (errno " + cli.System.Runtime.InteropServices.Marshal.GetLastWin32Error() + ")");
+            }
+            return n;
+        }
+        finally
+        {
+            cli.System.GC.KeepAlive(fs);
+            cli.System.GC.KeepAlive(socket);
+        }
+    }
+
+    @DllImportAttribute.Annotation(value="mswsock", SetLastError=true)
+    private static native int TransmitFile(IntPtr hSocket, SafeFileHandle hFile, int nNumberOfBytesToWrite, int nNumberOfBytesPerSend, IntPtr lpOverlapped, IntPtr lpTransmitBuffers, int dwReserved);
+
+    @DllImportAttribute.Annotation(value="ikvm-native", SetLastError=true)
+    private static native long ikvm_sendfile(int outFd, SafeFileHandle inFd, long position, int count);
+
     // Removes an existing mapping
     @cli.System.Security.SecuritySafeCriticalAttribute.Annotation
     static int unmap0(long address, long length)
@@ -52,80 +52,130 @@ class FileDispatcherImpl extends FileDispatcher
         this(false);
     }
 
+    // on Windows pread and pwrite temporarily move the file pointer
     @Override
     boolean needsPositionLock() {
-        return true;
+        return WINDOWS;
     }
 
     int read(FileDescriptor fd, byte[] buf, int offset, int length) throws IOException {
         return fd.readBytes(buf, offset, length);
     }
 
+    int pread(FileDescriptor fd, byte[] buf, int offset, int length, long position) throws IOException {
+        return fd.readBytes(buf, offset, length, position);
+    }
+
     int write(FileDescriptor fd, byte[] buf, int offset, int length) throws IOException {
         fd.writeBytes(buf, offset, length);
         return length;
     }
 
+    int pwrite(FileDescriptor fd, byte[] buf, int offset, int length, long position) throws IOException {
+        return fd.writeBytes(buf, offset, length, position);
+    }
+
     long read(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException {
-        long totalRead = 0;
-        try
-        {
-            for (int i = offset; i < offset + length; i++)
-            {
-                int size = bufs[i].remaining();
-                if (size > 0)
-                {
-                    int read = IOUtil.read(fd, bufs[i], -1, this);
-                    if (read < 0)
-                    {
-                        break;
-                    }
-                    totalRead += read;
-                    if (read < size || fd.available() == 0)
-                    {
-                        break;
-                    }
-                }
+        if (!WINDOWS) {
+            long n = readv0(fd, bufs, offset, length);
+            if (n != IOStatus.UNSUPPORTED_CASE) {
+                return n;
             }
         }
-        catch (IOException x)
-        {
-            if (totalRead == 0)
-            {
-                throw x;
+        // Windows can only scatter into page aligned buffers of files opened
+        // without buffering, so we read into an array and distribute it,
+        // in chunks that fit the cached temporary array
+        long size = remaining(bufs, offset, length);
+        if (size == 0) {
+            return 0;
+        }
+        byte[] buf = IOUtil.getTemporaryArray(IOUtil.getTemporaryArraySize(size));
+        long total = 0;
+        try {
+            int i = offset;
+            while (total < size) {
+                int chunk = (int)Math.min(size - total, buf.length);
+                int n = fd.readBytes(buf, 0, chunk);
+                if (n <= 0) {
+                    return total == 0 ? n : total;
+                }
+                for (int pos = 0; pos < n; ) {
+                    int len = Math.min(n - pos, bufs[i].remaining());
+                    bufs[i].put(buf, pos, len);
+                    pos += len;
+                    if (!bufs[i].hasRemaining()) {
+                        i++;
+                    }
+                }
+                total += n;
+                if (n < chunk) {
+                    break;
+                }
             }
+            return total;
+        } finally {
+            IOUtil.releaseTemporaryArray(buf, total);
         }
-        return totalRead;
     }
 
     long write(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException {
-        long totalWritten = 0;
-        try
-        {
-            for (int i = offset; i < offset + length; i++)
-            {
-                int size = bufs[i].remaining();
-                if (size > 0)
-                {
-                    int written = IOUtil.write(fd, bufs[i], -1, this);
-                    totalWritten += written;
-                    if (written < size)
-                    {
-                        break;
+        // in append mode every write has to go to the end of the file, which pwritev doesn't do
+        if (!WINDOWS && !append) {
+            long n = writev0(fd, bufs, offset, length);
+            if (n != IOStatus.UNSUPPORTED_CASE) {
+                return n;
+            }
+        }
+        // gather into an array, so the buffers are written with one call per
+        // chunk that fits the cached temporary array
+        long size = remaining(bufs, offset, length);
+        if (size == 0) {
+            return 0;
+        }
+        byte[] buf = IOUtil.getTemporaryArray(IOUtil.getTemporaryArraySize(size));
+        long written = 0;
+        try {
+            int i = offset;
+            while (written < size) {
+                int chunk = (int)Math.min(size - written, buf.length);
+                int pos = 0;
+                for (int j = i; pos < chunk; j++) {
+                    // the buffers only advance once their bytes are written
+                    ByteBuffer src = bufs[j].duplicate();
+                    int len = Math.min(chunk - pos, src.remaining());
+                    src.get(buf, pos, len);
+                    pos += len;
+                }
+                fd.writeBytes(buf, 0, chunk);
+                written += chunk;
+                while (pos > 0) {
+                    int len = Math.min(pos, bufs[i].remaining());
+                    bufs[i].position(bufs[i].position() + len);
+                    pos -= len;
+                    if (!bufs[i].hasRemaining()) {
+                        i++;
                     }
                 }
             }
+            return written;
+        } finally {
+            IOUtil.releaseTemporaryArray(buf, written);
         }
-        catch (IOException x)
-        {
-            if (totalWritten == 0)
-            {
-                throw x;
-            }
+    }
+
+    // the number of bytes remaining in the buffers
+    private static long remaining(ByteBuffer[] bufs, int offset, int length) {
+        long size = 0;
+        for (int i = offset; i < offset + length; i++) {
+            size += bufs[i].remaining();
         }
-        return totalWritten;
+        return size;
     }
 
+    private static native long readv0(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException;
+
+    private static native long writev0(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException;
+
     long seek(FileDescriptor fd, long offset) throws IOException {
         if (offset < 0) {
             return 0;
@@ -31,6 +31,9 @@ import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.nio.channels.spi.*;
+import java.security.AccessController;
+import java.util.concurrent.atomic.LongAdder;
+import sun.security.action.GetPropertyAction;
 
 
 /**
@@ -74,24 +77,10 @@ public class IOUtil {
         if (dst.isReadOnly())
             throw new IllegalArgumentException("Read-only buffer");
 
-        if (position != -1)
-        {
-            long prevpos = fd.getFilePointer();
-            try
-            {
-                fd.seek(position);
-                return read(fd, dst, -1, nd);
-            }
-            finally
-            {
-                fd.seek(prevpos);
-            }
-        }
-
         if (dst.hasArray())
         {
             byte[] buf = dst.array();
-            int len = nd.read(fd, buf, dst.arrayOffset() + dst.position(), dst.remaining());
+            int len = readArray(fd, buf, dst.arrayOffset() + dst.position(), dst.remaining(), position, nd);
             if (len > 0)
             {
                 dst.position(dst.position() + len);
@@ -100,14 +89,46 @@ public class IOUtil {
         }
         else
         {
-            byte[] buf = new byte[dst.remaining()];
-            int len = nd.read(fd, buf, 0, buf.length);
-            if (len > 0)
+            int size = dst.remaining();
+            byte[] buf = getTemporaryArray(size);
+            int len = 0;
+            try
             {
-                dst.put(buf, 0, len);
+                len = readArray(fd, buf, 0, size, position, nd);
+                if (len > 0)
+                {
+                    dst.put(buf, 0, len);
+                }
+                return len;
             }
-            return len;
+            finally
+            {
+                releaseTemporaryArray(buf, len);
+            }
+        }
+    }
+
+    // positional reads and writes don't touch the file pointer
+    private static int readArray(FileDescriptor fd, byte[] buf, int offset, int length,
+                                 long position, NativeDispatcher nd)
+        throws IOException
+    {
+        if (position != -1)
+        {
+            return nd.pread(fd, buf, offset, length, position);
         }
+        return nd.read(fd, buf, offset, length);
+    }
+
+    private static int writeArray(FileDescriptor fd, byte[] buf, int offset, int length,
+                                  long position, NativeDispatcher nd)
+        throws IOException
+    {
+        if (position != -1)
+        {
+            return nd.pwrite(fd, buf, offset, length, position);
+        }
+        return nd.write(fd, buf, offset, length);
     }
 
     static long read(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length, NativeDispatcher nd)
@@ -120,45 +141,155 @@ public class IOUtil {
                      NativeDispatcher nd)
         throws IOException
     {
-        if (position != -1)
+        if (src.hasArray())
+        {
+            byte[] buf = src.array();
+            int len = writeArray(fd, buf, src.arrayOffset() + src.position(), src.remaining(), position, nd);
+            if (len > 0)
+            {
+                src.position(src.position() + len);
+            }
+            return len;
+        }
+        else
         {
-            long prevpos = fd.getFilePointer();
+            int pos = src.position();
+            int size = src.remaining();
+            byte[] buf = getTemporaryArray(size);
+            int len = 0;
             try
             {
-                fd.seek(position);
-                return write(fd, src, -1, nd);
+                src.get(buf, 0, size);
+                src.position(pos);
+                len = writeArray(fd, buf, 0, size, position, nd);
+                if (len > 0)
+                {
+                    src.position(pos + len);
+                }
+                return len;
             }
             finally
             {
-                fd.seek(prevpos);
+                releaseTemporaryArray(buf, len);
             }
         }
+    }
 
-        if (src.hasArray())
+    // -- Temporary arrays --
+
+    // Streams and sockets only read into and write from managed arrays, so
+    // direct and read-only buffers are copied through a temporary array.
+    // Each thread caches one, up to jdk.nio.maxCachedBufferSize bytes.
+
+    private static final int MAX_CACHED_ARRAY_SIZE = getMaxCachedArraySize();
+
+    private static final ThreadLocal<byte[]> arrayCache = new ThreadLocal<byte[]>();
+
+    private static final LongAdder temporaryArrayAllocations = new LongAdder();
+    private static final LongAdder temporaryArrayAllocatedBytes = new LongAdder();
+    private static final LongAdder temporaryArrayBytes = new LongAdder();
+
+    private static int getMaxCachedArraySize()
+    {
+        String s = AccessController.doPrivileged(
+            new GetPropertyAction("jdk.nio.maxCachedBufferSize"));
+        if (s != null)
         {
-            byte[] buf = src.array();
-            int len = nd.write(fd, buf, src.arrayOffset() + src.position(), src.remaining());
-            if (len > 0)
+            try
+            {
+                long size = Long.parseLong(s);
+                if (size >= 0)
+                {
+                    return (int)Math.min(size, Integer.MAX_VALUE);
+                }
+            }
+            catch (NumberFormatException _)
             {
-                src.position(src.position() + len);
             }
-            return len;
         }
-        else
+        return 256 * 1024;
+    }
+
+    /**
+     * Returns the size of the array to use for moving the given number of
+     * bytes in chunks.  Arrays of that size are kept in the thread's cache,
+     * unless caching is disabled.
+     */
+    static int getTemporaryArraySize(long size)
+    {
+        return (int)Math.min(size, Math.max(MAX_CACHED_ARRAY_SIZE, 8192));
+    }
+
+    /**
+     * Returns an array of at least the given size, taking it from the
+     * thread's cache if it is large enough.
+     */
+    static byte[] getTemporaryArray(int size)
+    {
+        byte[] buf = arrayCache.get();
+        if (buf != null && buf.length >= size)
         {
-            int pos = src.position();
-            byte[] buf = new byte[src.remaining()];
-            src.get(buf);
-            src.position(pos);
-            int len = nd.write(fd, buf, 0, buf.length);
-            if (len > 0)
+            // the array is in use until it is released
+            arrayCache.set(null);
+            return buf;
+        }
+        if (size <= MAX_CACHED_ARRAY_SIZE)
+        {
+            // round up, so a thread doesn't grow its array in small steps
+            int rounded = Math.max(Integer.highestOneBit(size - 1) << 1, 4096);
+            size = Math.max(size, Math.min(rounded, MAX_CACHED_ARRAY_SIZE));
+        }
+        temporaryArrayAllocations.increment();
+        temporaryArrayAllocatedBytes.add(size);
+        return new byte[size];
+    }
+
+    /**
+     * Returns an array obtained from getTemporaryArray to the thread's
+     * cache, if it isn't too large and is larger than the cached one.
+     * transferred is the number of bytes read or written through it.
+     */
+    static void releaseTemporaryArray(byte[] buf, long transferred)
+    {
+        if (transferred > 0)
+        {
+            temporaryArrayBytes.add(transferred);
+        }
+        if (buf.length <= MAX_CACHED_ARRAY_SIZE)
+        {
+            byte[] cached = arrayCache.get();
+            if (cached == null || cached.length < buf.length)
             {
-                src.position(pos + len);
+                arrayCache.set(buf);
             }
-            return len;
         }
     }
 
+    /**
+     * Returns the number of temporary arrays allocated for I/O with buffers
+     * that aren't array backed.
+     */
+    public static long getTemporaryArrayAllocations()
+    {
+        return temporaryArrayAllocations.sum();
+    }
+
+    /**
+     * Returns the total size of the temporary arrays allocated.
+     */
+    public static long getTemporaryArrayAllocatedBytes()
+    {
+        return temporaryArrayAllocatedBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes read or written through temporary arrays.
+     */
+    public static long getTemporaryArrayBytes()
+    {
+        return temporaryArrayBytes.sum();
+    }
+
     static long write(FileDescriptor fd, ByteBuffer[] bufs, NativeDispatcher nd)
         throws IOException
     {
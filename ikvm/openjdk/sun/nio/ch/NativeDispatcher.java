@@ -37,6 +37,10 @@ abstract class NativeDispatcher
 {
     abstract int read(FileDescriptor fd, byte[] buf, int offset, int length) throws IOException;
 
+    int pread(FileDescriptor fd, byte[] buf, int offset, int length, long position) throws IOException {
+        throw new IOException("Operation Unsupported");
+    }
+
     /**
      * Returns {@code true} if pread/pwrite needs to be synchronized with
      * position sensitive methods.
@@ -47,6 +51,10 @@ abstract class NativeDispatcher
 
     abstract int write(FileDescriptor fd, byte[] buf, int offset, int length) throws IOException;
 
+    int pwrite(FileDescriptor fd, byte[] buf, int offset, int length, long position) throws IOException {
+        throw new IOException("Operation Unsupported");
+    }
+
     abstract long read(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException;
 
     abstract long write(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length) throws IOException;
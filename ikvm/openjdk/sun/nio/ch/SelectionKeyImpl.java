@@ -79,6 +79,7 @@ final class SelectionKeyImpl extends AbstractSelectionKey
             throw new IllegalArgumentException();
     
         interestOps = ops;
+        selector.putEventOps(this, ops);
         return this;
     }
     
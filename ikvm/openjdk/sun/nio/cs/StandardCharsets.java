@@ -679,7 +679,7 @@ public class StandardCharsets
             ht[6] = new Object[] { "windows-1257", null };
             ht[7] = new Object[] { "utf-16be", null };
             ht[8] = new Object[] { "iso-8859-2", null,
-                         new Object[] { "iso-8859-1", null } };
+                         new Object[] { "iso-8859-1", new ISO_8859_1() } };
             ht[9] = new Object[] { "iso-8859-4", null,
                          new Object[] { "utf-8", new UTF_8() } };
             ht[10] = new Object[] { "iso-8859-5", null };
@@ -691,7 +691,7 @@ public class StandardCharsets
             ht[16] = new Object[] { "ibm852", null,
                          new Object[] { "ibm775", null } };
             ht[17] = new Object[] { "iso-8859-13", null,
-                         new Object[] { "us-ascii", null } };
+                         new Object[] { "us-ascii", new US_ASCII() } };
             ht[18] = new Object[] { "ibm855", null,
                          new Object[] { "ibm437", null,
                              new Object[] { "iso-8859-15", null } } };
@@ -708,6 +708,29 @@ public class StandardCharsets
 
     }
 
+    // [IKVM] resolves the charset names that StringCodecs has fast paths for
+    private static final Aliases fastPathAliases = new Aliases();
+
+    static int fastPathOf(String charsetName) {
+        int codec = fastPathOfCanonical(charsetName);
+        if (codec == StringCodecs.NONE) {
+            String canonical = fastPathAliases.get(charsetName.toLowerCase(java.util.Locale.ROOT));
+            if (canonical != null)
+                codec = fastPathOfCanonical(canonical);
+        }
+        return codec;
+    }
+
+    private static int fastPathOfCanonical(String name) {
+        if (name.equalsIgnoreCase("UTF-8"))
+            return StringCodecs.UTF_8;
+        if (name.equalsIgnoreCase("ISO-8859-1"))
+            return StringCodecs.ISO_8859_1;
+        if (name.equalsIgnoreCase("US-ASCII"))
+            return StringCodecs.US_ASCII;
+        return StringCodecs.NONE;
+    }
+
     public StandardCharsets() {
         super("sun.nio.cs", new Aliases(), new Classes(), new Cache());
     }
@@ -0,0 +1,337 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+
+*/
+
+package sun.nio.cs;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Conversions between byte arrays and strings for US-ASCII, ISO-8859-1
+ * and UTF-8 that don't go through a CharsetDecoder or CharsetEncoder.
+ * They produce the same result as StringCoding does with the standard
+ * coders (malformed and unmappable input replaced), and return null for
+ * input they leave to StringCoding, like malformed UTF-8.
+ */
+public final class StringCodecs
+{
+    public static final int NONE = 0;
+    public static final int US_ASCII = 1;
+    public static final int ISO_8859_1 = 2;
+    public static final int UTF_8 = 3;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private StringCodecs() { }
+
+    /**
+     * Returns the codec for the given charset, or NONE.
+     */
+    public static int of(Charset cs)
+    {
+        // the exact classes, a subclass may behave differently
+        Class<?> c = cs.getClass();
+        if (c == UTF_8.class)
+        {
+            return UTF_8;
+        }
+        if (c == ISO_8859_1.class)
+        {
+            return ISO_8859_1;
+        }
+        if (c == US_ASCII.class)
+        {
+            return US_ASCII;
+        }
+        return NONE;
+    }
+
+    /**
+     * Returns the codec for the given charset name or alias, or NONE.
+     */
+    public static int of(String charsetName)
+    {
+        return StandardCharsets.fastPathOf(charsetName);
+    }
+
+    /**
+     * Returns the index of the first byte in the range that isn't ASCII,
+     * or off + len. Eight bytes are checked at a time.
+     */
+    static int firstNonAscii(byte[] ba, int off, int len)
+    {
+        int end = off + len;
+        int i = off;
+        while (end - i >= 8 && (cli.System.BitConverter.ToInt64(ba, i) & HIGH_BITS) == 0)
+        {
+            i += 8;
+        }
+        while (i < end && ba[i] >= 0)
+        {
+            i++;
+        }
+        return i;
+    }
+
+    public static String decode(int codec, byte[] ba, int off, int len)
+    {
+        int ascii = firstNonAscii(ba, off, len);
+        if (ascii == off + len)
+        {
+            // builds the string straight from the bytes
+            return cli.System.Text.Encoding.get_ASCII().GetString(ba, off, len);
+        }
+        char[] ca = new char[len];
+        for (int i = off; i < ascii; i++)
+        {
+            ca[i - off] = (char)ba[i];
+        }
+        int sp = ascii;
+        int dp = ascii - off;
+        int end = off + len;
+        switch (codec)
+        {
+            case US_ASCII:
+                for (; sp < end; sp++)
+                {
+                    byte b = ba[sp];
+                    ca[dp++] = b >= 0 ? (char)b : '\uFFFD';
+                }
+                break;
+            case ISO_8859_1:
+                for (; sp < end; sp++)
+                {
+                    ca[dp++] = (char)(ba[sp] & 0xFF);
+                }
+                break;
+            case UTF_8:
+                dp = decodeUTF8(ba, sp, end, ca, dp);
+                if (dp < 0)
+                {
+                    return null;
+                }
+                break;
+            default:
+                return null;
+        }
+        return new String(ca, 0, dp);
+    }
+
+    // decodes well formed UTF-8, returns -1 for anything the UTF_8 decoder would replace
+    private static int decodeUTF8(byte[] ba, int sp, int end, char[] ca, int dp)
+    {
+        while (sp < end)
+        {
+            int b1 = ba[sp];
+            if (b1 >= 0)
+            {
+                ca[dp++] = (char)b1;
+                sp++;
+            }
+            else if ((b1 >> 5) == -2 && (b1 & 0x1E) != 0)
+            {
+                // 110xxxxx 10xxxxxx, not overlong
+                if (end - sp < 2)
+                {
+                    return -1;
+                }
+                int b2 = ba[sp + 1];
+                if ((b2 & 0xC0) != 0x80)
+                {
+                    return -1;
+                }
+                ca[dp++] = (char)(((b1 & 0x1F) << 6) | (b2 & 0x3F));
+                sp += 2;
+            }
+            else if ((b1 >> 4) == -2)
+            {
+                // 1110xxxx 10xxxxxx 10xxxxxx
+                if (end - sp < 3)
+                {
+                    return -1;
+                }
+                int b2 = ba[sp + 1];
+                int b3 = ba[sp + 2];
+                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80)
+                {
+                    return -1;
+                }
+                char c = (char)(((b1 & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+                if (c < 0x800 || Character.isSurrogate(c))
+                {
+                    return -1;
+                }
+                ca[dp++] = c;
+                sp += 3;
+            }
+            else if ((b1 >> 3) == -2)
+            {
+                // 11110xxx 10xxxxxx 10xxxxxx 10xxxxxx
+                if (end - sp < 4)
+                {
+                    return -1;
+                }
+                int b2 = ba[sp + 1];
+                int b3 = ba[sp + 2];
+                int b4 = ba[sp + 3];
+                if ((b2 & 0xC0) != 0x80 || (b3 & 0xC0) != 0x80 || (b4 & 0xC0) != 0x80)
+                {
+                    return -1;
+                }
+                int cp = ((b1 & 0x07) << 18) | ((b2 & 0x3F) << 12) | ((b3 & 0x3F) << 6) | (b4 & 0x3F);
+                if (!Character.isSupplementaryCodePoint(cp))
+                {
+                    return -1;
+                }
+                ca[dp++] = Character.highSurrogate(cp);
+                ca[dp++] = Character.lowSurrogate(cp);
+                sp += 4;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+        return dp;
+    }
+
+    public static byte[] encode(int codec, String s)
+    {
+        int len = s.length();
+        byte[] ba = new byte[len];
+        int i = 0;
+        for (; i < len; i++)
+        {
+            char c = s.charAt(i);
+            if (c >= 0x80)
+            {
+                break;
+            }
+            ba[i] = (byte)c;
+        }
+        if (i == len)
+        {
+            return ba;
+        }
+        switch (codec)
+        {
+            case US_ASCII:
+                return encodeSingleByte(s, i, ba, 0x7F);
+            case ISO_8859_1:
+                return encodeSingleByte(s, i, ba, 0xFF);
+            case UTF_8:
+                return encodeUTF8(s, i, ba);
+            default:
+                return null;
+        }
+    }
+
+    private static byte[] encodeSingleByte(String s, int sp, byte[] ba, int max)
+    {
+        int len = s.length();
+        int dp = sp;
+        while (sp < len)
+        {
+            char c = s.charAt(sp++);
+            if (c <= max)
+            {
+                ba[dp++] = (byte)c;
+                continue;
+            }
+            // a surrogate pair is replaced as a whole
+            if (Character.isHighSurrogate(c) && sp < len && Character.isLowSurrogate(s.charAt(sp)))
+            {
+                sp++;
+            }
+            ba[dp++] = '?';
+        }
+        return dp == ba.length ? ba : Arrays.copyOf(ba, dp);
+    }
+
+    private static byte[] encodeUTF8(String s, int ascii, byte[] prefix)
+    {
+        int len = s.length();
+        // size the result exactly
+        int size = ascii;
+        for (int i = ascii; i < len; i++)
+        {
+            char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                size++;
+            }
+            else if (c < 0x800)
+            {
+                size += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                size += 4;
+                i++;
+            }
+            else if (Character.isSurrogate(c))
+            {
+                // replaced by '?'
+                size++;
+            }
+            else
+            {
+                size += 3;
+            }
+        }
+        byte[] ba = size == prefix.length ? prefix : Arrays.copyOf(prefix, size);
+        int dp = ascii;
+        for (int i = ascii; i < len; i++)
+        {
+            char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                ba[dp++] = (byte)c;
+            }
+            else if (c < 0x800)
+            {
+                ba[dp++] = (byte)(0xC0 | (c >> 6));
+                ba[dp++] = (byte)(0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ba[dp++] = (byte)(0xF0 | (cp >> 18));
+                ba[dp++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                ba[dp++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                ba[dp++] = (byte)(0x80 | (cp & 0x3F));
+            }
+            else if (Character.isSurrogate(c))
+            {
+                ba[dp++] = '?';
+            }
+            else
+            {
+                ba[dp++] = (byte)(0xE0 | (c >> 12));
+                ba[dp++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+                ba[dp++] = (byte)(0x80 | (c & 0x3F));
+            }
+        }
+        return ba;
+    }
+}
@@ -35,15 +35,20 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.nio.file.spi.FileSystemProvider;
+import java.security.AccessController;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.regex.Pattern;
+import sun.security.action.GetIntegerAction;
 import static ikvm.internal.Util.WINDOWS;
 
 final class NetFileSystem extends FileSystem
@@ -214,17 +219,14 @@ final class NetFileSystem extends FileSystem
 
     static final class NetWatchService implements WatchService
     {
-        static final WatchEvent<?> overflowEvent = new WatchEvent<Object>() {
-            public Object context() {
-                return null;
-            }
-            public int count() {
-                return 1;
-            }
-            public WatchEvent.Kind<Object> kind() {
-                return StandardWatchEventKinds.OVERFLOW;
-            }
-        };
+        // The number of milliseconds a key collects events before it is signalled.
+        // With the default of 0 a key is signalled as soon as its first event arrives.
+        // Like maxEvents it is read when the watch service is created.
+        private final int batchWindow = AccessController.doPrivileged(new GetIntegerAction("ikvm.nio.fs.watch.batchWindow", 0));
+        // The number of distinct events a key holds before further events are counted by a single OVERFLOW event.
+        private final int maxEvents = AccessController.doPrivileged(new GetIntegerAction("ikvm.nio.fs.watch.maxEvents", 512));
+        // The largest buffer FileSystemWatcher supports, it avoids overflows when a whole tree changes at once
+        private static final int LARGE_BUFFER_SIZE = 64 * 1024;
         private static final WatchKey CLOSED = new WatchKey() {
             public boolean isValid() { return false; }
             public List<WatchEvent<?>> pollEvents() { return null; }
@@ -235,6 +237,10 @@ final class NetFileSystem extends FileSystem
         private boolean closed;
         private final ArrayList<NetWatchKey> keys = new ArrayList<>();
         private final LinkedBlockingQueue<WatchKey> queue = new LinkedBlockingQueue<>();
+        // protected by timerLock, it is taken while a key is locked
+        private final Object timerLock = new Object();
+        private Timer timer;
+        private boolean timerCancelled;
 
         public synchronized void close()
         {
@@ -245,10 +251,34 @@ final class NetFileSystem extends FileSystem
                 {
                     key.close();
                 }
+                synchronized (timerLock)
+                {
+                    timerCancelled = true;
+                    if (timer != null)
+                    {
+                        timer.cancel();
+                    }
+                }
                 enqueue(CLOSED);
             }
         }
 
+        private void schedule(TimerTask task)
+        {
+            synchronized (timerLock)
+            {
+                if (timerCancelled)
+                {
+                    return;
+                }
+                if (timer == null)
+                {
+                    timer = new Timer("NetWatchService", true);
+                }
+                timer.schedule(task, batchWindow);
+            }
+        }
+
         private WatchKey checkClosed(WatchKey key)
         {
             if (key == CLOSED)
@@ -289,13 +319,63 @@ final class NetFileSystem extends FileSystem
             }
         }
 
+        private static final class Event implements WatchEvent<Path>
+        {
+            private final WatchEvent.Kind<Path> kind;
+            private final Path context;
+            int count = 1;
+
+            Event(WatchEvent.Kind<Path> kind, Path context)
+            {
+                this.kind = kind;
+                this.context = context;
+            }
+
+            public Path context()
+            {
+                return context;
+            }
+
+            public int count()
+            {
+                return count;
+            }
+
+            public WatchEvent.Kind<Path> kind()
+            {
+                return kind;
+            }
+        }
+
+        private static final class OverflowEvent implements WatchEvent<Object>
+        {
+            int count = 1;
+
+            public Object context()
+            {
+                return null;
+            }
+
+            public int count()
+            {
+                return count;
+            }
+
+            public WatchEvent.Kind<Object> kind()
+            {
+                return StandardWatchEventKinds.OVERFLOW;
+            }
+        }
+
         private final class NetWatchKey implements WatchKey
         {
             private final NetPath path;
             private FileSystemWatcher fsw;
             private ArrayList<WatchEvent<?>> list = new ArrayList<>();
-            private HashSet<String> modified = new HashSet<>();
+            // the last pending event of each name, used to coalesce events
+            private final HashMap<String, Event> last = new HashMap<>();
             private boolean signaled;
+            private boolean scheduled;
             
             NetWatchKey(NetPath path)
             {
@@ -312,35 +392,22 @@ final class NetFileSystem extends FileSystem
                     fsw = null;
                 }
                 fsw = new FileSystemWatcher(path.path);
+                FileSystemEventHandler handler = new FileSystemEventHandler(new FileSystemEventHandler.Method() {
+                    public void Invoke(Object sender, FileSystemEventArgs e) {
+                        addEvent(kindOf(e), e.get_Name());
+                    }
+                });
                 if (create)
                 {
-                    fsw.add_Created(new FileSystemEventHandler(new FileSystemEventHandler.Method() {
-                        public void Invoke(Object sender, FileSystemEventArgs e) {
-                            addEvent(createEvent(e), null);
-                        }
-                    }));
+                    fsw.add_Created(handler);
                 }
                 if (delete)
                 {
-                    fsw.add_Deleted(new FileSystemEventHandler(new FileSystemEventHandler.Method() {
-                        public void Invoke(Object sender, FileSystemEventArgs e) {
-                            addEvent(createEvent(e), null);
-                        }
-                    }));
+                    fsw.add_Deleted(handler);
                 }
                 if (modify)
                 {
-                    fsw.add_Changed(new FileSystemEventHandler(new FileSystemEventHandler.Method() {
-                        public void Invoke(Object sender, FileSystemEventArgs e) {
-                            synchronized (NetWatchKey.this) {
-                                if (modified.contains(e.get_Name())) {
-                                    // we already have an ENTRY_MODIFY event pending
-                                    return;
-                                }
-                            }
-                            addEvent(createEvent(e), e.get_Name());
-                        }
-                    }));
+                    fsw.add_Changed(handler);
                 }
                 fsw.add_Error(new ErrorEventHandler(new ErrorEventHandler.Method() {
                     public void Invoke(Object sender, ErrorEventArgs e) {
@@ -349,37 +416,34 @@ final class NetFileSystem extends FileSystem
                             // the directory we were watching was deleted
                             cancelledByError();
                         } else if (overflow) {
-                            addEvent(overflowEvent, null);
+                            addOverflow();
                         }
                     }
                 }));
                 if (subtree)
                 {
+                    // a single recursive watcher covers the whole tree, but it
+                    // shares one buffer between all directories
                     fsw.set_IncludeSubdirectories(true);
                 }
+                if (subtree || batchWindow > 0)
+                {
+                    fsw.set_InternalBufferSize(LARGE_BUFFER_SIZE);
+                }
                 fsw.set_EnableRaisingEvents(true);
             }
 
-            WatchEvent<?> createEvent(final FileSystemEventArgs e)
+            WatchEvent.Kind<Path> kindOf(FileSystemEventArgs e)
             {
-                return new WatchEvent<Path>() {
-                    public Path context() {
-                        return new NetPath((NetFileSystem)path.getFileSystem(), e.get_Name());
-                    }
-                    public int count() {
-                        return 1;
-                    }
-                    public WatchEvent.Kind<Path> kind() {
-                        switch (e.get_ChangeType().Value) {
-                            case WatcherChangeTypes.Created:
-                                return StandardWatchEventKinds.ENTRY_CREATE;
-                            case WatcherChangeTypes.Deleted:
-                                return StandardWatchEventKinds.ENTRY_DELETE;
-                            default:
-                                return StandardWatchEventKinds.ENTRY_MODIFY;
-                        }
-                    }
-                };
+                switch (e.get_ChangeType().Value)
+                {
+                    case WatcherChangeTypes.Created:
+                        return StandardWatchEventKinds.ENTRY_CREATE;
+                    case WatcherChangeTypes.Deleted:
+                        return StandardWatchEventKinds.ENTRY_DELETE;
+                    default:
+                        return StandardWatchEventKinds.ENTRY_MODIFY;
+                }
             }
 
             void cancelledByError()
@@ -395,14 +459,81 @@ final class NetFileSystem extends FileSystem
                 }
             }
 
-            synchronized void addEvent(WatchEvent<?> event, String modified)
+            synchronized void addEvent(WatchEvent.Kind<Path> kind, String name)
             {
+                if (overflowed())
+                {
+                    // the consumer has to rescan the directory anyway
+                    ((OverflowEvent)list.get(list.size() - 1)).count++;
+                    return;
+                }
+                Event prev = last.get(name);
+                if (prev != null)
+                {
+                    if (prev.kind == kind)
+                    {
+                        prev.count++;
+                        return;
+                    }
+                    if (kind == StandardWatchEventKinds.ENTRY_MODIFY && prev.kind == StandardWatchEventKinds.ENTRY_CREATE)
+                    {
+                        // the ENTRY_CREATE event pending for this name covers the modification
+                        return;
+                    }
+                }
+                if (list.size() >= maxEvents)
+                {
+                    addOverflow();
+                    return;
+                }
+                Event event = new Event(kind, new NetPath((NetFileSystem)path.getFileSystem(), name));
                 list.add(event);
-                if (modified != null)
+                last.put(name, event);
+                signal();
+            }
+
+            synchronized void addOverflow()
+            {
+                // the pending events are kept and a single OVERFLOW event is
+                // appended, it counts the events lost from then on and tells
+                // the consumer to rescan the directory
+                if (overflowed())
                 {
-                    this.modified.add(modified);
+                    ((OverflowEvent)list.get(list.size() - 1)).count++;
+                    return;
+                }
+                list.add(new OverflowEvent());
+                signal();
+            }
+
+            private boolean overflowed()
+            {
+                return !list.isEmpty() && list.get(list.size() - 1) instanceof OverflowEvent;
+            }
+
+            private void signal()
+            {
+                if (signaled || scheduled)
+                {
+                    return;
+                }
+                if (batchWindow > 0)
+                {
+                    // collect the events of the next batchWindow milliseconds in the same batch
+                    scheduled = true;
+                    schedule(new TimerTask() {
+                        public void run() {
+                            synchronized (NetWatchKey.this) {
+                                scheduled = false;
+                                if (!signaled && !list.isEmpty()) {
+                                    signaled = true;
+                                    enqueue(NetWatchKey.this);
+                                }
+                            }
+                        }
+                    });
                 }
-                if (!signaled)
+                else
                 {
                     signaled = true;
                     enqueue(this);
@@ -418,7 +549,7 @@ final class NetFileSystem extends FileSystem
             {
                 ArrayList<WatchEvent<?>> r = list;
                 list = new ArrayList<>();
-                modified.clear();
+                last.clear();
                 return r;
             }
 
@@ -26,6 +26,9 @@ package sun.nio.fs;
 
 import ikvm.internal.NotYetImplementedError;
 import static ikvm.internal.Util.WINDOWS;
+import cli.System.IDisposable;
+import cli.System.Collections.IEnumerable;
+import cli.System.Collections.IEnumerator;
 import cli.System.IO.Directory;
 import cli.System.IO.DirectoryInfo;
 import cli.System.IO.DriveInfo;
@@ -36,6 +39,7 @@ import cli.System.IO.FileMode;
 import cli.System.IO.FileShare;
 import cli.System.IO.FileStream;
 import cli.System.IO.FileOptions;
+import cli.System.IO.FileSystemInfo;
 import cli.System.Runtime.InteropServices.DllImportAttribute;
 import cli.System.Runtime.InteropServices.Marshal;
 import cli.System.Security.AccessControl.FileSystemRights;
@@ -426,29 +430,32 @@ final class NetFileSystemProvider extends AbstractFileSystemProvider
             if (false) throw new cli.System.IO.IOException();
             if (false) throw new cli.System.Security.SecurityException();
             if (false) throw new cli.System.UnauthorizedAccessException();
-            final String[] files = Directory.GetFileSystemEntries(ndir);
+            // enumerate lazily, the entries come with their attributes (from FindNextFile on Windows)
+            final IEnumerator entries = ((IEnumerable)new DirectoryInfo(ndir).EnumerateFileSystemInfos()).GetEnumerator();
             return new DirectoryStream<Path>() {
+                private boolean iteratorReturned;
                 private boolean closed;
-                public Iterator<Path> iterator() {
-                    if (closed) {
+                public synchronized Iterator<Path> iterator() {
+                    if (closed || iteratorReturned) {
                         throw new IllegalStateException();
                     }
-                    closed = true;
+                    iteratorReturned = true;
                     return new Iterator<Path>() {
-                        private int pos;
                         private Path filtered;
                         public boolean hasNext() {
-                            if (filtered == null) {
-                                while (pos != files.length) {
-                                    Path p = new NetPath(fs, cli.System.IO.Path.Combine(ndir, files[pos++]));
-                                    try {
-                                        if (filter.accept(p)) {
-                                            filtered = p;
-                                            break;
-                                        }
-                                    } catch (IOException x) {
-                                        throw new DirectoryIteratorException(x);
+                            while (filtered == null) {
+                                FileSystemInfo info = nextEntry();
+                                if (info == null) {
+                                    break;
+                                }
+                                Path p = new NetPath.NetPathWithAttributes(fs, cli.System.IO.Path.Combine(ndir, info.get_Name()),
+                                    DosFileAttributesViewImpl.attributesOf(info));
+                                try {
+                                    if (filter.accept(p)) {
+                                        filtered = p;
                                     }
+                                } catch (IOException x) {
+                                    throw new DirectoryIteratorException(x);
                                 }
                             }
                             return filtered != null;
@@ -466,8 +473,31 @@ final class NetFileSystemProvider extends AbstractFileSystemProvider
                         }
                     };
                 }
-                public void close() {
-                    closed = true;
+                private synchronized FileSystemInfo nextEntry() {
+                    if (closed) {
+                        return null;
+                    }
+                    try {
+                        if (false) throw new cli.System.IO.IOException();
+                        if (false) throw new cli.System.Security.SecurityException();
+                        if (false) throw new cli.System.UnauthorizedAccessException();
+                        if (entries.MoveNext()) {
+                            return (FileSystemInfo)entries.get_Current();
+                        }
+                    } catch (cli.System.IO.IOException
+                           | cli.System.Security.SecurityException
+                           | cli.System.UnauthorizedAccessException x) {
+                        throw new DirectoryIteratorException(new IOException(x.getMessage()));
+                    }
+                    close();
+                    return null;
+                }
+                public synchronized void close() {
+                    if (!closed) {
+                        closed = true;
+                        // releases the find handle
+                        ((IDisposable)entries).Dispose();
+                    }
                 }
             };
         }
@@ -1094,9 +1124,9 @@ final class NetFileSystemProvider extends AbstractFileSystemProvider
 
         private static class DosFileAttributesImpl implements DosFileAttributes
         {
-            private final FileInfo info;
+            private final FileSystemInfo info;
 
-            DosFileAttributesImpl(FileInfo info)
+            DosFileAttributesImpl(FileSystemInfo info)
             {
                 this.info = info;
             }
@@ -1148,7 +1178,7 @@ final class NetFileSystemProvider extends AbstractFileSystemProvider
 
             public long size()
             {
-                return info.get_Exists() ? info.get_Length() : 0;
+                return info instanceof FileInfo && info.get_Exists() ? ((FileInfo)info).get_Length() : 0;
             }
 
             public boolean isArchive()
@@ -1172,6 +1202,12 @@ final class NetFileSystemProvider extends AbstractFileSystemProvider
             }
         }
 
+        // the attributes of a directory entry, as returned by the enumeration
+        static DosFileAttributes attributesOf(FileSystemInfo info)
+        {
+            return new DosFileAttributesImpl(info);
+        }
+
         static DosFileAttributesImpl readAttributesImpl(String path) throws IOException
         {
             SecurityManager sm = System.getSecurityManager();
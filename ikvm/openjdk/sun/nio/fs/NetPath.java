@@ -30,16 +30,23 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import static ikvm.internal.Util.MACOSX;
 import static ikvm.internal.Util.WINDOWS;
 
-final class NetPath extends AbstractPath
+class NetPath extends AbstractPath
 {
     private static final char[] invalid = cli.System.IO.Path.GetInvalidFileNameChars();
     private final NetFileSystem fs;
     final String path;
+    private final int rootLength;
+    // the start of each name element, computed on first use
+    private volatile int[] offsets;
+    // computed on first use
+    private int hash;
 
     NetPath(NetFileSystem fs, String path)
     {
@@ -93,6 +100,16 @@ final class NetPath extends AbstractPath
         }
         this.fs = fs;
         this.path = path;
+        this.rootLength = rootLength(path);
+    }
+
+    // for a path that is already in parsed form, e.g. a part of another path
+    private NetPath(NetFileSystem fs, String path, int rootLength, int[] offsets)
+    {
+        this.fs = fs;
+        this.path = path;
+        this.rootLength = rootLength;
+        this.offsets = offsets;
     }
 
     public FileSystem getFileSystem()
@@ -108,11 +125,10 @@ final class NetPath extends AbstractPath
 
     public Path getRoot()
     {
-        int len = getRootLength();
-        return len == 0 ? null : new NetPath(fs, path.substring(0, len));
+        return rootLength == 0 ? null : new NetPath(fs, path.substring(0, rootLength), rootLength, new int[0]);
     }
 
-    private int getRootLength()
+    private static int rootLength(String path)
     {
         if (WINDOWS)
         {
@@ -143,95 +159,123 @@ final class NetPath extends AbstractPath
         }
     }
 
+    private int[] offsets()
+    {
+        int[] offsets = this.offsets;
+        if (offsets == null)
+        {
+            if (path.length() == rootLength)
+            {
+                // the empty path has one (empty) name, a root has none
+                offsets = rootLength == 0 ? new int[1] : new int[0];
+            }
+            else
+            {
+                int count = 1;
+                for (int i = rootLength; i < path.length(); i++)
+                {
+                    if (path.charAt(i) == cli.System.IO.Path.DirectorySeparatorChar)
+                    {
+                        count++;
+                    }
+                }
+                offsets = new int[count];
+                offsets[0] = rootLength;
+                for (int i = rootLength, n = 1; n < count; i++)
+                {
+                    if (path.charAt(i) == cli.System.IO.Path.DirectorySeparatorChar)
+                    {
+                        offsets[n++] = i + 1;
+                    }
+                }
+            }
+            this.offsets = offsets;
+        }
+        return offsets;
+    }
+
+    // the end of the name element at index
+    private int nameEnd(int[] offsets, int index)
+    {
+        return index + 1 < offsets.length ? offsets[index + 1] - 1 : path.length();
+    }
+
     public Path getFileName()
     {
         if (path.length() == 0)
         {
             return this;
         }
-        if (path.length() == getRootLength())
+        int[] offsets = offsets();
+        if (offsets.length == 0)
         {
             return null;
         }
-        String name = cli.System.IO.Path.GetFileName(path);
-        if (name == null || name.length() == 0)
-        {
-            return null;
-        }
-        return new NetPath(fs, name);
+        return new NetPath(fs, path.substring(offsets[offsets.length - 1]), 0, new int[1]);
     }
 
     public Path getParent()
     {
-        if (path.length() == getRootLength())
+        int[] offsets = offsets();
+        int count = offsets.length;
+        if (count == 0 || path.length() == 0)
         {
             return null;
         }
-        String parent = cli.System.IO.Path.GetDirectoryName(path);
-        if (parent == null || parent.length() == 0)
+        if (count == 1)
         {
-            return null;
+            return getRoot();
         }
-        return new NetPath(fs, parent);
+        // the parent's names are the first names of this path
+        return new NetPath(fs, path.substring(0, offsets[count - 1] - 1), rootLength, Arrays.copyOf(offsets, count - 1));
     }
 
     public int getNameCount()
     {
-        int len = getRootLength();
-        if (path.length() == len)
-        {
-            return len == 0 ? 1 : 0;
-        }
-        int count = 1;
-        for (int i = len; i < path.length(); i++)
-        {
-            if (path.charAt(i) == cli.System.IO.Path.DirectorySeparatorChar)
-            {
-                count++;
-            }
-        }
-        return count;
+        return offsets().length;
     }
 
     public Path getName(int index)
     {
-        return new NetPath(fs, getNameImpl(index));
+        return new NetPath(fs, getNameImpl(index), 0, new int[1]);
     }
 
     private String getNameImpl(int index)
     {
-        for (int pos = getRootLength(); pos < path.length(); index--)
+        int[] offsets = offsets();
+        if (index < 0 || index >= offsets.length)
         {
-            int next = path.indexOf(cli.System.IO.Path.DirectorySeparatorChar, pos);
-            if (index == 0)
-            {
-                return next == -1 ? path.substring(pos) : path.substring(pos, next);
-            }
-            if (next == -1)
-            {
-                break;
-            }
-            pos = next + 1;
-        }
-        if (path.length() == 0 && index == 0)
-        {
-            return "";
+            throw new IllegalArgumentException();
         }
-        throw new IllegalArgumentException();
+        return path.substring(offsets[index], nameEnd(offsets, index));
+    }
+
+    // compares the name elements without creating strings
+    private boolean nameEquals(int index, NetPath other, int otherIndex, boolean ignoreCase)
+    {
+        int[] offsets = offsets();
+        int[] otherOffsets = other.offsets();
+        int begin = offsets[index];
+        int len = nameEnd(offsets, index) - begin;
+        int otherBegin = otherOffsets[otherIndex];
+        return len == other.nameEnd(otherOffsets, otherIndex) - otherBegin
+            && path.regionMatches(ignoreCase, begin, other.path, otherBegin, len);
     }
 
     public Path subpath(int beginIndex, int endIndex)
     {
-        StringBuilder sb = new StringBuilder();
-        for (int i = beginIndex; i < endIndex; i++)
+        int[] offsets = offsets();
+        if (beginIndex < 0 || beginIndex >= offsets.length || endIndex > offsets.length || beginIndex >= endIndex)
         {
-            if (i != beginIndex)
-            {
-                sb.append(cli.System.IO.Path.DirectorySeparatorChar);
-            }
-            sb.append(getNameImpl(i));
+            throw new IllegalArgumentException();
         }
-        return new NetPath(fs, sb.toString());
+        int begin = offsets[beginIndex];
+        int[] subOffsets = new int[endIndex - beginIndex];
+        for (int i = 0; i < subOffsets.length; i++)
+        {
+            subOffsets[i] = offsets[beginIndex + i] - begin;
+        }
+        return new NetPath(fs, path.substring(begin, nameEnd(offsets, endIndex - 1)), 0, subOffsets);
     }
 
     public boolean startsWith(Path other)
@@ -242,8 +286,8 @@ final class NetPath extends AbstractPath
             return path.length() == 0;
         }
         return path.regionMatches(WINDOWS, 0, npath, 0, npath.length())
-            && (npath.length() == getRootLength()
-                || (npath.length() > getRootLength()
+            && (npath.length() == rootLength
+                || (npath.length() > rootLength
                     && (path.length() == npath.length()
                         || (path.length() > npath.length() && path.charAt(npath.length()) == cli.System.IO.Path.DirectorySeparatorChar))));
     }
@@ -266,11 +310,11 @@ final class NetPath extends AbstractPath
         {
             return false;
         }
-        int otherRootLength = nother.getRootLength();
+        int otherRootLength = nother.rootLength;
         if (otherRootLength > 0)
         {
             if (otherNameCount != nameCount
-                || getRootLength() != otherRootLength
+                || rootLength != otherRootLength
                 || !path.regionMatches(WINDOWS, 0, npath, 0, otherRootLength))
             {
                 return false;
@@ -279,9 +323,7 @@ final class NetPath extends AbstractPath
         int skip = nameCount - otherNameCount;
         for (int i = 0; i < otherNameCount; i++)
         {
-            String s1 = getNameImpl(i + skip);
-            String s2 = nother.getNameImpl(i);
-            if (s1.length() != s2.length() || !s1.regionMatches(WINDOWS, 0, s2, 0, s1.length()))
+            if (!nameEquals(i + skip, nother, i, WINDOWS))
             {
                 return false;
             }
@@ -291,7 +333,10 @@ final class NetPath extends AbstractPath
 
     public Path normalize()
     {
-        int rootLength = getRootLength();
+        if (isNormal())
+        {
+            return this;
+        }
         ArrayList<String> list = new ArrayList<>();
         for (int i = 0, count = getNameCount(); i < count; i++)
         {
@@ -320,7 +365,7 @@ final class NetPath extends AbstractPath
             }
         }
         StringBuilder sb = new StringBuilder();
-        sb.append(path.substring(0, getRootLength()));
+        sb.append(path.substring(0, rootLength));
         for (int i = 0; i < list.size(); i++)
         {
             if (i != 0)
@@ -332,6 +377,22 @@ final class NetPath extends AbstractPath
         return new NetPath(fs, sb.toString());
     }
 
+    // true if there are no "." or ".." names
+    private boolean isNormal()
+    {
+        int[] offsets = offsets();
+        for (int i = 0; i < offsets.length; i++)
+        {
+            int begin = offsets[i];
+            int len = nameEnd(offsets, i) - begin;
+            if (len != 0 && len <= 2 && path.charAt(begin) == '.' && (len == 1 || path.charAt(begin + 1) == '.'))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public Path resolve(Path other)
     {
         NetPath nother = NetPath.from(other);
@@ -346,17 +407,17 @@ final class NetPath extends AbstractPath
         }
         if (WINDOWS)
         {
-            if (nother.getRootLength() == 2 && getRootLength() == 3 && (path.charAt(0) | 0x20) == (npath.charAt(0) | 0x20))
+            if (nother.rootLength == 2 && rootLength == 3 && (path.charAt(0) | 0x20) == (npath.charAt(0) | 0x20))
             {
                 // we're in the case where we have a root "x:\" and other "x:", so we have to chop off "x:" from other because
                 // otherwise Path.Combine will just return other
                 npath = npath.substring(2);
             }
-            else if (nother.getRootLength() == 1 && getRootLength() > 3)
+            else if (nother.rootLength == 1 && rootLength > 3)
             {
                 // we're in the case where we have a root "\\host\share\" and other "\",
                 // we have to manually handle this because Path.Combine doesn't do the right thing
-                return new NetPath(fs, path.substring(0, getRootLength()) + npath);
+                return new NetPath(fs, path.substring(0, rootLength) + npath);
             }
         }
         return new NetPath(fs, cli.System.IO.Path.Combine(path, npath));
@@ -369,8 +430,7 @@ final class NetPath extends AbstractPath
         {
             return new NetPath(fs, "");
         }
-        int rootLength = getRootLength();
-        if (nother.getRootLength() != rootLength || !path.regionMatches(true, 0, nother.path, 0, rootLength))
+        if (nother.rootLength != rootLength || !path.regionMatches(true, 0, nother.path, 0, rootLength))
         {
             throw new IllegalArgumentException("'other' has different root");
         }
@@ -379,21 +439,21 @@ final class NetPath extends AbstractPath
         int count = Math.min(nameCount, otherNameCount);
         int i = 0;
         // skip the common parts
-        for (; i < count && getNameImpl(i).equals(nother.getNameImpl(i)); i++)
+        for (; i < count && nameEquals(i, nother, i, false); i++)
         {
         }
         // remove the unused parts of our path
         StringBuilder sb = new StringBuilder();
         for (int j = i; j < nameCount; j++)
         {
-            sb.append("..\\");
+            sb.append("..").append(cli.System.IO.Path.DirectorySeparatorChar);
         }
         // append the new parts of other
         for (int j = i; j < otherNameCount; j++)
         {
             if (j != i)
             {
-                sb.append("\\");
+                sb.append(cli.System.IO.Path.DirectorySeparatorChar);
             }
             sb.append(nother.getNameImpl(j));
         }
@@ -529,21 +589,35 @@ final class NetPath extends AbstractPath
 
     public boolean equals(Object other)
     {
+        if (this == other)
+        {
+            return true;
+        }
         if (!(other instanceof NetPath))
         {
             return false;
         }
-        return compareTo((NetPath)other) == 0;
+        NetPath nother = (NetPath)other;
+        if (path.length() != nother.path.length()
+            || (hash != 0 && nother.hash != 0 && hash != nother.hash))
+        {
+            return false;
+        }
+        return compareTo(nother) == 0;
     }
 
     public int hashCode()
     {
-        int hash = 0;
-        for (int i = 0; i < path.length(); i++)
+        int h = hash;
+        if (h == 0)
         {
-            hash = 97 * hash + Character.toUpperCase(path.charAt(i));
+            for (int i = 0; i < path.length(); i++)
+            {
+                h = 97 * h + Character.toUpperCase(path.charAt(i));
+            }
+            hash = h;
         }
-        return hash;
+        return h;
     }
 
     public String toString()
@@ -553,7 +627,33 @@ final class NetPath extends AbstractPath
 
     boolean isUnc()
     {
-        return WINDOWS && getRootLength() > 3;
+        return WINDOWS && rootLength > 3;
+    }
+
+    /**
+     * A path returned by a directory stream.  It holds the attributes that
+     * came with the directory entry, so FileTreeWalker doesn't have to read
+     * them again.
+     */
+    static final class NetPathWithAttributes extends NetPath implements BasicFileAttributesHolder
+    {
+        private volatile BasicFileAttributes attrs;
+
+        NetPathWithAttributes(NetFileSystem fs, String path, BasicFileAttributes attrs)
+        {
+            super(fs, path);
+            this.attrs = attrs;
+        }
+
+        public BasicFileAttributes get()
+        {
+            return attrs;
+        }
+
+        public void invalidate()
+        {
+            attrs = null;
+        }
     }
 
     static NetPath from(Path path)
@@ -210,6 +210,129 @@ static class Java_java_io_FileDescriptor
 		}
 	}
 
+	[SecuritySafeCritical]
+	public static int pread(FileStream fs, byte[] buf, int offset, int len, long position)
+	{
+		// the marshaller pins buf and keeps the handle alive (or throws ObjectDisposedException) for the duration of the call
+		SafeFileHandle handle = fs.SafeFileHandle;
+		int count;
+		if (JVM.IsUnix)
+		{
+			count = ikvm_pread(handle, ref buf[offset], len, position);
+			if (count < 0)
+			{
+#if !FIRST_PASS
+				throw new java.io.IOException("Read failed");
+#endif
+			}
+		}
+		else
+		{
+			// on a synchronous handle ReadFile moves the file pointer to the end of the range read, so we put it back
+			long filePointer = GetFilePointer(handle);
+			System.Threading.NativeOverlapped overlapped = new System.Threading.NativeOverlapped();
+			overlapped.OffsetLow = (int)position;
+			overlapped.OffsetHigh = (int)(position >> 32);
+			try
+			{
+				if (ReadFile(handle, ref buf[offset], len, out count, ref overlapped) == 0)
+				{
+					const int ERROR_HANDLE_EOF = 38;
+					int error = Marshal.GetLastWin32Error();
+					if (error == ERROR_HANDLE_EOF)
+					{
+						return 0;
+					}
+#if !FIRST_PASS
+					throw new java.io.IOException("Read failed (Win32 error " + error + ")");
+#endif
+				}
+			}
+			finally
+			{
+				SetFilePointer(handle, filePointer);
+			}
+		}
+		return count;
+	}
+
+	[SecuritySafeCritical]
+	public static int pwrite(FileStream fs, byte[] buf, int offset, int len, long position)
+	{
+		// the marshaller pins buf and keeps the handle alive (or throws ObjectDisposedException) for the duration of the call
+		SafeFileHandle handle = fs.SafeFileHandle;
+		int count;
+		if (JVM.IsUnix)
+		{
+			count = ikvm_pwrite(handle, ref buf[offset], len, position);
+			if (count < 0)
+			{
+#if !FIRST_PASS
+				throw new java.io.IOException("Write failed");
+#endif
+			}
+		}
+		else
+		{
+			// like ReadFile, WriteFile moves the file pointer of a synchronous handle
+			long filePointer = GetFilePointer(handle);
+			System.Threading.NativeOverlapped overlapped = new System.Threading.NativeOverlapped();
+			overlapped.OffsetLow = (int)position;
+			overlapped.OffsetHigh = (int)(position >> 32);
+			try
+			{
+				if (WriteFile(handle, ref buf[offset], len, out count, ref overlapped) == 0)
+				{
+#if !FIRST_PASS
+					throw new java.io.IOException("Write failed (Win32 error " + Marshal.GetLastWin32Error() + ")");
+#endif
+				}
+			}
+			finally
+			{
+				SetFilePointer(handle, filePointer);
+			}
+		}
+		return count;
+	}
+
+	[SecurityCritical]
+	private static long GetFilePointer(SafeFileHandle handle)
+	{
+		const int FILE_CURRENT = 1;
+		long filePointer;
+		if (SetFilePointerEx(handle, 0, out filePointer, FILE_CURRENT) == 0)
+		{
+#if !FIRST_PASS
+			throw new java.io.IOException("Seek failed (Win32 error " + Marshal.GetLastWin32Error() + ")");
+#endif
+		}
+		return filePointer;
+	}
+
+	[SecurityCritical]
+	private static void SetFilePointer(SafeFileHandle handle, long filePointer)
+	{
+		const int FILE_BEGIN = 0;
+		long newFilePointer;
+		SetFilePointerEx(handle, filePointer, out newFilePointer, FILE_BEGIN);
+	}
+
+	[DllImport("kernel32", SetLastError = true)]
+	private static extern int ReadFile(SafeFileHandle hFile, ref byte lpBuffer, int nNumberOfBytesToRead, out int lpNumberOfBytesRead, ref System.Threading.NativeOverlapped lpOverlapped);
+
+	[DllImport("kernel32", SetLastError = true)]
+	private static extern int WriteFile(SafeFileHandle hFile, ref byte lpBuffer, int nNumberOfBytesToWrite, out int lpNumberOfBytesWritten, ref System.Threading.NativeOverlapped lpOverlapped);
+
+	[DllImport("kernel32", SetLastError = true)]
+	private static extern int SetFilePointerEx(SafeFileHandle hFile, long liDistanceToMove, out long lpNewFilePointer, int dwMoveMethod);
+
+	[DllImport("ikvm-native")]
+	private static extern int ikvm_pread(SafeFileHandle handle, ref byte buf, int count, long position);
+
+	[DllImport("ikvm-native")]
+	private static extern int ikvm_pwrite(SafeFileHandle handle, ref byte buf, int count, long position);
+
 	[SecurityCritical]
 	private static void ResolveFSync()
 	{
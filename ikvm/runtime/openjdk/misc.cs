@@ -75,22 +75,7 @@ static class Java_java_util_jar_JarFile
 #if FIRST_PASS
 		return null;
 #else
-		java.util.zip.ZipFile zf = (java.util.zip.ZipFile)thisJarFile;
-		java.util.Enumeration entries = zf.entries();
-		List<string> list = null;
-		while (entries.hasMoreElements())
-		{
-			java.util.zip.ZipEntry entry = (java.util.zip.ZipEntry)entries.nextElement();
-			if (entry.getName().StartsWith("META-INF/", StringComparison.OrdinalIgnoreCase))
-			{
-				if (list == null)
-				{
-					list = new List<string>();
-				}
-				list.Add(entry.getName());
-			}
-		}
-		return list == null ? null : list.ToArray();
+		return ((java.util.zip.ZipFile)thisJarFile).getMetaInfEntryNames();
 #endif
 	}
 }
@@ -24,6 +24,8 @@
 
 using System;
 using System.Collections.Generic;
+using System.Runtime.InteropServices;
+using System.Security;
 using FileDescriptor = java.io.FileDescriptor;
 using InetAddress = java.net.InetAddress;
 using ByteBuffer = java.nio.ByteBuffer;
@@ -381,65 +383,105 @@ namespace IKVM.NativeCode.sun.nio.ch
 {
 	static class SocketDispatcher
 	{
+		// sun.nio.ch.IOStatus
+		private const int EOF = -1;
+		private const int UNAVAILABLE = -2;
+
 		public static long read(object nd, FileDescriptor fd, ByteBuffer[] bufs, int offset, int length)
 		{
 #if FIRST_PASS
 			return 0;
 #else
-			ByteBuffer[] altBufs = null;
-			List<ArraySegment<byte>> list = new List<ArraySegment<byte>>(length);
+			long result;
+			if (TryVectored(fd, bufs, offset, length, false, out result))
+			{
+				return result;
+			}
+			// buffers without an array share a single temporary array
+			byte[] temp = null;
+			int tempSize = 0;
 			for (int i = 0; i < length; i++)
 			{
 				ByteBuffer bb = bufs[i + offset];
 				if (!bb.hasArray())
 				{
-					if (altBufs == null)
-					{
-						altBufs = new ByteBuffer[bufs.Length];
-					}
-					bb = altBufs[i + offset] = ByteBuffer.allocate(bb.remaining());
+					tempSize += bb.remaining();
 				}
-				list.Add(new ArraySegment<byte>(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining()));
 			}
-			int count;
-			try
+			if (tempSize != 0)
 			{
-				count = fd.getSocket().Receive(list);
+				temp = global::sun.nio.ch.IOUtil.getTemporaryArray(tempSize);
 			}
-			catch (System.Net.Sockets.SocketException x)
+			int count = 0;
+			try
 			{
-				if (x.ErrorCode == global::java.net.SocketUtil.WSAEWOULDBLOCK)
+				List<ArraySegment<byte>> list = new List<ArraySegment<byte>>(length);
+				long requested = 0;
+				int tempPos = 0;
+				for (int i = 0; i < length; i++)
+				{
+					ByteBuffer bb = bufs[i + offset];
+					if (bb.hasArray())
+					{
+						list.Add(new ArraySegment<byte>(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining()));
+					}
+					else
+					{
+						list.Add(new ArraySegment<byte>(temp, tempPos, bb.remaining()));
+						tempPos += bb.remaining();
+					}
+					requested += bb.remaining();
+				}
+				try
 				{
-					count = 0;
+					count = fd.getSocket().Receive(list);
 				}
-				else
+				catch (System.Net.Sockets.SocketException x)
 				{
+					if (x.ErrorCode == global::java.net.SocketUtil.WSAESHUTDOWN)
+					{
+						return EOF;
+					}
+					if (x.ErrorCode == global::java.net.SocketUtil.WSAEWOULDBLOCK)
+					{
+						return UNAVAILABLE;
+					}
 					throw global::java.net.SocketUtil.convertSocketExceptionToIOException(x);
 				}
-			}
-			catch (ObjectDisposedException)
-			{
-				throw new global::java.net.SocketException("Socket is closed");
-			}
-			int total = count;
-			for (int i = 0; total > 0 && i < length; i++)
-			{
-				ByteBuffer bb = bufs[i + offset];
-				ByteBuffer abb;
-				int consumed = Math.Min(total, bb.remaining());
-				if (altBufs != null && (abb = altBufs[i + offset]) != null)
+				catch (ObjectDisposedException)
 				{
-					abb.position(consumed);
-					abb.flip();
-					bb.put(abb);
+					throw new global::java.net.SocketException("Socket is closed");
 				}
-				else
+				if (count == 0 && requested > 0)
 				{
-					bb.position(bb.position() + consumed);
+					return EOF;
+				}
+				int total = count;
+				tempPos = 0;
+				for (int i = 0; total > 0 && i < length; i++)
+				{
+					ByteBuffer bb = bufs[i + offset];
+					int consumed = Math.Min(total, bb.remaining());
+					if (bb.hasArray())
+					{
+						bb.position(bb.position() + consumed);
+					}
+					else
+					{
+						bb.put(temp, tempPos, consumed);
+						tempPos += consumed;
+					}
+					total -= consumed;
+				}
+				return count;
+			}
+			finally
+			{
+				if (temp != null)
+				{
+					global::sun.nio.ch.IOUtil.releaseTemporaryArray(temp, count);
 				}
-				total -= consumed;
 			}
-			return count;
 #endif
 		}
 
@@ -448,58 +490,368 @@ namespace IKVM.NativeCode.sun.nio.ch
 #if FIRST_PASS
 			return 0;
 #else
-			ByteBuffer[] altBufs = null;
-			List<ArraySegment<byte>> list = new List<ArraySegment<byte>>(length);
+			long result;
+			if (TryVectored(fd, bufs, offset, length, true, out result))
+			{
+				return result;
+			}
+			// buffers without an array share a single temporary array
+			byte[] temp = null;
+			int tempSize = 0;
 			for (int i = 0; i < length; i++)
 			{
 				ByteBuffer bb = bufs[i + offset];
 				if (!bb.hasArray())
 				{
-					if (altBufs == null)
+					tempSize += bb.remaining();
+				}
+			}
+			if (tempSize != 0)
+			{
+				temp = global::sun.nio.ch.IOUtil.getTemporaryArray(tempSize);
+			}
+			int count = 0;
+			try
+			{
+				List<ArraySegment<byte>> list = new List<ArraySegment<byte>>(length);
+				int tempPos = 0;
+				for (int i = 0; i < length; i++)
+				{
+					ByteBuffer bb = bufs[i + offset];
+					if (bb.hasArray())
+					{
+						list.Add(new ArraySegment<byte>(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining()));
+					}
+					else
+					{
+						int pos = bb.position();
+						int remaining = bb.remaining();
+						bb.get(temp, tempPos, remaining);
+						bb.position(pos);
+						list.Add(new ArraySegment<byte>(temp, tempPos, remaining));
+						tempPos += remaining;
+					}
+				}
+				try
+				{
+					count = fd.getSocket().Send(list);
+				}
+				catch (System.Net.Sockets.SocketException x)
+				{
+					if (x.ErrorCode == global::java.net.SocketUtil.WSAEWOULDBLOCK)
 					{
-						altBufs = new ByteBuffer[bufs.Length];
+						return UNAVAILABLE;
 					}
-					ByteBuffer abb = ByteBuffer.allocate(bb.remaining());
-					int pos = bb.position();
-					abb.put(bb);
-					bb.position(pos);
-					abb.flip();
-					bb = altBufs[i + offset] = abb;
+					throw global::java.net.SocketUtil.convertSocketExceptionToIOException(x);
+				}
+				catch (ObjectDisposedException)
+				{
+					throw new global::java.net.SocketException("Socket is closed");
+				}
+				int total = count;
+				for (int i = 0; total > 0 && i < length; i++)
+				{
+					ByteBuffer bb = bufs[i + offset];
+					int consumed = Math.Min(total, bb.remaining());
+					bb.position(bb.position() + consumed);
+					total -= consumed;
 				}
-				list.Add(new ArraySegment<byte>(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining()));
+				return count;
 			}
-			int count;
-			try
+			finally
 			{
-				count = fd.getSocket().Send(list);
+				if (temp != null)
+				{
+					global::sun.nio.ch.IOUtil.releaseTemporaryArray(temp, count);
+				}
 			}
-			catch (System.Net.Sockets.SocketException x)
+#endif
+		}
+
+#if !FIRST_PASS
+		// Transfers directly between the socket and the buffers (pinned arrays and
+		// direct buffers alike) with a single WSARecv/WSASend or readv/writev call.
+		// Returns false if one of the buffers can't be used in place or if the
+		// managed path has to report the error.
+		[SecuritySafeCritical]
+		private static bool TryVectored(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length, bool write, out long result)
+		{
+			result = 0;
+			System.Net.Sockets.Socket socket = fd.getSocket();
+			IOVector vec = IOVector.Create(bufs, offset, length);
+			if (vec == null || socket == null)
+			{
+				return false;
+			}
+			try
 			{
-				if (x.ErrorCode == global::java.net.SocketUtil.WSAEWOULDBLOCK)
+				if (IKVM.Internal.JVM.IsUnix)
 				{
-					count = 0;
+					int handle = socket.Handle.ToInt32();
+					result = write
+						? IOVector.ikvm_writev(handle, vec.addresses, vec.lengths, vec.count, -1)
+						: IOVector.ikvm_readv(handle, vec.addresses, vec.lengths, vec.count, -1);
+					// when the runtime emulates blocking on a non-blocking descriptor we can't block here
+					if (result == -1 || (result == UNAVAILABLE && socket.Blocking))
+					{
+						return false;
+					}
 				}
 				else
 				{
-					throw global::java.net.SocketUtil.convertSocketExceptionToIOException(x);
+					WSABUF[] buffers = new WSABUF[vec.count];
+					for (int i = 0; i < buffers.Length; i++)
+					{
+						buffers[i].len = vec.lengths[i];
+						buffers[i].buf = vec.addresses[i];
+					}
+					int count;
+					int rc;
+					if (write)
+					{
+						rc = WSASend(socket.Handle, buffers, buffers.Length, out count, 0, IntPtr.Zero, IntPtr.Zero);
+					}
+					else
+					{
+						int flags = 0;
+						rc = WSARecv(socket.Handle, buffers, buffers.Length, out count, ref flags, IntPtr.Zero, IntPtr.Zero);
+					}
+					if (rc != 0)
+					{
+						int error = Marshal.GetLastWin32Error();
+						if (error == global::java.net.SocketUtil.WSAEWOULDBLOCK)
+						{
+							result = UNAVAILABLE;
+							return true;
+						}
+						if (error == global::java.net.SocketUtil.WSAESHUTDOWN && !write)
+						{
+							result = EOF;
+							return true;
+						}
+						throw global::java.net.SocketUtil.convertSocketExceptionToIOException(new System.Net.Sockets.SocketException(error));
+					}
+					result = count;
 				}
 			}
 			catch (ObjectDisposedException)
 			{
 				throw new global::java.net.SocketException("Socket is closed");
 			}
-			int total = count;
-			for (int i = 0; total > 0 && i < length; i++)
+			finally
 			{
-				ByteBuffer bb = bufs[i + offset];
-				int consumed = Math.Min(total, bb.remaining());
-				bb.position(bb.position() + consumed);
-				total -= consumed;
+				vec.Dispose();
+				GC.KeepAlive(socket);
 			}
-			return count;
+			if (result > 0)
+			{
+				IOVector.Advance(bufs, offset, result);
+			}
+			else if (result == 0 && !write && vec.total > 0)
+			{
+				result = EOF;
+			}
+			return true;
+		}
+
+		[StructLayout(LayoutKind.Sequential)]
+		private struct WSABUF
+		{
+			internal int len;
+			internal IntPtr buf;
+		}
+
+		[DllImport("ws2_32", SetLastError = true)]
+		private static extern int WSASend(IntPtr s, WSABUF[] lpBuffers, int dwBufferCount, out int lpNumberOfBytesSent, int dwFlags, IntPtr lpOverlapped, IntPtr lpCompletionRoutine);
+
+		[DllImport("ws2_32", SetLastError = true)]
+		private static extern int WSARecv(IntPtr s, WSABUF[] lpBuffers, int dwBufferCount, out int lpNumberOfBytesRecvd, ref int lpFlags, IntPtr lpOverlapped, IntPtr lpCompletionRoutine);
+#endif
+	}
+
+	static class FileDispatcherImpl
+	{
+		// sun.nio.ch.IOStatus
+		private const int EOF = -1;
+		private const int UNSUPPORTED_CASE = -6;
+
+		// reads at the current file position with a single preadv call (Unix only)
+		public static long readv0(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length)
+		{
+#if FIRST_PASS
+			return 0;
+#else
+			return Transfer(fd, bufs, offset, length, false);
+#endif
+		}
+
+		// writes at the current file position with a single pwritev call (Unix only)
+		public static long writev0(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length)
+		{
+#if FIRST_PASS
+			return 0;
+#else
+			return Transfer(fd, bufs, offset, length, true);
+#endif
+		}
+
+#if !FIRST_PASS
+		[SecuritySafeCritical]
+		private static long Transfer(FileDescriptor fd, ByteBuffer[] bufs, int offset, int length, bool write)
+		{
+			System.IO.FileStream fs = fd.getStream() as System.IO.FileStream;
+			if (fs == null)
+			{
+				return UNSUPPORTED_CASE;
+			}
+			IOVector vec = IOVector.Create(bufs, offset, length);
+			if (vec == null)
+			{
+				return UNSUPPORTED_CASE;
+			}
+			long result;
+			try
+			{
+				// the FileStream position may be ahead of the file pointer, so we use it explicitly
+				fs.Flush();
+				long position = fs.Position;
+				result = write
+					? IOVector.ikvm_pwritev(fs.SafeFileHandle, vec.addresses, vec.lengths, vec.count, position)
+					: IOVector.ikvm_preadv(fs.SafeFileHandle, vec.addresses, vec.lengths, vec.count, position);
+				if (result < 0)
+				{
+					throw new global::java.io.IOException(write ? "Write failed" : "Read failed");
+				}
+				if (result > 0)
+				{
+					fs.Seek(position + result, System.IO.SeekOrigin.Begin);
+				}
+			}
+			catch (ObjectDisposedException)
+			{
+				throw new global::java.nio.channels.ClosedChannelException();
+			}
+			finally
+			{
+				vec.Dispose();
+			}
+			if (result > 0)
+			{
+				IOVector.Advance(bufs, offset, result);
+			}
+			else if (!write && vec.total > 0)
+			{
+				result = EOF;
+			}
+			return result;
+		}
 #endif
+	}
+
+#if !FIRST_PASS
+	// The remaining bytes of a range of ByteBuffers as native memory segments,
+	// for a single vectored system call.  Heap buffers are pinned and direct
+	// buffers are used in place, so nothing is copied.
+	sealed class IOVector : IDisposable
+	{
+		// like sun.nio.ch.IOUtil.IOV_MAX
+		private const int IOV_MAX = 1024;
+		internal readonly IntPtr[] addresses;
+		internal readonly int[] lengths;
+		internal readonly int count;
+		internal long total;
+		private readonly GCHandle[] handles;
+		private int pinned;
+
+		private IOVector(int count)
+		{
+			this.count = count;
+			addresses = new IntPtr[count];
+			lengths = new int[count];
+			handles = new GCHandle[count];
 		}
+
+		// returns null if a buffer has neither an accessible array nor a native address
+		[SecurityCritical]
+		internal static IOVector Create(ByteBuffer[] bufs, int offset, int length)
+		{
+			length = Math.Min(length, IOV_MAX);
+			for (int i = 0; i < length; i++)
+			{
+				ByteBuffer bb = bufs[offset + i];
+				if (!bb.hasArray() && !(bb is global::sun.nio.ch.DirectBuffer && ((global::sun.nio.ch.DirectBuffer)bb).address() != 0))
+				{
+					return null;
+				}
+			}
+			IOVector vec = new IOVector(length);
+			try
+			{
+				for (int i = 0; i < length; i++)
+				{
+					ByteBuffer bb = bufs[offset + i];
+					int remaining = bb.remaining();
+					if (remaining == 0)
+					{
+						continue;
+					}
+					if (bb.hasArray())
+					{
+						byte[] array = bb.array();
+						vec.handles[vec.pinned++] = GCHandle.Alloc(array, GCHandleType.Pinned);
+						vec.addresses[i] = Marshal.UnsafeAddrOfPinnedArrayElement(array, bb.arrayOffset() + bb.position());
+					}
+					else
+					{
+						vec.addresses[i] = (IntPtr)(((global::sun.nio.ch.DirectBuffer)bb).address() + bb.position());
+					}
+					vec.lengths[i] = remaining;
+					vec.total += remaining;
+				}
+			}
+			catch
+			{
+				vec.Dispose();
+				throw;
+			}
+			return vec;
+		}
+
+		// moves the buffer positions past the bytes transferred
+		internal static void Advance(ByteBuffer[] bufs, int offset, long count)
+		{
+			for (int i = offset; count > 0; i++)
+			{
+				ByteBuffer bb = bufs[i];
+				int n = (int)Math.Min(count, bb.remaining());
+				bb.position(bb.position() + n);
+				count -= n;
+			}
+		}
+
+		[SecuritySafeCritical]
+		public void Dispose()
+		{
+			for (int i = 0; i < pinned; i++)
+			{
+				handles[i].Free();
+			}
+			pinned = 0;
+		}
+
+		[DllImport("ikvm-native")]
+		internal static extern long ikvm_readv(int fd, IntPtr[] addresses, int[] lengths, int count, long position);
+
+		[DllImport("ikvm-native")]
+		internal static extern long ikvm_writev(int fd, IntPtr[] addresses, int[] lengths, int count, long position);
+
+		[DllImport("ikvm-native", EntryPoint = "ikvm_readv")]
+		internal static extern long ikvm_preadv(Microsoft.Win32.SafeHandles.SafeFileHandle handle, IntPtr[] addresses, int[] lengths, int count, long position);
+
+		[DllImport("ikvm-native", EntryPoint = "ikvm_writev")]
+		internal static extern long ikvm_pwritev(Microsoft.Win32.SafeHandles.SafeFileHandle handle, IntPtr[] addresses, int[] lengths, int count, long position);
 	}
+#endif
 
 	static class Net
 	{
@@ -44,10 +44,18 @@ import org.junit.runners.Suite;
     java_.awt.font.AllTests.class,
     java_.awt.image.AllTests.class,
     java_.awt.print.AllTests.class,
+    java_.lang.MathTest.class,
+    java_.lang.ProcessTest.class,
+    java_.lang.StringCodingTest.class,
+    java_.lang.StringTest.class,
+    java_.lang.WeakIdentityMapTest.class,
     java_.lang.management.ThreadInfoTest.class,
     java_.net.AllTests.class,
+    java_.nio.channels.AllTests.class,
+    java_.nio.file.AllTests.class,
     java_.text.AllTests.class,
     java_.util.prefs.AllTests.class,
+    java_.util.zip.AllTests.class,
     javax.imageio.ImageIOTest.class,
     javax.print.AllTests.class,
     javax.swing.AllTests.class,
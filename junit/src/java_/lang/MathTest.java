@@ -0,0 +1,273 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.lang;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class MathTest{
+
+    private static final int CALLS = 4000000;
+
+    private static volatile Object sink;
+
+
+    @Test
+    public void randomIsUniform() throws Exception{
+        final int buckets = 10;
+        final int[][] counts = new int[4][buckets];
+        final Throwable[] failures = new Throwable[counts.length];
+        Thread[] threads = new Thread[counts.length];
+        for(int t = 0; t < threads.length; t++){
+            final int[] count = counts[t];
+            final int index = t;
+            threads[t] = new Thread(){
+                public void run(){
+                    try{
+                        for(int i = 0; i < 100000; i++){
+                            double d = Math.random();
+                            assertTrue("Math.random() = " + d, d >= 0.0 && d < 1.0);
+                            count[(int)(d * buckets)]++;
+                        }
+                    }catch(Throwable ex){
+                        failures[index] = ex;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        for(int t = 0; t < failures.length; t++){
+            if(failures[t] != null){
+                throw new AssertionError("thread " + t, failures[t]);
+            }
+        }
+        for(int[] count : counts){
+            for(int c : count){
+                // the expected count is 10000, with a standard deviation of about 95
+                assertTrue("bucket count " + c, Math.abs(c - 10000) < 1000);
+            }
+        }
+    }
+
+
+    /**
+     * Prints the benchmarks, which aren't part of the tests.
+     */
+    public static void main(String[] args) throws Exception{
+        randomScaling();
+        transcendentalThroughput();
+    }
+
+
+    /**
+     * Math.random on 1, 2, 4 and 8 threads, the same number of calls per thread.
+     */
+    private static void randomScaling() throws Exception{
+        StringBuilder result = new StringBuilder("Math.random (M calls/s):");
+        for(int threads = 1; threads <= 8; threads *= 2){
+            // warm up
+            run(threads);
+            long time = run(threads);
+            result.append(' ').append(threads).append(threads == 1 ? " thread=" : " threads=").append((long)threads * CALLS / time);
+        }
+        result.append(" (").append(Runtime.getRuntime().availableProcessors()).append(" processors)");
+        System.out.println(result);
+    }
+
+
+    private static long run(int threads) throws Exception{
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[threads];
+        for(int t = 0; t < threads; t++){
+            futures[t] = executor.submit(new Callable<Double>(){
+                public Double call() throws Exception{
+                    start.await();
+                    double sum = 0;
+                    for(int i = 0; i < CALLS; i++){
+                        sum += Math.random();
+                    }
+                    return sum;
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures){
+            assertTrue((Double)future.get() > 0);
+        }
+        long time = (System.nanoTime() - begin) / 1000;
+        executor.shutdown();
+        return time;
+    }
+
+
+    private interface Function{
+        double math(double x);
+        double strict(double x);
+    }
+
+    private static final String[] NAMES = {"sin", "cos", "tan", "asin", "acos", "atan", "exp"};
+
+    private static Function function(final int f){
+        return new Function(){
+            public double math(double x){
+                switch(f){
+                    case 0: return Math.sin(x);
+                    case 1: return Math.cos(x);
+                    case 2: return Math.tan(x);
+                    case 3: return Math.asin(x);
+                    case 4: return Math.acos(x);
+                    case 5: return Math.atan(x);
+                    default: return Math.exp(x);
+                }
+            }
+            public double strict(double x){
+                switch(f){
+                    case 0: return StrictMath.sin(x);
+                    case 1: return StrictMath.cos(x);
+                    case 2: return StrictMath.tan(x);
+                    case 3: return StrictMath.asin(x);
+                    case 4: return StrictMath.acos(x);
+                    case 5: return StrictMath.atan(x);
+                    default: return StrictMath.exp(x);
+                }
+            }
+        };
+    }
+
+    /**
+     * An argument of function f: a mix of small, moderate, large and (for exp) subnormal result values.
+     */
+    private static double argument(int f, SplittableRandom random){
+        double x;
+        switch(random.nextInt(4)){
+            case 0:
+                x = random.nextDouble() * 4;
+                break;
+            case 1:
+                x = random.nextDouble() * 1000;
+                break;
+            case 2:
+                x = Math.scalb(random.nextDouble(), random.nextInt(-60, 40));
+                break;
+            default:
+                x = random.nextDouble() * 750;
+                break;
+        }
+        if(f == 3 || f == 4){
+            x = x - Math.floor(x);
+        }
+        return random.nextBoolean() ? x : -x;
+    }
+
+
+    /**
+     * Math may differ from the fdlibm results of StrictMath, but both are within 1 ulp of the exact result.
+     */
+    @Test
+    public void transcendentalAccuracy() throws Exception{
+        SplittableRandom random = new SplittableRandom(42);
+        for(int f = 0; f < NAMES.length; f++){
+            Function fn = function(f);
+            for(int i = 0; i < 1000000; i++){
+                double x = argument(f, random);
+                double m = fn.math(x);
+                double s = fn.strict(x);
+                if(Double.isNaN(s)){
+                    assertTrue(NAMES[f] + "(" + x + ")", Double.isNaN(m));
+                }else if(m != s){
+                    double ulps = Math.abs(m - s) / Math.ulp(s);
+                    assertTrue(NAMES[f] + "(" + x + ") = " + m + ", strict " + s, ulps <= 1);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void transcendentalSpecialValues(){
+        double[] values = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, 709.78, -745.1, 1e-300};
+        for(int f = 0; f < NAMES.length; f++){
+            Function fn = function(f);
+            for(double x : values){
+                double m = fn.math(x);
+                double s = fn.strict(x);
+                if(Double.isNaN(s)){
+                    assertTrue(NAMES[f] + "(" + x + ")", Double.isNaN(m));
+                }else if(m != s){
+                    // only a finite, non zero value may differ, and then by at most 1 ulp
+                    assertTrue(NAMES[f] + "(" + x + ")", s != 0 && !Double.isInfinite(s) && Math.abs(m - s) <= Math.ulp(s));
+                }else{
+                    assertEquals(NAMES[f] + "(" + x + ")", Double.doubleToLongBits(s), Double.doubleToLongBits(m));
+                }
+            }
+        }
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(Math.sin(-0.0)));
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(Math.tan(-0.0)));
+        assertEquals(1.0, Math.exp(-0.0), 0);
+        assertEquals(0.0, Math.exp(Double.NEGATIVE_INFINITY), 0);
+    }
+
+
+    /**
+     * Math and StrictMath for each function on the same arguments.
+     */
+    private static void transcendentalThroughput(){
+        double[] x = new double[4096];
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder result = new StringBuilder("transcendental functions (M calls/s, Math/StrictMath):");
+        for(int f = 0; f < NAMES.length; f++){
+            for(int i = 0; i < x.length; i++){
+                x[i] = f == 3 || f == 4 ? random.nextDouble() * 2 - 1 : random.nextDouble() * 20 - 10;
+            }
+            Function fn = function(f);
+            result.append(' ').append(NAMES[f]).append('=');
+            for(int strict = 0; strict < 2; strict++){
+                long time = 0;
+                for(int run = 0; run < 3; run++){
+                    double sum = 0;
+                    long begin = System.nanoTime();
+                    for(int n = 0; n < 250; n++){
+                        for(int i = 0; i < x.length; i++){
+                            sum += strict == 0 ? fn.math(x[i]) : fn.strict(x[i]);
+                        }
+                    }
+                    // only the last run counts, the others warm up
+                    time = System.nanoTime() - begin;
+                    sink = sum;
+                }
+                result.append(strict == 0 ? "" : "/").append(250L * x.length * 1000 / time);
+            }
+        }
+        System.out.println(result);
+    }
+}
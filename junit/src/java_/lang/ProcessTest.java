@@ -0,0 +1,189 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.lang;
+
+import java.io.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ProcessTest{
+
+    private static final int CHUNK = 64 * 1024;
+
+
+    /**
+     * Fills a chunk with a pattern that depends on its number: the tag of the stream it is written to, the number
+     * and a running counter. A chunk that is cut short, out of order, from the other stream or mixed with another
+     * chunk doesn't match.
+     */
+    private static void fill(byte[] chunk, long number){
+        chunk[0] = (byte)(number % 2 == 0 ? 'O' : 'E');
+        for(int i = 1; i < 8; i++){
+            chunk[i] = (byte)(number >>> (8 * (7 - i)));
+        }
+        for(int i = 8; i < chunk.length; i++){
+            chunk[i] = (byte)(number + i);
+        }
+    }
+
+
+    /**
+     * The child process: writes the given number of MB in chunks alternately to stdout (the even chunks) and stderr
+     * (the odd chunks). Without arguments, pipes 1 GB through the merged stdout and stderr of a child process and
+     * prints the throughput.
+     */
+    public static void main(String[] args) throws Exception{
+        if(args.length == 0){
+            long start = System.nanoTime();
+            Process process = start(1024, true);
+            long[] total = demultiplex(process.getInputStream());
+            int exitCode = process.waitFor();
+            long time = (System.nanoTime() - start) / 1000000;
+            long bytes = total[0] + total[1];
+            System.out.println("Process pipe: " + bytes / 1024 / 1024 + " MB in " + time + " ms, " + bytes / 1024 / Math.max(time, 1) + " MB/s, exit code " + exitCode);
+            return;
+        }
+        long size = Long.parseLong(args[0]) * 1024 * 1024;
+        byte[] chunk = new byte[CHUNK];
+        OutputStream out = new FileOutputStream(FileDescriptor.out);
+        OutputStream err = new FileOutputStream(FileDescriptor.err);
+        for(long number = 0; number * CHUNK < size; number++){
+            fill(chunk, number);
+            (number % 2 == 0 ? out : err).write(chunk);
+        }
+        out.close();
+        err.close();
+    }
+
+
+    private static Process start(int megabytes, boolean redirectErrorStream) throws IOException{
+        File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        Assume.assumeTrue(java.exists() || new File(java.getPath() + ".exe").exists());
+        ProcessBuilder builder = new ProcessBuilder(java.getPath(), "-cp", System.getProperty("java.class.path"), ProcessTest.class.getName(), Integer.toString(megabytes));
+        builder.redirectErrorStream(redirectErrorStream);
+        return builder.start();
+    }
+
+
+    /**
+     * Reads a stream to the end and checks that it consists of whole chunks, starting with the chunk number first and
+     * each following number step higher.
+     */
+    private static long drain(InputStream in, long first, int step) throws IOException{
+        byte[] buffer = new byte[CHUNK];
+        byte[] expected = new byte[CHUNK];
+        long number = first;
+        fill(expected, number);
+        int offset = 0;
+        long total = 0;
+        int count;
+        while((count = in.read(buffer)) > 0){
+            for(int i = 0; i < count; i++){
+                if(buffer[i] != expected[offset]){
+                    fail("unexpected byte at " + (total + i) + ", offset " + offset + " of chunk " + number);
+                }
+                if(++offset == CHUNK){
+                    number += step;
+                    fill(expected, number);
+                    offset = 0;
+                }
+            }
+            total += count;
+        }
+        assertEquals("the last chunk is cut short", 0, offset);
+        return total;
+    }
+
+
+    /**
+     * Reads the merged output to the end and splits it by the tag of each chunk. The order between the two streams
+     * isn't defined, so each one is checked on its own: the even numbers for stdout and the odd ones for stderr, each
+     * in order and whole. Returns the bytes read for stdout and for stderr.
+     */
+    private static long[] demultiplex(InputStream in) throws IOException{
+        byte[] buffer = new byte[CHUNK];
+        byte[] expected = new byte[CHUNK];
+        long[] next = {0, 1};
+        long[] total = new long[2];
+        for(;;){
+            int offset = 0;
+            int count;
+            while(offset < CHUNK && (count = in.read(buffer, offset, CHUNK - offset)) > 0){
+                offset += count;
+            }
+            if(offset == 0){
+                return total;
+            }
+            assertEquals("the last chunk is cut short", CHUNK, offset);
+            int stream = buffer[0] == 'O' ? 0 : 1;
+            fill(expected, next[stream]);
+            for(int i = 0; i < CHUNK; i++){
+                if(buffer[i] != expected[i]){
+                    fail("unexpected byte at offset " + i + " of chunk " + next[stream] + " after " + (total[0] + total[1]) + " bytes");
+                }
+            }
+            next[stream] += 2;
+            total[stream] += CHUNK;
+        }
+    }
+
+
+    @Test
+    public void mergedOutput() throws Exception{
+        Process process = start(16, true);
+        long[] total = demultiplex(process.getInputStream());
+        assertEquals(0, process.waitFor());
+        assertEquals(-1, process.getErrorStream().read());
+        assertEquals(8L * 1024 * 1024, total[0]);
+        assertEquals(8L * 1024 * 1024, total[1]);
+    }
+
+
+    @Test
+    public void separateOutput() throws Exception{
+        final Process process = start(16, false);
+        final long[] err = new long[1];
+        final Throwable[] failure = new Throwable[1];
+        Thread reader = new Thread(){
+            @Override
+            public void run(){
+                try{
+                    err[0] = drain(process.getErrorStream(), 1, 2);
+                }catch(Throwable ex){
+                    failure[0] = ex;
+                }
+            }
+        };
+        reader.start();
+        long out = drain(process.getInputStream(), 0, 2);
+        reader.join();
+        if(failure[0] != null){
+            throw new AssertionError("stderr", failure[0]);
+        }
+        assertEquals(0, process.waitFor());
+        assertEquals(8L * 1024 * 1024, out);
+        assertEquals(8L * 1024 * 1024, err[0]);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * String encoding and decoding with US-ASCII, ISO-8859-1 and UTF-8. The main method runs a microbenchmark.
+ */
+public class StringCodingTest{
+
+    private static final int ITERATIONS = 200000;
+
+    private static final Charset[] CHARSETS = {StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8};
+
+    private static volatile Object sink;
+
+
+    @Test
+    public void decode() throws Exception{
+        byte[] bytes = {'a', (byte)0xE4, 'b', (byte)0xC3, (byte)0xA4, (byte)0xF0, (byte)0x9F, (byte)0x98, (byte)0x80, (byte)0xED, (byte)0xA0, (byte)0x80};
+        assertEquals("a\uFFFDb\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD\uFFFD", new String(bytes, "US-ASCII"));
+        assertEquals("a\u00E4b\u00C3\u00A4\u00F0\u009F\u0098\u0080\u00ED\u00A0\u0080", new String(bytes, "latin1"));
+        assertEquals("\u00E4\uD83D\uDE00", new String(bytes, 3, 6, "UTF8"));
+        // a lone Latin-1 byte and an encoded surrogate are each replaced once
+        assertEquals("a\uFFFDb\u00E4\uD83D\uDE00\uFFFD", new String(bytes, StandardCharsets.UTF_8));
+        assertEquals("cdefghijklmnopq", new String("abcdefghijklmnopqrs".getBytes("ASCII"), 2, 15, StandardCharsets.UTF_8));
+        assertEquals("", new String(new byte[0], StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    public void encode() throws Exception{
+        String str = "a\u00E4\u20AC\uD83D\uDE00\uD800b";
+        assertArrayEquals(new byte[]{'a', '?', '?', '?', '?', 'b'}, str.getBytes("US-ASCII"));
+        assertArrayEquals(new byte[]{'a', (byte)0xE4, '?', '?', '?', 'b'}, str.getBytes(StandardCharsets.ISO_8859_1));
+        assertArrayEquals(new byte[]{'a', (byte)0xC3, (byte)0xA4, (byte)0xE2, (byte)0x82, (byte)0xAC, (byte)0xF0, (byte)0x9F, (byte)0x98, (byte)0x80, '?', 'b'}, str.getBytes("utf-8"));
+        assertEquals(0, "".getBytes(StandardCharsets.UTF_8).length);
+    }
+
+
+    @Test
+    public void roundTrip(){
+        Random random = new Random(0);
+        for(int i = 0; i < 10000; i++){
+            StringBuilder sb = new StringBuilder();
+            for(int j = random.nextInt(40); j > 0; j--){
+                sb.appendCodePoint(random.nextInt(4) == 0 ? random.nextInt(0x110000) : random.nextInt(0x80));
+            }
+            String str = sb.toString();
+            for(Charset cs : CHARSETS){
+                // the fast paths must agree with the coders of the charset
+                ByteBuffer encoded = cs.encode(str);
+                byte[] bytes = new byte[encoded.remaining()];
+                encoded.get(bytes);
+                assertArrayEquals(bytes, str.getBytes(cs));
+                assertEquals(cs.decode(ByteBuffer.wrap(bytes)).toString(), new String(bytes, cs));
+            }
+        }
+    }
+
+
+    /**
+     * Prints the time of decoding and encoding short and long texts with each charset.
+     */
+    public static void main(String[] args) throws Exception{
+        Map<String, String> texts = new LinkedHashMap<String, String>();
+        texts.put("ascii16", "Content-Length: ");
+        texts.put("ascii256", repeat("GET /index.html HTTP/1.1 Host: ", 256));
+        texts.put("latin256", repeat("Gr\u00FC\u00DFe aus K\u00F6ln, ", 256));
+        texts.put("utf256", repeat("\u65E5\u672C\u8A9E text \u00E9t\u00E9 ", 256));
+        StringBuilder result = new StringBuilder("String coding (ns/op):");
+        for(Charset cs : CHARSETS){
+            for(Map.Entry<String, String> text : texts.entrySet()){
+                final String str = text.getValue();
+                final byte[] bytes = str.getBytes(cs);
+                final Charset charset = cs;
+                final String name = cs.name();
+                result.append("\n  ").append(cs).append(' ').append(text.getKey());
+                result.append(" decode=").append(time(() -> sink = new String(bytes, charset)));
+                result.append(" decodeByName=").append(time(() -> {
+                    try{
+                        sink = new String(bytes, name);
+                    }catch(java.io.UnsupportedEncodingException ex){
+                        throw new AssertionError(ex);
+                    }
+                }));
+                result.append(" encode=").append(time(() -> sink = str.getBytes(charset)));
+            }
+        }
+        System.out.println(result);
+    }
+
+
+    private static String repeat(String str, int length){
+        StringBuilder sb = new StringBuilder(length);
+        while(sb.length() < length){
+            sb.append(str);
+        }
+        return sb.substring(0, length);
+    }
+
+
+    private static long time(Runnable r){
+        // warm up
+        for(int i = 0; i < ITERATIONS; i++){
+            r.run();
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < ITERATIONS; i++){
+            r.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
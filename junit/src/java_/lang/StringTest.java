@@ -0,0 +1,146 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.lang;
+
+import java.util.*;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class StringTest{
+
+    private static final int KEYS = 1000;
+
+    private static final int LOOKUPS = 2000000;
+
+    private static volatile Object sink;
+
+
+    private static String key(int length, int i){
+        StringBuilder sb = new StringBuilder(length);
+        sb.append("header-").append(i).append('-');
+        while(sb.length() < length){
+            sb.append((char)('a' + sb.length() % 26));
+        }
+        return sb.toString();
+    }
+
+
+    @Test
+    public void hashCodeOfLongStrings(){
+        for(int length : new int[]{0, 1, 31, 32, 33, 1000}){
+            String str = key(length, length);
+            int h = 0;
+            for(int i = 0; i < str.length(); i++){
+                h = 31 * h + str.charAt(i);
+            }
+            assertEquals(h, str.hashCode());
+            assertEquals(h, new String(str.toCharArray()).hashCode());
+        }
+    }
+
+
+    /**
+     * ikvm.lang.HashedString, which only exists in IKVM, behaves like its String as a key. On other VMs the test is
+     * skipped.
+     */
+    @Test
+    public void hashedString() throws Exception{
+        Class<?> type = Internals.type("ikvm.lang.HashedString");
+        HashMap<Object, Integer> map = new HashMap<Object, Integer>();
+        for(int length : new int[]{0, 1, 31, 32, 1000}){
+            String str = key(length, length);
+            Object hashed = Internals.newInstance(type, str);
+            Object copy = Internals.newInstance(type, new String(str.toCharArray()));
+            assertEquals(str.hashCode(), hashed.hashCode());
+            assertEquals(hashed, copy);
+            assertFalse(hashed.equals(str));
+            assertEquals(str, hashed.toString());
+            assertEquals(str.length(), ((CharSequence)hashed).length());
+            assertEquals(0, Internals.invoke(hashed, "compareTo", copy));
+            map.put(hashed, length);
+            assertEquals(Integer.valueOf(length), map.get(copy));
+        }
+        Object a = Internals.newInstance(type, "a");
+        Object b = Internals.newInstance(type, "b");
+        assertFalse(a.equals(b));
+        assertTrue((Integer)Internals.invoke(a, "compareTo", b) < 0);
+    }
+
+
+    /**
+     * Benchmarks HashMap.get with String keys of different lengths, looked up with the same instances as the keys and
+     * with equal copies. On IKVM also with ikvm.lang.HashedString keys, which carry their hash code.
+     */
+    public static void main(String[] args) throws Exception{
+        Class<?> hashedString;
+        try{
+            hashedString = Class.forName("ikvm.lang.HashedString");
+        }catch(ClassNotFoundException ex){
+            hashedString = null;
+        }
+        StringBuilder result = new StringBuilder("HashMap.get (ns/op):");
+        for(int length : new int[]{16, 64, 256, 1024}){
+            HashMap<Object, Integer> map = new HashMap<Object, Integer>();
+            Object[] keys = new Object[KEYS];
+            Object[] copies = new Object[KEYS];
+            for(int i = 0; i < KEYS; i++){
+                keys[i] = key(length, i);
+                copies[i] = new String(key(length, i).toCharArray());
+                map.put(keys[i], i);
+            }
+            result.append(' ').append(length).append(" chars=").append(lookup(map, keys));
+            result.append(" (copies ").append(lookup(map, copies));
+            if(hashedString != null){
+                map.clear();
+                for(int i = 0; i < KEYS; i++){
+                    keys[i] = hashedString.getConstructor(String.class).newInstance(keys[i]);
+                    copies[i] = hashedString.getConstructor(String.class).newInstance(copies[i]);
+                    map.put(keys[i], i);
+                }
+                result.append(", HashedString ").append(lookup(map, copies));
+            }
+            result.append(')');
+        }
+        System.out.println(result);
+    }
+
+
+    private static long lookup(HashMap<Object, Integer> map, Object[] keys){
+        // warm up
+        for(int i = 0; i < LOOKUPS; i++){
+            sink = map.get(keys[i % KEYS]);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS; i++){
+            sink = map.get(keys[i % KEYS]);
+        }
+        if(sink == null){
+            throw new IllegalStateException();
+        }
+        return (System.nanoTime() - start) / LOOKUPS;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.lang;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests ikvm.internal.WeakIdentityMap, which maps the .NET exceptions to their Java exceptions. It is internal to
+ * the IKVM core library, so it is called by reflection. On other VMs the tests are skipped.
+ */
+public class WeakIdentityMapTest{
+
+    private static final int KEYS = 100000;
+
+    private static Method get, put, remove, containsKey;
+
+
+    private static Object newMap() throws Exception{
+        Class<?> type = Internals.type("ikvm.internal.WeakIdentityMap");
+        get = Internals.method(type, "get", Object.class);
+        put = Internals.method(type, "put", Object.class, Object.class);
+        remove = Internals.method(type, "remove", Object.class);
+        containsKey = Internals.method(type, "containsKey", Object.class);
+        return Internals.newInstance(type);
+    }
+
+
+    /**
+     * The methods of the map throw no checked exceptions, so the reader and writer threads can call them directly.
+     */
+    private static Object invoke(Method method, Object map, Object... args){
+        try{
+            return Internals.call(method, map, args);
+        }catch(Exception ex){
+            throw new RuntimeException(ex);
+        }
+    }
+
+
+    /**
+     * Prints the time of the puts and the number of concurrent reads.
+     */
+    public static void main(String[] args) throws Exception{
+        long start = System.nanoTime();
+        new WeakIdentityMapTest().putGetRemove();
+        System.out.println("WeakIdentityMap: " + KEYS + " puts, gets and removes in " + (System.nanoTime() - start) / 1000000 + " ms");
+        System.out.println("WeakIdentityMap: " + concurrentReads() / 2 + " concurrent reads/s with " + KEYS + " keys");
+    }
+
+
+    @Test
+    public void putGetRemove() throws Exception{
+        Object map = newMap();
+        Object[] keys = new Object[KEYS];
+        for(int i = 0; i < KEYS; i++){
+            keys[i] = new Object();
+            invoke(put, map, keys[i], i);
+        }
+        for(int i = 0; i < KEYS; i++){
+            assertEquals(i, invoke(get, map, keys[i]));
+        }
+        for(int i = 0; i < KEYS; i += 2){
+            assertEquals(i, invoke(remove, map, keys[i]));
+        }
+        for(int i = 0; i < KEYS; i++){
+            assertEquals(i % 2 == 1, invoke(containsKey, map, keys[i]));
+        }
+        assertNull(invoke(get, map, new Object()));
+        // null values are supported
+        invoke(put, map, keys[0], null);
+        assertTrue((Boolean)invoke(containsKey, map, keys[0]));
+        assertNull(invoke(get, map, keys[0]));
+    }
+
+
+    /**
+     * Readers look up the long lived keys, without locking, while a writer adds and removes short lived keys, which
+     * makes the table rebuild now and then.
+     */
+    @Test
+    public void concurrentReaders() throws Exception{
+        concurrentReads();
+    }
+
+
+    /**
+     * Runs the readers and the writer for 2 seconds and returns the number of reads.
+     */
+    private static long concurrentReads() throws Exception{
+        final Object map = newMap();
+        final Object[] keys = new Object[KEYS];
+        for(int i = 0; i < KEYS; i++){
+            keys[i] = new Object();
+            invoke(put, map, keys[i], i);
+        }
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong reads = new AtomicLong();
+        final AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int r = 0; r < 3; r++){
+            final long seed = r;
+            threads.add(new Thread(){
+                @Override
+                public void run(){
+                    Random random = new Random(seed);
+                    long count = 0;
+                    while(!stop.get()){
+                        int i = random.nextInt(KEYS);
+                        if(!Integer.valueOf(i).equals(invoke(get, map, keys[i]))){
+                            errors.incrementAndGet();
+                        }
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                }
+            });
+        }
+        threads.add(new Thread(){
+            @Override
+            public void run(){
+                for(int i = 0; !stop.get(); i++){
+                    Object key = new Object();
+                    invoke(put, map, key, i);
+                    if(!Integer.valueOf(i).equals(invoke(get, map, key))){
+                        errors.incrementAndGet();
+                    }
+                    if(i % 2 == 0){
+                        invoke(remove, map, key);
+                    }
+                }
+            }
+        });
+        for(Thread thread : threads){
+            thread.start();
+        }
+        Thread.sleep(2000);
+        stop.set(true);
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+        return reads.get();
+    }
+
+
+    /**
+     * The slots of collected keys are reused, so the table doesn't grow with the number of keys that were ever put.
+     */
+    @Test
+    public void collectedKeys() throws Exception{
+        Object map = newMap();
+        for(int round = 0; round < 20; round++){
+            for(int i = 0; i < 50000; i++){
+                invoke(put, map, new Object(), i);
+            }
+            System.gc();
+        }
+        assertTrue(((Object[])Internals.get(map, "table")).length <= 1 << 19);
+    }
+}
@@ -0,0 +1,708 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.nio.channels;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FileChannelTest{
+
+    private static final int FILE_SIZE = 16 * 1024 * 1024;
+
+    private static final int RECORD_SIZE = 4096;
+
+    private static File file;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        file = File.createTempFile("FileChannelTest", ".dat");
+        file.deleteOnExit();
+        byte[] data = new byte[FILE_SIZE];
+        for(int i = 0; i < data.length; i++){
+            data[i] = value(i);
+        }
+        try(FileOutputStream out = new FileOutputStream(file)){
+            out.write(data);
+        }
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass(){
+        file.delete();
+    }
+
+
+    /**
+     * Prints the time of the random reads and the throughput of the file transfers, next to an 8 KB copy.
+     */
+    public static void main(String[] args) throws Exception{
+        setUpBeforeClass();
+        try{
+            FileChannelTest test = new FileChannelTest();
+            long start = System.nanoTime();
+            test.concurrentRandomReads();
+            System.out.println("concurrentRandomReads: " + (System.nanoTime() - start) / 1000000 + " ms");
+            File copy = File.createTempFile("FileChannelTest", ".dat");
+            try(FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                    FileChannel dst = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+                for(int size : new int[]{1 << 20, FILE_SIZE}){
+                    dst.truncate(0);
+                    start = System.nanoTime();
+                    long total = 0;
+                    while(total < size){
+                        total += src.transferTo(total, size - total, dst);
+                    }
+                    long transfer = System.nanoTime() - start;
+                    dst.truncate(0);
+                    dst.position(0);
+                    start = System.nanoTime();
+                    copy(src, 0, size, dst);
+                    long copied = System.nanoTime() - start;
+                    System.out.println("transferTo file " + size + " bytes: " + throughput(size, transfer) + ", 8 KB copy: " + throughput(size, copied));
+                }
+                dst.truncate(0);
+                src.position(0);
+                start = System.nanoTime();
+                long total = 0;
+                while(total < FILE_SIZE){
+                    total += dst.transferFrom(src, total, FILE_SIZE - total);
+                }
+                System.out.println("transferFrom file " + total + " bytes: " + throughput(total, System.nanoTime() - start));
+            }finally{
+                copy.delete();
+            }
+        }finally{
+            tearDownAfterClass();
+        }
+    }
+
+
+    private static byte value(long position){
+        return (byte)(position * 31 + (position >> 12));
+    }
+
+
+    private static void check(ByteBuffer buffer, long position){
+        buffer.flip();
+        for(int i = 0; buffer.hasRemaining(); i++){
+            if(buffer.get() != value(position + i)){
+                fail("wrong data at position " + (position + i));
+            }
+        }
+    }
+
+
+    @Test
+    public void positionalReadKeepsPosition() throws Exception{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            channel.position(1000);
+            for(ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(100), ByteBuffer.allocateDirect(100)}){
+                assertEquals(100, channel.read(buffer, 5000));
+                check(buffer, 5000);
+                assertEquals(1000, channel.position());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            assertEquals(100, channel.read(buffer));
+            check(buffer, 1000);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(100), FILE_SIZE));
+            assertEquals(0, channel.read(ByteBuffer.allocate(0), 0));
+        }
+    }
+
+
+    @Test
+    public void positionalWriteKeepsPosition() throws Exception{
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel channel = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            channel.position(10);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+            for(int i = 0; i < 100; i++){
+                buffer.put(value(200 + i));
+            }
+            buffer.flip();
+            assertEquals(100, channel.write(buffer, 200));
+            assertEquals(10, channel.position());
+            assertEquals(300, channel.size());
+            buffer = ByteBuffer.allocate(100);
+            assertEquals(100, channel.read(buffer, 200));
+            check(buffer, 200);
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    /**
+     * Returns sun.nio.ch.IOUtil.getTemporaryArrayAllocations(), which only exists in IKVM. On other VMs the test is
+     * skipped.
+     */
+    private static long temporaryArrayAllocations() throws Exception{
+        return (Long)Internals.invoke(Internals.type("sun.nio.ch.IOUtil"), "getTemporaryArrayAllocations");
+    }
+
+
+    /**
+     * Reads and writes with direct buffers go through a cached temporary array, after the first one no more arrays
+     * are allocated.
+     */
+    @Test
+    public void directBufferReusesTemporaryArray() throws Exception{
+        temporaryArrayAllocations();
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel channel = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE);
+            for(int i = 0; i < RECORD_SIZE; i++){
+                buffer.put(value(i));
+            }
+            // warm up, the cached array is allocated with the first access
+            buffer.flip();
+            channel.write(buffer, 0);
+            long allocations = temporaryArrayAllocations();
+            for(int i = 0; i < 1000; i++){
+                buffer.clear();
+                assertEquals(RECORD_SIZE, channel.write(buffer, 0));
+                buffer.clear();
+                assertEquals(RECORD_SIZE, channel.read(buffer, 0));
+                check(buffer, 0);
+                // smaller buffers use the same array
+                buffer.clear().limit(i + 1);
+                assertEquals(i + 1, channel.read(buffer, 0));
+            }
+            assertEquals(allocations, temporaryArrayAllocations());
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    /**
+     * Arrays larger than jdk.nio.maxCachedBufferSize are not cached, each access allocates a new one.
+     */
+    @Test
+    public void largeDirectBufferIsNotCached() throws Exception{
+        temporaryArrayAllocations();
+        String property = System.getProperty("jdk.nio.maxCachedBufferSize");
+        int maxCached = property != null ? Integer.parseInt(property) : 256 * 1024;
+        Assume.assumeTrue(maxCached < FILE_SIZE);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            ByteBuffer buffer = ByteBuffer.allocateDirect(maxCached + 1);
+            assertEquals(buffer.capacity(), channel.read(buffer, 0));
+            long allocations = temporaryArrayAllocations();
+            for(int i = 0; i < 5; i++){
+                buffer.clear();
+                assertEquals(buffer.capacity(), channel.read(buffer, 0));
+                check(buffer, 0);
+            }
+            assertEquals(allocations + 5, temporaryArrayAllocations());
+        }
+    }
+
+
+    private static Object openMappedFile(FileChannel channel, FileChannel.MapMode mode, int windowSize, long maxMappedBytes) throws Exception{
+        return Internals.newInstance(Internals.type("ikvm.io.MappedFile"), channel, mode, windowSize, maxMappedBytes);
+    }
+
+
+    private static Object mappedBufferPool() throws Exception{
+        return Internals.invoke(Internals.type("sun.nio.ch.FileChannelImpl"), "getMappedBufferPool");
+    }
+
+
+    private static long counter(Object pool, String name) throws Exception{
+        return (Long)Internals.invoke(pool, name);
+    }
+
+
+    /**
+     * Reads values that start in one window and end in the next.
+     */
+    @Test
+    public void mappedFileStraddlingReads() throws Exception{
+        final int windowSize = 64 * 1024;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            Object mapped = openMappedFile(channel, FileChannel.MapMode.READ_ONLY, windowSize, 4 * windowSize);
+            try{
+                byte[] bytes = new byte[8];
+                for(long boundary = windowSize; boundary < FILE_SIZE; boundary += 37L * windowSize){
+                    for(long position = boundary - 9; position <= boundary; position++){
+                        ByteBuffer expected = ByteBuffer.allocate(8);
+                        for(int i = 0; i < 8; i++){
+                            expected.put(value(position + i));
+                        }
+                        assertEquals("getInt " + position, expected.getInt(0), Internals.invoke(mapped, "getInt", position));
+                        assertEquals("getLong " + position, expected.getLong(0), Internals.invoke(mapped, "getLong", position));
+                        Internals.invoke(mapped, "get", position, bytes, 0, 8);
+                        assertArrayEquals("get " + position, expected.array(), bytes);
+                    }
+                }
+                // the last long of the file
+                Internals.invoke(mapped, "getLong", (long)FILE_SIZE - 8);
+            }finally{
+                Internals.invoke(mapped, "close");
+            }
+        }
+    }
+
+
+    /**
+     * Only as many windows as fit in the limit stay mapped, the least recently used are unmapped.
+     */
+    @Test
+    public void mappedFileEviction() throws Exception{
+        final int windowSize = 64 * 1024;
+        final int maxWindows = 4;
+        final int windows = 16;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            Object mapped = openMappedFile(channel, FileChannel.MapMode.READ_ONLY, windowSize, (long)maxWindows * windowSize);
+            Object pool = mappedBufferPool();
+            long count = counter(pool, "getCount");
+            long capacity = counter(pool, "getTotalCapacity");
+            long windowCount = counter(pool, "getWindowCount");
+            long windowMemory = counter(pool, "getWindowMemoryUsed");
+            long hits = counter(pool, "getWindowHits");
+            long unmaps = counter(pool, "getWindowUnmaps");
+            try{
+                for(int i = 0; i < windows; i++){
+                    long position = (long)i * windowSize + i;
+                    assertEquals(value(position), Internals.invoke(mapped, "get", position));
+                    assertEquals(value(position + 1), Internals.invoke(mapped, "get", position + 1));
+                    int mappedWindows = Math.min(i + 1, maxWindows);
+                    assertEquals(windowCount + mappedWindows, counter(pool, "getWindowCount"));
+                    assertEquals(windowMemory + (long)mappedWindows * windowSize, counter(pool, "getWindowMemoryUsed"));
+                    assertEquals(count + mappedWindows, counter(pool, "getCount"));
+                    assertEquals(capacity + (long)mappedWindows * windowSize, counter(pool, "getTotalCapacity"));
+                    assertEquals(unmaps + i + 1 - mappedWindows, counter(pool, "getWindowUnmaps"));
+                }
+                // the second access of each window was a hit
+                assertEquals(hits + windows, counter(pool, "getWindowHits"));
+            }finally{
+                Internals.invoke(mapped, "close");
+            }
+            // close releases every window
+            assertEquals(windowCount, counter(pool, "getWindowCount"));
+            assertEquals(windowMemory, counter(pool, "getWindowMemoryUsed"));
+            assertEquals(count, counter(pool, "getCount"));
+            assertEquals(capacity, counter(pool, "getTotalCapacity"));
+            assertEquals(unmaps + windows, counter(pool, "getWindowUnmaps"));
+            try{
+                Internals.invoke(mapped, "get", 0L);
+                fail("ClosedChannelException expected");
+            }catch(ClosedChannelException ex){
+                // expected
+            }
+        }
+    }
+
+
+    /**
+     * Every advice can be given for a mapping, it changes nothing but the performance.
+     */
+    @Test
+    public void advise() throws Exception{
+        Class<?> type = Internals.type("sun.nio.ch.FileChannelImpl");
+        final int windowSize = 64 * 1024;
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, 1 << 20);
+            Object mapped = openMappedFile(channel, FileChannel.MapMode.READ_ONLY, windowSize, 4 * windowSize);
+            try{
+                for(String name : new String[]{"ADVICE_NORMAL", "ADVICE_RANDOM", "ADVICE_SEQUENTIAL", "ADVICE_WILLNEED"}){
+                    int advice = (Integer)Internals.get(type, name);
+                    Internals.invoke(type, "advise", buffer, advice);
+                    buffer.position(buffer.capacity());
+                    check(buffer, 0);
+                    Internals.invoke(mapped, "get", 0L);
+                    Internals.invoke(mapped, "advise", advice);
+                    // windows mapped after the advice get it too
+                    long position = (long)(advice + 1) * windowSize;
+                    assertEquals(value(position), Internals.invoke(mapped, "get", position));
+                }
+                Internals.invoke(mapped, "prefetch", 0L, (long)FILE_SIZE);
+                try{
+                    Internals.invoke(mapped, "advise", 4);
+                    fail("IllegalArgumentException expected");
+                }catch(IllegalArgumentException ex){
+                    // expected
+                }
+            }finally{
+                Internals.invoke(mapped, "close");
+                // unmap now, the mapped buffer pool counters are checked by other tests
+                Internals.invoke(Internals.invoke(buffer, "cleaner"), "clean");
+            }
+        }
+    }
+
+
+    /**
+     * Many threads reading random records, like a key value store does.
+     */
+    @Test
+    public void concurrentRandomReads() throws Exception{
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int reads = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try(final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            channel.position(12345);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(int t = 0; t < threads; t++){
+                final long seed = t;
+                tasks.add(new Callable<Void>(){
+                    @Override
+                    public Void call() throws Exception{
+                        Random random = new Random(seed);
+                        ByteBuffer buffer = seed % 2 == 0 ? ByteBuffer.allocate(RECORD_SIZE) : ByteBuffer.allocateDirect(RECORD_SIZE);
+                        for(int i = 0; i < reads; i++){
+                            long position = (long)random.nextInt(FILE_SIZE / RECORD_SIZE) * RECORD_SIZE;
+                            buffer.clear();
+                            while(buffer.hasRemaining()){
+                                if(channel.read(buffer, position + buffer.position()) < 0){
+                                    fail("unexpected end of file");
+                                }
+                            }
+                            check(buffer, position);
+                        }
+                        return null;
+                    }
+                });
+            }
+            for(Future<Void> future : executor.invokeAll(tasks)){
+                future.get();
+            }
+            assertEquals(12345, channel.position());
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+
+    /**
+     * Copies with an 8 KB buffer, like transferTo used to do.
+     */
+    private static long copy(FileChannel src, long position, long count, WritableByteChannel target) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long total = 0;
+        while(total < count){
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), count - total));
+            int n = src.read(buffer, position + total);
+            if(n <= 0){
+                break;
+            }
+            buffer.flip();
+            while(buffer.hasRemaining()){
+                total += target.write(buffer);
+            }
+        }
+        return total;
+    }
+
+
+    private static String throughput(long bytes, long nanos){
+        return (bytes * 1000 / Math.max(nanos, 1)) + " MB/s";
+    }
+
+
+    @Test
+    public void transferToFile() throws Exception{
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            for(int size : new int[]{1 << 20, FILE_SIZE}){
+                dst.truncate(0);
+                long total = 0;
+                while(total < size){
+                    total += src.transferTo(total, size - total, dst);
+                }
+                assertEquals(size, dst.size());
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            long position = FILE_SIZE - RECORD_SIZE;
+            dst.read(buffer, position);
+            check(buffer, position);
+            assertEquals(0, src.transferTo(FILE_SIZE, 100, dst));
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    @Test
+    public void transferFromFile() throws Exception{
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            src.position(1000);
+            long total = 0;
+            while(total < FILE_SIZE - 1000){
+                total += dst.transferFrom(src, total, FILE_SIZE);
+            }
+            // the source position advances, the target position doesn't
+            assertEquals(FILE_SIZE, src.position());
+            assertEquals(0, dst.position());
+            assertEquals(FILE_SIZE - 1000, dst.size());
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            dst.read(buffer, 0);
+            check(buffer, 1000);
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    /**
+     * Transfers between files move the data in chunks through the cached temporary array, however large they are.
+     */
+    @Test
+    public void transferFromReusesTemporaryArray() throws Exception{
+        temporaryArrayAllocations();
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                FileChannel dst = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            // warm up, the cached array is allocated with the first transfer
+            assertEquals(1 << 20, dst.transferFrom(src, 0, 1 << 20));
+            long allocations = temporaryArrayAllocations();
+            src.position(0);
+            long total = 0;
+            while(total < FILE_SIZE){
+                total += dst.transferFrom(src, total, FILE_SIZE - total);
+            }
+            assertEquals(allocations, temporaryArrayAllocations());
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+            dst.read(buffer, FILE_SIZE - RECORD_SIZE);
+            check(buffer, FILE_SIZE - RECORD_SIZE);
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    @Test
+    public void transferToSocket() throws Exception{
+        try(ServerSocketChannel server = ServerSocketChannel.open()){
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try(SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                    final SocketChannel accepted = server.accept();
+                    FileChannel src = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+                final long[] received = new long[1];
+                final Throwable[] failure = new Throwable[1];
+                Thread reader = new Thread(){
+                    @Override
+                    public void run(){
+                        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                        try{
+                            for(;;){
+                                buffer.clear();
+                                int n = accepted.read(buffer);
+                                if(n < 0){
+                                    break;
+                                }
+                                received[0] += n;
+                            }
+                        }catch(Throwable ex){
+                            failure[0] = ex;
+                        }
+                    }
+                };
+                reader.start();
+                long total = 0;
+                while(total < FILE_SIZE){
+                    // a blocking channel waits until it can write, it never returns 0
+                    long n = src.transferTo(total, FILE_SIZE - total, client);
+                    assertTrue("transferTo returned " + n, n > 0);
+                    total += n;
+                }
+                client.shutdownOutput();
+                reader.join();
+                if(failure[0] != null){
+                    throw new AssertionError("reader", failure[0]);
+                }
+                assertEquals(FILE_SIZE, received[0]);
+            }
+        }
+    }
+
+
+    @Test
+    public void scatteringRead() throws Exception{
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            channel.position(300);
+            ByteBuffer[] buffers = {ByteBuffer.allocate(100), ByteBuffer.allocateDirect(0), ByteBuffer.allocateDirect(200), ByteBuffer.allocate(50)};
+            assertEquals(350, channel.read(buffers));
+            assertEquals(650, channel.position());
+            check(buffers[0], 300);
+            check(buffers[2], 400);
+            check(buffers[3], 600);
+            channel.position(FILE_SIZE - 10);
+            buffers = new ByteBuffer[]{ByteBuffer.allocateDirect(8), ByteBuffer.allocate(8)};
+            assertEquals(10, channel.read(buffers));
+            assertEquals(2, buffers[1].position());
+            assertEquals(-1, channel.read(buffers));
+        }
+    }
+
+
+    @Test
+    public void gatheringWrite() throws Exception{
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try(FileChannel channel = FileChannel.open(copy.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer header = ByteBuffer.allocate(100);
+            ByteBuffer body = ByteBuffer.allocateDirect(1000);
+            ByteBuffer trailer = ByteBuffer.allocate(10);
+            for(int i = 0; i < 100; i++){
+                header.put(value(i));
+            }
+            for(int i = 0; i < 1000; i++){
+                body.put(value(100 + i));
+            }
+            for(int i = 0; i < 10; i++){
+                trailer.put(value(1100 + i));
+            }
+            header.flip();
+            body.flip();
+            trailer.flip();
+            // a read-only buffer has no accessible array
+            ByteBuffer[] buffers = {header, body, trailer.asReadOnlyBuffer()};
+            assertEquals(1110, channel.write(buffers));
+            for(ByteBuffer buffer : buffers){
+                assertFalse(buffer.hasRemaining());
+            }
+            assertEquals(1110, channel.position());
+            ByteBuffer buffer = ByteBuffer.allocate(1110);
+            assertEquals(1110, channel.read(buffer, 0));
+            check(buffer, 0);
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    /**
+     * Gathering writes in append mode and scattering reads larger than the cached temporary array.
+     */
+    @Test
+    public void largeGatheringWriteAndScatteringRead() throws Exception{
+        File copy = File.createTempFile("FileChannelTest", ".dat");
+        try{
+            int[] sizes = {300 * 1024, 0, 700 * 1024 + 1, 1, 2 * 1024 * 1024};
+            ByteBuffer[] buffers = new ByteBuffer[sizes.length];
+            long total = 0;
+            for(int i = 0; i < sizes.length; i++){
+                buffers[i] = i % 2 == 0 ? ByteBuffer.allocateDirect(sizes[i]) : ByteBuffer.allocate(sizes[i]);
+                while(buffers[i].hasRemaining()){
+                    buffers[i].put(value(total++));
+                }
+                buffers[i].flip();
+            }
+            try(FileChannel channel = FileChannel.open(copy.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)){
+                long written = 0;
+                while(written < total){
+                    written += channel.write(buffers);
+                }
+                assertEquals(total, channel.size());
+            }
+            for(ByteBuffer buffer : buffers){
+                assertFalse(buffer.hasRemaining());
+                buffer.clear();
+            }
+            try(FileChannel channel = FileChannel.open(copy.toPath(), StandardOpenOption.READ)){
+                long read = 0;
+                while(read < total){
+                    long n = channel.read(buffers);
+                    assertTrue(n > 0);
+                    read += n;
+                }
+                assertEquals(total, read);
+            }
+            long position = 0;
+            for(ByteBuffer buffer : buffers){
+                check(buffer, position);
+                position += buffer.limit();
+            }
+        }finally{
+            copy.delete();
+        }
+    }
+
+
+    /**
+     * A gathering write to a non-blocking socket that can't take all the data
+     * must report exactly how much was written.
+     */
+    @Test
+    public void gatheringWriteToSocket() throws Exception{
+        try(ServerSocketChannel server = ServerSocketChannel.open()){
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try(SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                    SocketChannel accepted = server.accept()){
+                ByteBuffer header = ByteBuffer.allocate(1000);
+                ByteBuffer body = ByteBuffer.allocateDirect(FILE_SIZE);
+                ByteBuffer trailer = ByteBuffer.allocate(1000);
+                for(int i = 0; i < FILE_SIZE; i++){
+                    if(i < 1000){
+                        header.put(value(i));
+                        trailer.put(value(1000 + FILE_SIZE + i));
+                    }
+                    body.put(value(1000 + i));
+                }
+                header.flip();
+                body.flip();
+                trailer.flip();
+                ByteBuffer[] buffers = {header, body, trailer};
+                long total = 1000 + FILE_SIZE + 1000;
+                client.configureBlocking(false);
+                long written = client.write(buffers);
+                assertTrue(written > 0);
+                assertTrue(written < total);
+                assertEquals(total - written, header.remaining() + body.remaining() + trailer.remaining());
+
+                ByteBuffer received = ByteBuffer.allocate((int)total);
+                while(received.hasRemaining()){
+                    if(accepted.read(received) < 0){
+                        fail("unexpected end of stream");
+                    }
+                    if(trailer.hasRemaining()){
+                        written += client.write(buffers);
+                    }
+                }
+                assertEquals(total, written);
+                check(received, 0);
+                client.shutdownOutput();
+                assertEquals(-1, accepted.read(new ByteBuffer[]{ByteBuffer.allocate(10), ByteBuffer.allocateDirect(10)}));
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.nio.channels;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class SelectorTest{
+
+    private ServerSocketChannel server;
+
+    private final List<SocketChannel> channels = new ArrayList<>();
+
+
+    @Before
+    public void setUp() throws Exception{
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+    }
+
+
+    @After
+    public void tearDown() throws Exception{
+        for(SocketChannel channel : channels){
+            channel.close();
+        }
+        channels.clear();
+        server.close();
+    }
+
+
+    /**
+     * Prints the time of the tests that are also benchmarks.
+     */
+    public static void main(String[] args) throws Exception{
+        SelectorTest test = new SelectorTest();
+        test.setUp();
+        try{
+            long start = System.nanoTime();
+            test.idleAndActive();
+            System.out.println("idleAndActive: " + (System.nanoTime() - start) / 1000000 + " ms");
+            start = System.nanoTime();
+            test.concurrentWakeups();
+            System.out.println("concurrentWakeups: " + (System.nanoTime() - start) / 1000000 + " ms");
+        }finally{
+            test.tearDown();
+        }
+    }
+
+
+    /**
+     * Returns a connected pair of non blocking channels.
+     */
+    private SocketChannel[] connect() throws Exception{
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        client.configureBlocking(false);
+        accepted.configureBlocking(false);
+        channels.add(client);
+        channels.add(accepted);
+        return new SocketChannel[]{client, accepted};
+    }
+
+
+    private static Set<SelectionKey> select(Selector selector) throws Exception{
+        int count = selector.select(5000);
+        Set<SelectionKey> keys = new HashSet<>(selector.selectedKeys());
+        assertEquals(count, keys.size());
+        selector.selectedKeys().clear();
+        return keys;
+    }
+
+
+    @Test
+    public void readIsLevelTriggered() throws Exception{
+        try(Selector selector = Selector.open()){
+            SocketChannel[] pair = connect();
+            SelectionKey key = pair[1].register(selector, SelectionKey.OP_READ);
+            assertEquals(0, selector.selectNow());
+            pair[0].write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            assertEquals(Collections.singleton(key), select(selector));
+            assertEquals(SelectionKey.OP_READ, key.readyOps());
+            // nothing was read, so the key is selected again
+            assertEquals(Collections.singleton(key), select(selector));
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            assertEquals(3, pair[1].read(buffer));
+            assertEquals(0, selector.selectNow());
+            // end of stream makes the key ready too
+            pair[0].close();
+            assertEquals(Collections.singleton(key), select(selector));
+            assertEquals(-1, pair[1].read(buffer));
+        }
+    }
+
+
+    @Test
+    public void interestOpsChange() throws Exception{
+        try(Selector selector = Selector.open()){
+            SocketChannel[] pair = connect();
+            SelectionKey key = pair[1].register(selector, 0);
+            pair[0].write(ByteBuffer.wrap(new byte[]{1}));
+            assertEquals(0, selector.select(100));
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            assertEquals(Collections.singleton(key), select(selector));
+            assertEquals(SelectionKey.OP_READ | SelectionKey.OP_WRITE, key.readyOps());
+            key.interestOps(SelectionKey.OP_WRITE);
+            assertEquals(Collections.singleton(key), select(selector));
+            assertEquals(SelectionKey.OP_WRITE, key.readyOps());
+            key.cancel();
+            assertEquals(0, selector.selectNow());
+        }
+    }
+
+
+    @Test
+    public void acceptAndConnect() throws Exception{
+        try(Selector selector = Selector.open()){
+            server.configureBlocking(false);
+            SelectionKey acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            SocketChannel client = SocketChannel.open();
+            channels.add(client);
+            client.configureBlocking(false);
+            client.connect(server.getLocalAddress());
+            SelectionKey connectKey = client.register(selector, SelectionKey.OP_CONNECT);
+            Set<SelectionKey> selected = new HashSet<>();
+            while(selected.size() < 2){
+                selected.addAll(select(selector));
+            }
+            assertEquals(new HashSet<>(Arrays.asList(acceptKey, connectKey)), selected);
+            assertTrue(client.finishConnect());
+            SocketChannel accepted = server.accept();
+            assertNotNull(accepted);
+            channels.add(accepted);
+        }
+    }
+
+
+    /**
+     * A key that keeps OP_CONNECT as interest after the connection is finished has nothing to poll for,
+     * it must not be selected, not even after the peer sent data.
+     */
+    @Test
+    public void connectInterestAfterConnect() throws Exception{
+        try(Selector selector = Selector.open()){
+            SocketChannel client = SocketChannel.open();
+            channels.add(client);
+            client.configureBlocking(false);
+            client.connect(server.getLocalAddress());
+            SelectionKey key = client.register(selector, SelectionKey.OP_CONNECT);
+            while(!select(selector).contains(key)){
+                // wait until the connection is established
+            }
+            assertTrue(client.finishConnect());
+            SocketChannel accepted = server.accept();
+            channels.add(accepted);
+            accepted.write(ByteBuffer.wrap(new byte[]{1}));
+            assertEquals(0, selector.select(100));
+            assertEquals(0, selector.selectNow());
+            assertTrue(key.isValid());
+            key.interestOps(SelectionKey.OP_READ);
+            assertEquals(Collections.singleton(key), select(selector));
+            assertEquals(SelectionKey.OP_READ, key.readyOps());
+        }
+    }
+
+
+    @Test
+    public void wakeup() throws Exception{
+        try(final Selector selector = Selector.open()){
+            connect()[1].register(selector, SelectionKey.OP_READ);
+            new Thread(){
+                @Override
+                public void run(){
+                    try{
+                        Thread.sleep(100);
+                    }catch(InterruptedException ex){
+                        // ignore
+                    }
+                    selector.wakeup();
+                }
+            }.start();
+            long start = System.nanoTime();
+            assertEquals(0, selector.select(10000));
+            assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+        }
+    }
+
+
+    /**
+     * Worker threads calling wakeup after every queued write, as event loops do.
+     */
+    @Test
+    public void concurrentWakeups() throws Exception{
+        final int threads = 4;
+        final int wakeups = 100000;
+        try(final Selector selector = Selector.open()){
+            connect()[1].register(selector, SelectionKey.OP_READ);
+            Thread[] workers = new Thread[threads];
+            for(int i = 0; i < threads; i++){
+                workers[i] = new Thread(){
+                    @Override
+                    public void run(){
+                        for(int j = 0; j < wakeups; j++){
+                            selector.wakeup();
+                        }
+                    }
+                };
+            }
+            for(Thread worker : workers){
+                worker.start();
+            }
+            for(Thread worker : workers){
+                while(worker.isAlive()){
+                    assertEquals(0, selector.select(100));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Many idle channels and a few active ones, like a gateway with mostly
+     * idle connections. Each round a message goes back and forth over every
+     * active channel.
+     */
+    @Test
+    public void idleAndActive() throws Exception{
+        final int idle = 1000;
+        final int active = 10;
+        final int rounds = 1000;
+        try(Selector selector = Selector.open()){
+            for(int i = 0; i < idle; i++){
+                connect()[1].register(selector, SelectionKey.OP_READ);
+            }
+            List<SocketChannel> clients = new ArrayList<>();
+            for(int i = 0; i < active; i++){
+                SocketChannel[] pair = connect();
+                clients.add(pair[0]);
+                pair[1].register(selector, SelectionKey.OP_READ);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(64);
+            for(int round = 0; round < rounds; round++){
+                for(SocketChannel client : clients){
+                    client.write(ByteBuffer.wrap(new byte[]{(byte)round}));
+                }
+                int pending = active;
+                while(pending > 0){
+                    for(SelectionKey key : select(selector)){
+                        buffer.clear();
+                        assertEquals(1, ((SocketChannel)key.channel()).read(buffer));
+                        assertEquals((byte)round, buffer.get(0));
+                        pending--;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,544 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.nio.file;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FilesTest{
+
+    private static final int DIRECTORIES = 20;
+
+    private static final int FILES = 50;
+
+    private static Path root;
+
+    private static ForkJoinPool pool;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        root = createTree(DIRECTORIES, FILES);
+        pool = new ForkJoinPool(4);
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception{
+        pool.shutdown();
+        delete(root);
+    }
+
+
+    /**
+     * Creates a temporary directory with the given number of directories, each with a subdirectory "sub" with the
+     * given number of files.
+     */
+    private static Path createTree(int directories, int files) throws IOException{
+        Path root = Files.createTempDirectory("FilesTest");
+        for(int d = 0; d < directories; d++){
+            Path dir = Files.createDirectories(root.resolve("dir" + d).resolve("sub"));
+            for(int f = 0; f < files; f++){
+                Files.write(dir.resolve("file" + f), new byte[f % 100]);
+            }
+        }
+        return root;
+    }
+
+
+    private static void delete(Path root) throws IOException{
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException{
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException{
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+
+    @Test
+    public void directoryStream() throws Exception{
+        Set<String> names = new HashSet<String>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(root.resolve("dir0").resolve("sub"))){
+            for(Path path : stream){
+                assertEquals(root.resolve("dir0").resolve("sub"), path.getParent());
+                assertTrue(names.add(path.getFileName().toString()));
+            }
+            try{
+                stream.iterator();
+                fail("second iterator");
+            }catch(IllegalStateException ex){
+                // expected
+            }
+        }
+        assertEquals(FILES, names.size());
+    }
+
+
+    @Test
+    public void directoryStreamFilter() throws Exception{
+        int count = 0;
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(root.resolve("dir1").resolve("sub"), "file1*")){
+            for(Path path : stream){
+                assertTrue(path.getFileName().toString().startsWith("file1"));
+                count++;
+            }
+        }
+        assertEquals(11, count);
+    }
+
+
+    @Test
+    public void directoryStreamClose() throws Exception{
+        DirectoryStream<Path> stream = Files.newDirectoryStream(root);
+        Iterator<Path> it = stream.iterator();
+        assertTrue(it.hasNext());
+        it.next();
+        stream.close();
+        // after close the iterator only returns the entry it already read ahead, if any
+        int count = 0;
+        while(it.hasNext()){
+            it.next();
+            count++;
+        }
+        assertTrue(count <= 1);
+    }
+
+
+    @Test
+    public void directoryStreamNotDirectory() throws Exception{
+        Path file = root.resolve("dir2").resolve("sub").resolve("file3");
+        try{
+            Files.newDirectoryStream(file).close();
+            fail();
+        }catch(NotDirectoryException ex){
+            // expected
+        }
+        try{
+            Files.newDirectoryStream(root.resolve("missing")).close();
+            fail();
+        }catch(IOException ex){
+            // expected
+        }
+    }
+
+
+    /**
+     * The attributes seen by a walk are those of the directory entries.
+     */
+    @Test
+    public void walkFileTree() throws Exception{
+        final int[] counts = new int[2];
+        final long[] size = new long[1];
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+                assertTrue(attrs.isDirectory());
+                counts[0]++;
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+                assertTrue(attrs.isRegularFile());
+                size[0] += attrs.size();
+                counts[1]++;
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        assertEquals(1 + 2 * DIRECTORIES, counts[0]);
+        assertEquals(DIRECTORIES * FILES, counts[1]);
+        assertEquals(DIRECTORIES * (FILES * (FILES - 1) / 2), size[0]);
+    }
+
+
+    /**
+     * Records the callbacks as "pre", "file", "failed" and "post" events with the path relative to the root. The
+     * result of a callback can be set for its event.
+     */
+    private static class Recorder extends SimpleFileVisitor<Path>{
+
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        final Map<String, FileVisitResult> results = new HashMap<String, FileVisitResult>();
+
+        private final PathMatcher filter;
+
+
+        Recorder(String glob){
+            filter = glob == null ? null : root.getFileSystem().getPathMatcher(glob);
+        }
+
+
+        private FileVisitResult record(String event, Path path){
+            event += " " + name(path);
+            events.add(event);
+            FileVisitResult result = results.get(event);
+            return result != null ? result : FileVisitResult.CONTINUE;
+        }
+
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+            assertTrue(attrs.isDirectory());
+            return record("pre", dir);
+        }
+
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+            // Files.walkFileTree has no filter, the walker must not report what it filters out
+            if(filter != null && !filter.matches(file)){
+                return FileVisitResult.CONTINUE;
+            }
+            return record("file", file);
+        }
+
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc){
+            return record("failed " + exc.getClass().getSimpleName(), file);
+        }
+
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc){
+            return record("post", dir);
+        }
+
+
+        List<String> sorted(){
+            List<String> list = new ArrayList<String>(events);
+            Collections.sort(list);
+            return list;
+        }
+    }
+
+
+    private static String name(Path path){
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+
+
+    /**
+     * Creates an ikvm.io.ParallelFileWalker, which only exists in IKVM. On other VMs the test is skipped.
+     */
+    private static Object newWalker(Path start, int maxDepth, String glob, ForkJoinPool pool) throws Exception{
+        PathMatcher filter = glob == null ? null : start.getFileSystem().getPathMatcher(glob);
+        return Internals.newInstance(Internals.type("ikvm.io.ParallelFileWalker"), start, maxDepth, filter, pool);
+    }
+
+
+    private static void parallelWalk(Path start, int maxDepth, String glob, Recorder visitor, boolean ordered) throws Exception{
+        Object walker = newWalker(start, maxDepth, glob, pool);
+        Internals.invoke(walker, "walk", visitor, ordered);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static Stream<Object> parallelStream(Object walker) throws Exception{
+        return (Stream<Object>)Internals.invoke(walker, "stream");
+    }
+
+
+    private static Recorder walkFileTree(Path start, int maxDepth, String glob, Map<String, FileVisitResult> results) throws IOException{
+        Recorder visitor = new Recorder(glob);
+        visitor.results.putAll(results);
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), maxDepth, visitor);
+        return visitor;
+    }
+
+
+    private static final Object[][] WALKS = {
+        {Integer.MAX_VALUE, null},
+        {0, null},
+        {1, null},
+        {2, "glob:**/file1*"},
+        {Integer.MAX_VALUE, "glob:**/dir1*/**"},
+    };
+
+
+    /**
+     * An ordered walk makes the same callbacks in the same order as Files.walkFileTree.
+     */
+    @Test
+    public void parallelWalkOrdered() throws Exception{
+        for(Object[] walk : WALKS){
+            int maxDepth = (Integer)walk[0];
+            String glob = (String)walk[1];
+            Recorder expected = walkFileTree(root, maxDepth, glob, Collections.<String, FileVisitResult>emptyMap());
+            Recorder visitor = new Recorder(glob);
+            parallelWalk(root, maxDepth, glob, visitor, true);
+            assertEquals("maxDepth " + maxDepth + " filter " + glob, expected.events, visitor.events);
+        }
+    }
+
+
+    /**
+     * An unordered walk makes the same callbacks, the files of a directory after its preVisitDirectory and
+     * postVisitDirectory after all of its contents.
+     */
+    @Test
+    public void parallelWalkUnordered() throws Exception{
+        for(Object[] walk : WALKS){
+            int maxDepth = (Integer)walk[0];
+            String glob = (String)walk[1];
+            Recorder expected = walkFileTree(root, maxDepth, glob, Collections.<String, FileVisitResult>emptyMap());
+            Recorder visitor = new Recorder(glob);
+            parallelWalk(root, maxDepth, glob, visitor, false);
+            assertEquals("maxDepth " + maxDepth + " filter " + glob, expected.sorted(), visitor.sorted());
+            List<String> events = visitor.events;
+            for(int i = 0; i < events.size(); i++){
+                String event = events.get(i);
+                if(event.startsWith("pre ")){
+                    String dir = event.substring(4);
+                    String prefix = dir.isEmpty() ? "" : dir + "/";
+                    int post = events.indexOf("post " + dir);
+                    for(int j = 0; j < events.size(); j++){
+                        String path = events.get(j).substring(events.get(j).indexOf(' ') + 1);
+                        if(path.startsWith(prefix) && !path.equals(dir)){
+                            assertTrue(event + " before " + events.get(j), i < j);
+                            assertTrue("post " + dir + " after " + events.get(j), j < post);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void parallelWalkSkip() throws Exception{
+        Map<String, FileVisitResult> results = new HashMap<String, FileVisitResult>();
+        results.put("pre dir3", FileVisitResult.SKIP_SUBTREE);
+        results.put("file dir4/sub/file5", FileVisitResult.SKIP_SIBLINGS);
+        results.put("pre dir6/sub", FileVisitResult.SKIP_SIBLINGS);
+        Recorder expected = walkFileTree(root, Integer.MAX_VALUE, null, results);
+        assertFalse(expected.events.contains("post dir3"));
+        for(boolean ordered : new boolean[]{true, false}){
+            Recorder visitor = new Recorder(null);
+            visitor.results.putAll(results);
+            parallelWalk(root, Integer.MAX_VALUE, null, visitor, ordered);
+            assertEquals("ordered " + ordered, expected.sorted(), visitor.sorted());
+            if(ordered){
+                assertEquals(expected.events, visitor.events);
+            }
+        }
+        // SKIP_SIBLINGS is a no-op for postVisitDirectory
+        results.put("post dir7", FileVisitResult.SKIP_SIBLINGS);
+        for(boolean ordered : new boolean[]{true, false}){
+            Recorder visitor = new Recorder(null);
+            visitor.results.putAll(results);
+            parallelWalk(root, Integer.MAX_VALUE, null, visitor, ordered);
+            assertEquals("ordered " + ordered, expected.sorted(), visitor.sorted());
+        }
+    }
+
+
+    @Test
+    public void parallelWalkTerminate() throws Exception{
+        Map<String, FileVisitResult> results = Collections.singletonMap("file dir5/sub/file7", FileVisitResult.TERMINATE);
+        Recorder expected = walkFileTree(root, Integer.MAX_VALUE, null, results);
+        Recorder visitor = new Recorder(null);
+        visitor.results.putAll(results);
+        parallelWalk(root, Integer.MAX_VALUE, null, visitor, true);
+        assertEquals(expected.events, visitor.events);
+
+        // other threads may still make callbacks, but no directory around the file is completed
+        List<String> all = walkFileTree(root, Integer.MAX_VALUE, null, Collections.<String, FileVisitResult>emptyMap()).events;
+        visitor = new Recorder(null);
+        visitor.results.putAll(results);
+        parallelWalk(root, Integer.MAX_VALUE, null, visitor, false);
+        assertTrue(visitor.events.contains("file dir5/sub/file7"));
+        assertTrue(all.containsAll(visitor.events));
+        assertFalse(visitor.events.contains("file dir5/sub/file8"));
+        assertFalse(visitor.events.contains("post dir5/sub"));
+        assertFalse(visitor.events.contains("post dir5"));
+        assertFalse(visitor.events.contains("post "));
+    }
+
+
+    @Test
+    public void parallelWalkFailed() throws Exception{
+        Path missing = root.resolve("missing");
+        for(boolean ordered : new boolean[]{true, false}){
+            Recorder visitor = new Recorder(null);
+            parallelWalk(missing, Integer.MAX_VALUE, null, visitor, ordered);
+            assertEquals(Arrays.asList("failed NoSuchFileException missing"), visitor.events);
+        }
+        // a directory that can't be read, unless we run with the rights to read it anyway
+        Path dir = root.resolve("dir8").resolve("sub");
+        Set<PosixFilePermission> permissions;
+        try{
+            permissions = Files.getPosixFilePermissions(dir);
+            Files.setPosixFilePermissions(dir, EnumSet.noneOf(PosixFilePermission.class));
+        }catch(UnsupportedOperationException ex){
+            return;
+        }
+        try{
+            if(Files.isReadable(dir)){
+                return;
+            }
+            Recorder expected = walkFileTree(root, Integer.MAX_VALUE, null, Collections.<String, FileVisitResult>emptyMap());
+            assertTrue(expected.events.contains("failed AccessDeniedException dir8/sub"));
+            for(boolean ordered : new boolean[]{true, false}){
+                Recorder visitor = new Recorder(null);
+                parallelWalk(root, Integer.MAX_VALUE, null, visitor, ordered);
+                assertEquals("ordered " + ordered, expected.sorted(), visitor.sorted());
+            }
+        }finally{
+            Files.setPosixFilePermissions(dir, permissions);
+        }
+    }
+
+
+    @Test
+    public void parallelWalkStream() throws Exception{
+        for(Object[] walk : WALKS){
+            int maxDepth = (Integer)walk[0];
+            String glob = (String)walk[1];
+            final PathMatcher filter = glob == null ? null : root.getFileSystem().getPathMatcher(glob);
+            final List<String> expected = new ArrayList<String>();
+            Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>(){
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+                    if(filter == null || filter.matches(dir)){
+                        expected.add(name(dir));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+                    if(filter == null || filter.matches(file)){
+                        expected.add(name(file));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Collections.sort(expected);
+            List<String> names = new ArrayList<String>();
+            try(Stream<Object> stream = parallelStream(newWalker(root, maxDepth, glob, pool))){
+                Iterator<Object> it = stream.iterator();
+                while(it.hasNext()){
+                    names.add(name((Path)Internals.invoke(it.next(), "path")));
+                }
+            }
+            Collections.sort(names);
+            assertEquals("maxDepth " + maxDepth + " filter " + glob, expected, names);
+        }
+    }
+
+
+    /**
+     * Closing a stream that isn't consumed stops the threads that fill it, even when they wait for room in its
+     * queue.
+     */
+    @Test
+    public void parallelWalkStreamClose() throws Exception{
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try{
+            for(int i = 0; i < 10; i++){
+                try(Stream<Object> stream = parallelStream(newWalker(root, Integer.MAX_VALUE, null, pool))){
+                    Iterator<Object> it = stream.iterator();
+                    assertTrue(it.hasNext());
+                    it.next();
+                    // give the producers the time to fill the queue
+                    Thread.sleep(i * 10);
+                }
+                assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+            }
+        }finally{
+            pool.shutdown();
+        }
+    }
+
+
+    /**
+     * Prints how long the walks of a tree take with Files.walkFileTree and with the parallel walker.
+     */
+    private static void parallelWalkBenchmark(Path root, ForkJoinPool pool) throws Exception{
+        final long[] count = new long[1];
+        SimpleFileVisitor<Path> counter = new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+                synchronized(count){
+                    count[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        };
+        long start = System.nanoTime();
+        Files.walkFileTree(root, counter);
+        long files = count[0];
+        System.out.println("walkFileTree " + files + " files in " + (System.nanoTime() - start) / 1000000 + " ms");
+        for(boolean ordered : new boolean[]{true, false}){
+            count[0] = 0;
+            start = System.nanoTime();
+            Internals.invoke(newWalker(root, Integer.MAX_VALUE, null, pool), "walk", counter, ordered);
+            assertEquals(files, count[0]);
+            System.out.println("ParallelFileWalker " + (ordered ? "ordered" : "unordered") + " " + files + " files in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+        start = System.nanoTime();
+        try(Stream<Object> stream = parallelStream(newWalker(root, Integer.MAX_VALUE, null, pool))){
+            // the directories are in the stream too
+            assertTrue(stream.count() > files);
+        }
+        System.out.println("ParallelFileWalker stream " + files + " files in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+
+    /**
+     * Runs the benchmark on a tree with 500,000 files (or the number given as argument), 1000 files per directory.
+     */
+    public static void main(String[] args) throws Exception{
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        Path root = createTree(Math.max(files / 1000, 1), Math.min(files, 1000));
+        ForkJoinPool pool = new ForkJoinPool();
+        try{
+            System.out.println("parallelism " + pool.getParallelism());
+            // the first run reads the directories into the file system cache
+            parallelWalkBenchmark(root, pool);
+            parallelWalkBenchmark(root, pool);
+        }finally{
+            pool.shutdown();
+            delete(root);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.nio.file;
+
+import java.nio.file.*;
+import java.util.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * The common Path operations, with a microbenchmark of each.
+ */
+public class PathTest{
+
+    private static final int ITERATIONS = 200000;
+
+    private static final Path base = Paths.get("build", "cache", "objects", "ab");
+
+    private static final Path file = base.resolve(Paths.get("cdef0123", "src", "main", "java", "Foo.java"));
+
+    private static volatile Object sink;
+
+
+    @Test
+    public void names(){
+        assertEquals(9, file.getNameCount());
+        assertEquals("objects", file.getName(2).toString());
+        assertEquals(Paths.get("src", "main"), file.subpath(5, 7));
+        assertEquals(2, file.subpath(5, 7).getNameCount());
+        assertEquals("Foo.java", file.getFileName().toString());
+        assertEquals(8, file.getParent().getNameCount());
+        assertEquals(base, file.getParent().getParent().getParent().getParent().getParent());
+        try{
+            file.subpath(3, 3);
+            fail();
+        }catch(IllegalArgumentException ex){
+            // expected
+        }
+        try{
+            file.getName(9);
+            fail();
+        }catch(IllegalArgumentException ex){
+            // expected
+        }
+    }
+
+
+    @Test
+    public void compare(){
+        Path same = Paths.get(file.toString());
+        assertEquals(file, same);
+        assertEquals(file.hashCode(), same.hashCode());
+        assertEquals(0, file.compareTo(same));
+        assertTrue(file.startsWith(base));
+        assertFalse(base.startsWith(file));
+        assertTrue(file.endsWith(Paths.get("java", "Foo.java")));
+        assertFalse(file.endsWith(Paths.get("Foo.java", "java")));
+        assertEquals(Paths.get("cdef0123", "src", "main", "java", "Foo.java"), base.relativize(file));
+        assertEquals(Paths.get("..", "..", ".."), file.relativize(file.getParent().getParent().getParent()));
+        assertEquals(file, base.resolve(base.relativize(file)));
+        assertSame(file, file.normalize());
+        assertEquals(Paths.get("a", "c"), Paths.get("a", ".", "b", "..", "c").normalize());
+    }
+
+
+    /**
+     * Prints the time of the common Path operations.
+     */
+    public static void main(String[] args){
+        Path other = Paths.get("build", "cache", "objects", "cd", "0123");
+        Path rel = Paths.get("src", "main", "java", "Foo.java");
+        Path suffix = Paths.get("java", "Foo.java");
+        Map<String, Runnable> ops = new LinkedHashMap<String, Runnable>();
+        ops.put("getNameCount", () -> sink = file.getNameCount());
+        ops.put("getName", () -> sink = file.getName(4));
+        ops.put("subpath", () -> sink = file.subpath(2, 6));
+        ops.put("getParent", () -> sink = file.getParent());
+        ops.put("getFileName", () -> sink = file.getFileName());
+        ops.put("resolve", () -> sink = base.resolve(rel));
+        ops.put("relativize", () -> sink = other.relativize(file));
+        ops.put("startsWith", () -> sink = file.startsWith(base));
+        ops.put("endsWith", () -> sink = file.endsWith(suffix));
+        ops.put("normalize", () -> sink = file.normalize());
+        ops.put("hashCode", () -> sink = file.hashCode());
+        ops.put("equals", () -> sink = file.equals(Paths.get(file.toString())));
+        ops.put("Paths.get", () -> sink = Paths.get("build/cache/objects/ab/cdef0123/src/main/java/Foo.java"));
+        StringBuilder sb = new StringBuilder("Path operations (ns/op):");
+        for(Map.Entry<String, Runnable> op : ops.entrySet()){
+            Runnable r = op.getValue();
+            // warm up
+            for(int i = 0; i < ITERATIONS; i++){
+                r.run();
+            }
+            long start = System.nanoTime();
+            for(int i = 0; i < ITERATIONS; i++){
+                r.run();
+            }
+            sb.append(' ').append(op.getKey()).append('=').append((System.nanoTime() - start) / ITERATIONS);
+        }
+        System.out.println(sb);
+    }
+}
@@ -0,0 +1,278 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.nio.file;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import com.sun.nio.file.ExtendedWatchEventModifier;
+
+public class WatchServiceTest{
+
+    private static final int DIRECTORIES = 10;
+
+    private static final int FILES = 300;
+
+    // files written before the events are taken, each gives up to three events
+    private static final int BATCH = 100;
+
+    private Path root;
+
+    private WatchService watcher;
+
+
+    @Before
+    public void setUp() throws Exception{
+        root = Files.createTempDirectory("WatchServiceTest");
+        watcher = root.getFileSystem().newWatchService();
+    }
+
+
+    @After
+    public void tearDown() throws Exception{
+        watcher.close();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException{
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException{
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+
+    /**
+     * Register the tree with FILE_TREE where it is supported, else every directory on its own.
+     */
+    private void registerTree(List<Path> dirs) throws IOException{
+        try{
+            root.register(watcher, new WatchEvent.Kind<?>[]{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY}, ExtendedWatchEventModifier.FILE_TREE);
+        }catch(UnsupportedOperationException ex){
+            for(Path dir : dirs){
+                dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            }
+        }
+    }
+
+
+    @Test
+    public void coalesceModifications() throws Exception{
+        Path file = Files.createFile(root.resolve("file"));
+        root.register(watcher, ENTRY_MODIFY);
+        for(int i = 0; i < 100; i++){
+            Files.write(file, new byte[i + 1]);
+        }
+        int modifications = 0;
+        WatchKey key;
+        while((key = watcher.poll(2, TimeUnit.SECONDS)) != null){
+            for(WatchEvent<?> event : key.pollEvents()){
+                assertTrue(event.count() >= 1);
+                if(event.kind() == ENTRY_MODIFY){
+                    assertEquals(file.getFileName(), event.context());
+                    modifications += event.count();
+                }
+            }
+            key.reset();
+        }
+        assertTrue(modifications >= 1);
+    }
+
+
+    /**
+     * Changes a whole tree, the way a checkout does, and takes the events while the tree changes. The files are
+     * written in batches that stay below the event limit of a key, so there must be no overflow and every file must
+     * be reported.
+     */
+    @Test
+    public void stress() throws Exception{
+        List<Path> dirs = new ArrayList<Path>();
+        dirs.add(root);
+        for(int d = 0; d < DIRECTORIES; d++){
+            dirs.add(Files.createDirectories(root.resolve("dir" + d).resolve("sub")));
+            dirs.add(root.resolve("dir" + d));
+        }
+        registerTree(dirs);
+
+        Set<Path> seen = new HashSet<Path>();
+        for(int d = 0; d < DIRECTORIES; d++){
+            Path dir = root.resolve("dir" + d).resolve("sub");
+            for(int f = 0; f < FILES; f += BATCH){
+                Set<Path> batch = new HashSet<Path>();
+                for(int i = f; i < f + BATCH; i++){
+                    Path file = dir.resolve("file" + i);
+                    Files.write(file, new byte[i]);
+                    Files.write(file, new byte[i + 1]);
+                    batch.add(file);
+                }
+                while(!seen.containsAll(batch)){
+                    WatchKey key = watcher.poll(5, TimeUnit.SECONDS);
+                    assertNotNull("no events for " + batch.size() + " files in " + dir, key);
+                    Path watched = (Path)key.watchable();
+                    for(WatchEvent<?> event : key.pollEvents()){
+                        assertFalse("overflow", event.kind() == OVERFLOW);
+                        assertTrue(event.count() >= 1);
+                        if(event.kind() == ENTRY_CREATE || event.kind() == ENTRY_MODIFY){
+                            seen.add(watched.resolve((Path)event.context()));
+                        }
+                    }
+                    assertTrue(key.reset());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds an event to a key of IKVM's watch service, as its FileSystemWatcher does. On other VMs the test is
+     * skipped.
+     */
+    private static void addEvent(WatchKey key, WatchEvent.Kind<Path> kind, String name) throws Exception{
+        Internals.invoke(key, "addEvent", kind, name);
+    }
+
+
+    private static String toString(List<WatchEvent<?>> events){
+        StringBuilder builder = new StringBuilder();
+        for(WatchEvent<?> event : events){
+            if(builder.length() > 0){
+                builder.append(", ");
+            }
+            builder.append(event.kind().name()).append(' ').append(event.context()).append(' ').append(event.count());
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Creates a watch service with the given system properties, which IKVM reads when a watch service is created.
+     */
+    private WatchService newWatchService(String... properties) throws IOException{
+        for(int i = 0; i < properties.length; i += 2){
+            System.setProperty(properties[i], properties[i + 1]);
+        }
+        try{
+            return root.getFileSystem().newWatchService();
+        }finally{
+            for(int i = 0; i < properties.length; i += 2){
+                System.clearProperty(properties[i]);
+            }
+        }
+    }
+
+
+    /**
+     * An event is coalesced with the last pending event of the same name if it has the same kind, which then counts
+     * it. A modification of a file whose creation is pending is covered by the ENTRY_CREATE event.
+     */
+    @Test
+    public void coalesceByName() throws Exception{
+        WatchKey key = root.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        addEvent(key, ENTRY_MODIFY, "a");
+        addEvent(key, ENTRY_CREATE, "b");
+        addEvent(key, ENTRY_MODIFY, "a");
+        addEvent(key, ENTRY_MODIFY, "b");
+        addEvent(key, ENTRY_MODIFY, "a");
+        addEvent(key, ENTRY_DELETE, "b");
+        addEvent(key, ENTRY_CREATE, "b");
+        assertSame(key, watcher.poll(5, TimeUnit.SECONDS));
+        assertEquals("ENTRY_MODIFY a 3, ENTRY_CREATE b 1, ENTRY_DELETE b 1, ENTRY_CREATE b 1", toString(key.pollEvents()));
+        assertTrue(key.reset());
+        // after the events were taken, the same name starts a new event
+        addEvent(key, ENTRY_MODIFY, "b");
+        assertSame(key, watcher.poll(5, TimeUnit.SECONDS));
+        assertEquals("ENTRY_MODIFY b 1", toString(key.pollEvents()));
+        assertTrue(key.reset());
+    }
+
+
+    /**
+     * A key that reaches the event limit keeps its pending events and appends a single OVERFLOW event, which counts
+     * the events lost from then on.
+     */
+    @Test
+    public void overflowKeepsPendingEvents() throws Exception{
+        try(WatchService service = newWatchService("ikvm.nio.fs.watch.maxEvents", "3")){
+            WatchKey key = root.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            addEvent(key, ENTRY_CREATE, "a");
+            addEvent(key, ENTRY_CREATE, "b");
+            addEvent(key, ENTRY_CREATE, "c");
+            // coalesced events don't count against the limit
+            addEvent(key, ENTRY_MODIFY, "a");
+            addEvent(key, ENTRY_CREATE, "c");
+            addEvent(key, ENTRY_CREATE, "d");
+            addEvent(key, ENTRY_DELETE, "a");
+            addEvent(key, ENTRY_CREATE, "e");
+            assertSame(key, service.poll(5, TimeUnit.SECONDS));
+            List<WatchEvent<?>> events = key.pollEvents();
+            assertEquals("ENTRY_CREATE a 1, ENTRY_CREATE b 1, ENTRY_CREATE c 2, OVERFLOW null 3", toString(events));
+            assertSame(OVERFLOW, events.get(3).kind());
+            assertTrue(key.reset());
+            addEvent(key, ENTRY_DELETE, "a");
+            assertSame(key, service.poll(5, TimeUnit.SECONDS));
+            assertEquals("ENTRY_DELETE a 1", toString(key.pollEvents()));
+        }
+    }
+
+
+    /**
+     * With a batch window a key is only signalled when the window after its first event has passed, and it returns
+     * all events of the window at once.
+     */
+    @Test
+    public void batchWindow() throws Exception{
+        try(WatchService service = newWatchService("ikvm.nio.fs.watch.batchWindow", "500")){
+            WatchKey key = root.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            long start = System.nanoTime();
+            addEvent(key, ENTRY_CREATE, "a");
+            assertNull(service.poll());
+            addEvent(key, ENTRY_CREATE, "b");
+            addEvent(key, ENTRY_MODIFY, "a");
+            assertSame(key, service.poll(5, TimeUnit.SECONDS));
+            assertTrue((System.nanoTime() - start) / 1000000 >= 450);
+            assertEquals("ENTRY_CREATE a 1, ENTRY_CREATE b 1", toString(key.pollEvents()));
+            assertTrue(key.reset());
+            // without events the key isn't signalled again
+            assertNull(service.poll(1, TimeUnit.SECONDS));
+        }
+        // without a batch window the key is signalled right away
+        WatchKey key = root.register(watcher, ENTRY_CREATE);
+        addEvent(key, ENTRY_CREATE, "c");
+        assertSame(key, watcher.poll());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.util.zip;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.*;
+
+import junit.ikvm.Internals;
+import junit.ikvm.ReferenceData;
+
+import org.junit.*;
+
+public class ChecksumTest{
+
+    private static ReferenceData reference;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        reference = new ReferenceData();
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception{
+        if(reference != null){
+            reference.save();
+        }
+    }
+
+
+    private static byte[] data(int length){
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+
+    @Test
+    public void crc32Array(){
+        for(int length : new int[]{0, 1, 7, 8, 15, 16, 17, 64, 4096, 1 << 20}){
+            byte[] data = data(length + 3);
+            CRC32 crc = new CRC32();
+            crc.update(data, 3, length);
+            reference.assertEquals("crc32Array " + length, crc.getValue());
+        }
+    }
+
+
+    @Test
+    public void crc32ByteBuffer(){
+        for(int length : new int[]{0, 1, 7, 8, 15, 16, 17, 64, 4096, 1 << 20}){
+            byte[] data = data(length + 3);
+            CRC32 crc = new CRC32();
+            ByteBuffer heap = ByteBuffer.wrap(data, 3, length);
+            crc.update(heap);
+            org.junit.Assert.assertEquals(heap.limit(), heap.position());
+            reference.assertEquals("crc32ByteBuffer heap " + length, crc.getValue());
+
+            crc.reset();
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).position(3);
+            crc.update(direct);
+            org.junit.Assert.assertEquals(direct.limit(), direct.position());
+            reference.assertEquals("crc32ByteBuffer direct " + length, crc.getValue());
+
+            crc.reset();
+            crc.update(ByteBuffer.wrap(data, 3, length).asReadOnlyBuffer());
+            reference.assertEquals("crc32ByteBuffer readonly " + length, crc.getValue());
+        }
+    }
+
+
+    @Test
+    public void adler32Array(){
+        for(int length : new int[]{0, 1, 15, 16, 17, 5552, 5553, 4096, 1 << 20}){
+            byte[] data = data(length + 3);
+            Adler32 adler = new Adler32();
+            adler.update(data, 3, length);
+            reference.assertEquals("adler32Array " + length, adler.getValue());
+
+            Adler32 whole = new Adler32();
+            whole.update(data);
+            reference.assertEquals("adler32Array whole " + length, whole.getValue());
+        }
+    }
+
+
+    @Test
+    public void adler32ByteBuffer(){
+        for(int length : new int[]{0, 1, 15, 16, 17, 5552, 5553, 4096, 1 << 20}){
+            byte[] data = data(length + 3);
+            Adler32 adler = new Adler32();
+            ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).position(3);
+            adler.update(direct);
+            org.junit.Assert.assertEquals(direct.limit(), direct.position());
+            reference.assertEquals("adler32ByteBuffer direct " + length, adler.getValue());
+        }
+    }
+
+
+
+    /**
+     * Calls the combine method of IKVM's CRC32 or Adler32, other VMs don't have it.
+     */
+    private static long combine(Class<?> type, long sum1, long sum2, long len2) throws Exception{
+        return (Long)Internals.invoke(type, "combine", sum1, sum2, len2);
+    }
+
+
+    @Test
+    public void combine() throws Exception{
+        byte[] data = data(100000);
+        for(int split : new int[]{0, 1, 7, 5552, 5553, 65536, 99999, 100000}){
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            CRC32 crc1 = new CRC32();
+            crc1.update(data, 0, split);
+            CRC32 crc2 = new CRC32();
+            crc2.update(data, split, data.length - split);
+            Assert.assertEquals("crc32 " + split, crc.getValue(), combine(CRC32.class, crc1.getValue(), crc2.getValue(), data.length - split));
+
+            Adler32 adler = new Adler32();
+            adler.update(data, 0, data.length);
+            Adler32 adler1 = new Adler32();
+            adler1.update(data, 0, split);
+            Adler32 adler2 = new Adler32();
+            adler2.update(data, split, data.length - split);
+            Assert.assertEquals("adler32 " + split, adler.getValue(), combine(Adler32.class, adler1.getValue(), adler2.getValue(), data.length - split));
+        }
+    }
+}
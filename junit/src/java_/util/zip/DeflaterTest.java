@@ -0,0 +1,175 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.util.zip;
+
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DeflaterTest{
+
+    private static byte[] data;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        // text like data with many repetitions at all distances
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        while(builder.length() < 1000000){
+            builder.append("token").append(random.nextInt(2000)).append(random.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        data = builder.toString().getBytes("US-ASCII");
+    }
+
+
+    private static byte[] deflate(Deflater deflater, byte[] input){
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[input.length + input.length / 100 + 64];
+        int count = 0;
+        while(!deflater.finished()){
+            count += deflater.deflate(buffer, count, buffer.length - count);
+        }
+        deflater.end();
+        return Arrays.copyOf(buffer, count);
+    }
+
+
+    private static byte[] inflate(Inflater inflater, byte[] input, int length) throws DataFormatException{
+        inflater.setInput(input);
+        byte[] buffer = new byte[length];
+        int count = 0;
+        while(count < length && !inflater.finished()){
+            int n = inflater.inflate(buffer, count, length - count);
+            if(n == 0 && inflater.needsInput()){
+                break;
+            }
+            count += n;
+        }
+        inflater.end();
+        return Arrays.copyOf(buffer, count);
+    }
+
+
+    @Test
+    public void levels() throws Exception{
+        for(int level = Deflater.NO_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++){
+            byte[] compressed = deflate(new Deflater(level, true), data);
+            assertArrayEquals("level " + level, data, inflate(new Inflater(true), compressed, data.length));
+        }
+    }
+
+
+    @Test
+    public void strategies() throws Exception{
+        for(int strategy : new int[]{Deflater.FILTERED, Deflater.HUFFMAN_ONLY}){
+            for(int level : new int[]{1, 6, 9}){
+                Deflater deflater = new Deflater(level);
+                deflater.setStrategy(strategy);
+                byte[] compressed = deflate(deflater, data);
+                assertArrayEquals("strategy " + strategy + " level " + level, data, inflate(new Inflater(), compressed, data.length));
+            }
+        }
+    }
+
+
+    @Test
+    public void syncFlush() throws Exception{
+        for(int level : new int[]{0, 1, 6}){
+            Deflater deflater = new Deflater(level, true);
+            deflater.setInput(data, 0, 50000);
+            byte[] buffer = new byte[60000];
+            int count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            deflater.end();
+            // a sync flush ends with an empty stored block
+            assertArrayEquals(new byte[]{0, 0, -1, -1}, Arrays.copyOfRange(buffer, count - 4, count));
+            byte[] inflated = inflate(new Inflater(true), Arrays.copyOf(buffer, count), 50000);
+            assertArrayEquals("level " + level, Arrays.copyOf(data, 50000), inflated);
+        }
+    }
+
+
+    @Test
+    public void nowrapDictionary() throws Exception{
+        byte[] dictionary = Arrays.copyOf(data, 32768);
+        byte[] input = Arrays.copyOfRange(data, 32768, 100000);
+        for(int level : new int[]{0, 1, 6}){
+            Deflater deflater = new Deflater(level, true);
+            deflater.setDictionary(dictionary);
+            byte[] compressed = deflate(deflater, input);
+            Inflater inflater = new Inflater(true);
+            inflater.setDictionary(dictionary);
+            assertArrayEquals("level " + level, input, inflate(inflater, compressed, input.length));
+        }
+    }
+
+
+    /**
+     * Every SYNC_FLUSH or FULL_FLUSH ends byte aligned with an empty stored block, and all input given so far can be
+     * inflated from the output so far. After a FULL_FLUSH a new inflater can start.
+     */
+    @Test
+    public void repeatedFlushes() throws Exception{
+        for(int level = Deflater.NO_COMPRESSION; level <= Deflater.BEST_COMPRESSION; level++){
+            for(int flush : new int[]{Deflater.SYNC_FLUSH, Deflater.FULL_FLUSH}){
+                String msg = "level " + level + " flush " + flush;
+                Deflater deflater = new Deflater(level, true);
+                Inflater inflater = new Inflater(true);
+                byte[] buffer = new byte[70000];
+                byte[] inflated = new byte[70000];
+                int offset = 0;
+                for(int i = 0; i < 20; i++){
+                    // includes a flush without new input and one of a single byte
+                    int length = i == 3 ? 0 : i == 4 ? 1 : (i * 7919) % 60000;
+                    deflater.setInput(data, offset, length);
+                    int count = deflater.deflate(buffer, 0, buffer.length, flush);
+                    assertTrue(msg, count < buffer.length);
+                    if(length == 0 && count == 0){
+                        // nothing to flush
+                        continue;
+                    }
+                    assertArrayEquals(msg, new byte[]{0, 0, -1, -1}, Arrays.copyOfRange(buffer, count - 4, count));
+                    inflater.setInput(buffer, 0, count);
+                    int total = 0;
+                    int n;
+                    while(total < length && (n = inflater.inflate(inflated, total, length - total)) > 0){
+                        total += n;
+                    }
+                    assertEquals(msg, length, total);
+                    assertArrayEquals(msg, Arrays.copyOfRange(data, offset, offset + length), Arrays.copyOf(inflated, length));
+                    if(flush == Deflater.FULL_FLUSH && i > 0){
+                        byte[] alone = inflate(new Inflater(true), Arrays.copyOf(buffer, count), length);
+                        assertArrayEquals(msg + " restart", Arrays.copyOfRange(data, offset, offset + length), alone);
+                    }
+                    offset += length;
+                }
+                deflater.end();
+                inflater.end();
+            }
+        }
+    }
+}
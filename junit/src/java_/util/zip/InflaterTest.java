@@ -0,0 +1,259 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+ */
+package java_.util.zip;
+
+import java.util.*;
+import java.util.zip.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InflaterTest{
+
+    /**
+     * 100 lines of text, compressed by zlib 1.2.13 with level 6 and a sync flush after every 2000 bytes, which gives
+     * three dynamic Huffman blocks, each followed by an empty stored block.
+     */
+    private static final byte[] TEXT_ZLIB = hex(
+            "789c9cd55b16c1500c46e177a3c810e40f2d66e37268397a68d56df41633b09fb3f653be95e4b64b365dd9ad49761ddb"
+            + "edc9367d7974b62f4f3b8ee7cb60e59efadf38afdf2fdb95c3247f1b078d4013a09981660e9a0a34356816a059929d22"
+            + "084482130a4e2c38c1e04483130e4e3c3801e144848808a1db40448888101121224244848808111122228288082222d0"
+            + "bb202282880822228888f843c4070000ffff9cd7a101c0001002b1a10afcfe9b55d65564005cc4f18d44c42322222222"
+            + "22222242052122222222222222222222222a222a222a222a224a5129222a222a222a222a222622262226222622262246"
+            + "3f43444c444c444c449c8838117122e244c48988fb15f1020000ffff9cd83101002000c3305974fe8da1808308d89767"
+            + "7d8de87a8a8823228e884844242212118988444422221111d508119188988898889888988898889888988898881805aa"
+            + "4f11170000ffff03007b1b3e02");
+
+    /**
+     * Runs of one, three and ten bytes with back-references that overlap the bytes they copy, compressed by zlib
+     * 1.2.13 as raw deflate data (nowrap) with fixed Huffman codes only.
+     */
+    private static final byte[] REPEATS_FIXED_RAW = hex(
+            "4b4c1c05a360148c8251300a46c1281805a360148c8251300a46c1281805a36014d01a5454568da251348a46d1281a45"
+            + "a368148da251348a46d1281a45a368148da251348a46d1281a45a368148da251348a46d1281a45a368148da25134ec91"
+            + "81a191b189a999b985e5286b9435ca1a658db24659a3ac51d6286b9435ca1a658db24659a3ac51d6286b9435ca1a658d"
+            + "b24659a3ac51d6286b9435ca1a658db24659a3ac51d6286b9435ca1a658db2465943970500");
+
+    private static byte[] text;
+
+    private static byte[] repeats;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 100; i++){
+            builder.append("line ").append(i).append(": the quick brown fox jumps over the lazy dog\n");
+        }
+        text = builder.toString().getBytes("US-ASCII");
+        builder.setLength(0);
+        for(int i = 0; i < 5000; i++){
+            builder.append('a');
+        }
+        for(int i = 0; i < 3000; i++){
+            builder.append("xyz");
+        }
+        for(int i = 0; i < 1000; i++){
+            builder.append("0123456789");
+        }
+        repeats = builder.toString().getBytes("US-ASCII");
+    }
+
+
+    private static byte[] hex(String hex){
+        byte[] bytes = new byte[hex.length() / 2];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = (byte)Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+
+    /**
+     * Returns the raw deflate data of a zlib stream, without the two byte header and the Adler-32 trailer.
+     */
+    private static byte[] raw(byte[] zlib){
+        return Arrays.copyOfRange(zlib, 2, zlib.length - 4);
+    }
+
+
+    private static byte[] concat(byte[] data, byte[] trailer){
+        byte[] result = Arrays.copyOf(data, data.length + trailer.length);
+        System.arraycopy(trailer, 0, result, data.length, trailer.length);
+        return result;
+    }
+
+
+    /**
+     * Inflates the input, which is passed in pieces of at most inputStep bytes, into an output buffer of outputSize
+     * bytes, until the inflater is finished.  Like InflaterInputStream, the next piece is only passed when inflate
+     * returns nothing, there may be output left after the last input was consumed.
+     */
+    private static byte[] inflate(Inflater inflater, byte[] input, int inputStep, int outputSize) throws DataFormatException{
+        byte[] output = new byte[outputSize];
+        byte[] result = new byte[0];
+        int offset = 0;
+        while(!inflater.finished()){
+            int n = inflater.inflate(output);
+            if(n == 0 && !inflater.finished()){
+                assertFalse(inflater.needsDictionary());
+                assertTrue(inflater.needsInput());
+                assertTrue("unexpected end of input", offset < input.length);
+                int length = Math.min(inputStep, input.length - offset);
+                inflater.setInput(input, offset, length);
+                offset += length;
+            }
+            result = concat(result, Arrays.copyOf(output, n));
+        }
+        return result;
+    }
+
+
+    @Test
+    public void dynamicHuffman() throws Exception{
+        assertEquals(4, TEXT_ZLIB[2] & 6);
+        Inflater inflater = new Inflater();
+        assertArrayEquals(text, inflate(inflater, TEXT_ZLIB, TEXT_ZLIB.length, 65536));
+        assertEquals(0, inflater.getRemaining());
+        assertEquals(TEXT_ZLIB.length, inflater.getBytesRead());
+        assertEquals(text.length, inflater.getBytesWritten());
+        Adler32 adler = new Adler32();
+        adler.update(text);
+        assertEquals((int)adler.getValue(), inflater.getAdler());
+        inflater.end();
+    }
+
+
+    @Test
+    public void fixedHuffman() throws Exception{
+        assertEquals(2, REPEATS_FIXED_RAW[0] & 6);
+        Inflater inflater = new Inflater(true);
+        assertArrayEquals(repeats, inflate(inflater, REPEATS_FIXED_RAW, REPEATS_FIXED_RAW.length, 65536));
+        assertEquals(REPEATS_FIXED_RAW.length, inflater.getBytesRead());
+        assertEquals(repeats.length, inflater.getBytesWritten());
+        inflater.end();
+    }
+
+
+    /**
+     * Runs of short random patterns, deflated by our own Deflater, give back-references of all lengths up to 258
+     * bytes that overlap the bytes they copy, and the output wraps around the 32 KB window many times.
+     */
+    @Test
+    public void overlappingBackReferences() throws Exception{
+        Random random = new Random(42);
+        byte[] data = new byte[200000];
+        for(int i = 0; i < data.length; ){
+            byte[] pattern = new byte[1 + random.nextInt(20)];
+            random.nextBytes(pattern);
+            int end = Math.min(data.length, i + 3 + random.nextInt(1000));
+            for(int j = 0; i < end; j++){
+                data[i++] = pattern[j % pattern.length];
+            }
+        }
+        for(int level : new int[]{Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}){
+            Deflater deflater = new Deflater(level);
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length];
+            int count = 0;
+            while(!deflater.finished()){
+                count += deflater.deflate(buffer, count, buffer.length - count);
+            }
+            deflater.end();
+            byte[] input = Arrays.copyOf(buffer, count);
+            for(int inputStep : new int[]{3, count}){
+                Inflater inflater = new Inflater();
+                assertArrayEquals(data, inflate(inflater, input, inputStep, 65536));
+                assertEquals(count, inflater.getBytesRead());
+                inflater.end();
+            }
+        }
+    }
+
+
+    @Test
+    public void nowrap() throws Exception{
+        byte[] input = raw(TEXT_ZLIB);
+        Inflater inflater = new Inflater(true);
+        assertArrayEquals(text, inflate(inflater, input, input.length, 65536));
+        assertEquals(input.length, inflater.getBytesRead());
+        inflater.end();
+        // without nowrap the raw data isn't a valid zlib header
+        inflater = new Inflater();
+        inflater.setInput(input);
+        try{
+            inflater.inflate(new byte[100]);
+            fail("DataFormatException expected");
+        }catch(DataFormatException ex){
+            // expected
+        }
+        inflater.end();
+    }
+
+
+    /**
+     * Passes the input a few bytes at a time and takes the output in small pieces, so every decoding state has to
+     * wait for more input or output space at some point.
+     */
+    @Test
+    public void smallSteps() throws Exception{
+        for(int inputStep = 1; inputStep <= 13; inputStep += 3){
+            for(int outputSize : new int[]{1, 7, 300}){
+                Inflater inflater = new Inflater();
+                assertArrayEquals(text, inflate(inflater, TEXT_ZLIB, inputStep, outputSize));
+                assertEquals(TEXT_ZLIB.length, inflater.getBytesRead());
+                inflater.end();
+                inflater = new Inflater(true);
+                assertArrayEquals(repeats, inflate(inflater, REPEATS_FIXED_RAW, inputStep, outputSize));
+                assertEquals(REPEATS_FIXED_RAW.length, inflater.getBytesRead());
+                inflater.end();
+            }
+        }
+    }
+
+
+    /**
+     * The bytes after the end of the stream are not consumed, however far the decoder reads ahead.
+     */
+    @Test
+    public void remainingAfterFinished() throws Exception{
+        byte[] trailer = "trailing bytes".getBytes("US-ASCII");
+        for(boolean nowrap : new boolean[]{false, true}){
+            byte[] stream = nowrap ? raw(TEXT_ZLIB) : TEXT_ZLIB;
+            byte[] input = concat(stream, trailer);
+            for(int inputStep : new int[]{1, 5, input.length}){
+                Inflater inflater = new Inflater(nowrap);
+                assertArrayEquals(text, inflate(inflater, input, inputStep, 65536));
+                assertTrue(inflater.finished());
+                // the input ends with the piece that holds the last byte of the stream
+                long end = Math.min(input.length, (stream.length + inputStep - 1) / inputStep * inputStep);
+                assertEquals(end - stream.length, inflater.getRemaining());
+                assertEquals(stream.length, inflater.getBytesRead());
+                assertEquals(text.length, inflater.getBytesWritten());
+                inflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.util.zip;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.*;
+
+import junit.ikvm.Internals;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests ikvm.io.ParallelDeflaterOutputStream, which only exists in IKVM. On other VMs the tests are skipped.
+ */
+public class ParallelDeflaterOutputStreamTest{
+
+    private static byte[] data;
+
+    private static ForkJoinPool pool;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        // text like data with some incompressible runs
+        Random random = new Random(42);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while(bytes.size() < 500000){
+            if(random.nextInt(50) == 0){
+                byte[] noise = new byte[random.nextInt(5000)];
+                random.nextBytes(noise);
+                bytes.write(noise);
+            }else{
+                bytes.write(("token" + random.nextInt(2000) + (random.nextInt(10) == 0 ? '\n' : ' ')).getBytes("US-ASCII"));
+            }
+        }
+        data = bytes.toByteArray();
+        pool = new ForkJoinPool(4);
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception{
+        pool.shutdown();
+    }
+
+
+    private static OutputStream open(OutputStream out, boolean gzip, int level, int blockSize) throws Exception{
+        Class<?> type = Internals.type("ikvm.io.ParallelDeflaterOutputStream");
+        return (OutputStream)Internals.newInstance(type, out, gzip, level, blockSize, pool);
+    }
+
+
+    private static byte[] readAll(InputStream in) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while((count = in.read(buffer)) > 0){
+            out.write(buffer, 0, count);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+
+    private static InputStream inflaterStream(boolean gzip, byte[] compressed) throws IOException{
+        InputStream in = new ByteArrayInputStream(compressed);
+        return gzip ? new GZIPInputStream(in) : new InflaterInputStream(in);
+    }
+
+
+    /**
+     * Writes the data in pieces of random size, with single bytes and flush() calls in between, and reads it back
+     * with the JDK's inflater streams.
+     */
+    @Test
+    public void roundTrip() throws Exception{
+        for(boolean gzip : new boolean[]{true, false}){
+            for(int level : new int[]{Deflater.DEFAULT_COMPRESSION, 0, 1, 6, 9}){
+                for(int blockSize : new int[]{1000, 65536, 128 * 1024}){
+                    String msg = (gzip ? "gzip" : "zlib") + " level " + level + " block size " + blockSize;
+                    Random random = new Random(blockSize + level);
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    OutputStream out = open(bytes, gzip, level, blockSize);
+                    int offset = 0;
+                    while(offset < data.length){
+                        int choice = random.nextInt(20);
+                        if(choice == 0){
+                            out.flush();
+                        }else if(choice == 1){
+                            out.write(data[offset++]);
+                        }else{
+                            int length = Math.min(random.nextInt(3 * blockSize), data.length - offset);
+                            out.write(data, offset, length);
+                            offset += length;
+                        }
+                    }
+                    out.close();
+                    assertArrayEquals(msg, data, readAll(inflaterStream(gzip, bytes.toByteArray())));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void empty() throws Exception{
+        for(boolean gzip : new boolean[]{true, false}){
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            open(bytes, gzip, 6, 1000).close();
+            assertEquals(0, readAll(inflaterStream(gzip, bytes.toByteArray())).length);
+        }
+    }
+
+
+    /**
+     * After flush() everything written so far can be inflated.
+     */
+    @Test
+    public void flush() throws Exception{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = open(bytes, false, 6, 4096);
+        Inflater inflater = new Inflater();
+        byte[] inflated = new byte[data.length];
+        int written = 0;
+        int inflatedCount = 0;
+        int consumed = 0;
+        for(int length : new int[]{1, 100, 4096, 4097, 50000, 0, 3}){
+            out.write(data, written, length);
+            written += length;
+            out.flush();
+            byte[] compressed = bytes.toByteArray();
+            inflater.setInput(compressed, consumed, compressed.length - consumed);
+            consumed = compressed.length;
+            int n;
+            while((n = inflater.inflate(inflated, inflatedCount, inflated.length - inflatedCount)) > 0){
+                inflatedCount += n;
+            }
+            assertEquals(written, inflatedCount);
+        }
+        out.close();
+        inflater.end();
+        assertArrayEquals(Arrays.copyOf(data, written), Arrays.copyOf(inflated, written));
+    }
+
+
+    @Test
+    public void writeAfterClose() throws Exception{
+        OutputStream out = open(new ByteArrayOutputStream(), true, 6, 1000);
+        out.close();
+        try{
+            out.write(1);
+            fail("IOException expected");
+        }catch(IOException ex){
+            // expected
+        }
+    }
+}
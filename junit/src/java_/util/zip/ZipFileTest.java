@@ -0,0 +1,289 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+*/
+package java_.util.zip;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import junit.ikvm.ReferenceData;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class ZipFileTest{
+
+    private static ReferenceData reference;
+
+    private static File file;
+
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception{
+        reference = new ReferenceData();
+        file = File.createTempFile("ZipFileTest", ".zip");
+        file.deleteOnExit();
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try{
+            Random random = new Random(42);
+            for(int i = 0; i < 2000; i++){
+                String name = i % 10 == 0 ? "dir" + i + "/" : (i % 3 == 0 ? "p\u00e4ckage/" : "package/") + "Class" + i + ".class";
+                ZipEntry entry = new ZipEntry(name);
+                if(i % 7 == 0){
+                    entry.setComment("comment " + i);
+                }
+                zip.putNextEntry(entry);
+                if(!entry.isDirectory()){
+                    byte[] data = new byte[random.nextInt(4000)];
+                    random.nextBytes(data);
+                    zip.write(data);
+                }
+                zip.closeEntry();
+            }
+        }finally{
+            zip.close();
+        }
+    }
+
+
+    @AfterClass
+    public static void tearDownAfterClass() throws Exception{
+        if(reference != null){
+            reference.save();
+        }
+        file.delete();
+    }
+
+
+    @Test
+    public void entries() throws Exception{
+        ZipFile zip = new ZipFile(file);
+        try{
+            reference.assertEquals("size", zip.size());
+            StringBuilder names = new StringBuilder();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            int count = 0;
+            while(entries.hasMoreElements()){
+                ZipEntry entry = entries.nextElement();
+                names.append(entry.getName()).append(' ').append(entry.getSize()).append(' ').append(entry.getCrc()).append(' ').append(entry.getComment()).append('\n');
+                count++;
+            }
+            assertEquals(zip.size(), count);
+            reference.assertEquals("entries", names.toString());
+            assertEquals(zip.size(), zip.stream().count());
+        }finally{
+            zip.close();
+        }
+    }
+
+
+    @Test
+    public void getEntry() throws Exception{
+        ZipFile zip = new ZipFile(file);
+        try{
+            for(String name : new String[]{"package/Class1.class", "p\u00e4ckage/Class3.class", "dir10/", "dir10", "package/Class3.class", "missing", ""}){
+                ZipEntry entry = zip.getEntry(name);
+                reference.assertEquals("getEntry " + name, entry == null ? null : entry.getName());
+            }
+        }finally{
+            zip.close();
+        }
+    }
+
+
+    @Test
+    public void getInputStream() throws Exception{
+        ZipFile zip = new ZipFile(file);
+        try{
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[1000];
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements()){
+                ZipEntry entry = entries.nextElement();
+                InputStream in = zip.getInputStream(entry);
+                int count;
+                while((count = in.read(buffer)) > 0){
+                    crc.update(buffer, 0, count);
+                }
+                in.close();
+            }
+            reference.assertEquals("getInputStream", crc.getValue());
+        }finally{
+            zip.close();
+        }
+    }
+
+
+    /**
+     * An entry whose deflate stream holds more data than the size in the central directory must not be cut off
+     * silently.
+     */
+    @Test
+    public void entryLongerThanSize() throws Exception{
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        out.putNextEntry(new ZipEntry("long"));
+        byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+        out.write(data);
+        out.closeEntry();
+        out.close();
+        byte[] zipData = bytes.toByteArray();
+        // patch the uncompressed size of the central directory record to 500
+        for(int i = zipData.length - 4; i >= 0; i--){
+            if(zipData[i] == 'P' && zipData[i + 1] == 'K' && zipData[i + 2] == 1 && zipData[i + 3] == 2){
+                zipData[i + 24] = (byte)500;
+                zipData[i + 25] = (byte)(500 >> 8);
+                break;
+            }
+        }
+        File longFile = File.createTempFile("ZipFileTest", ".zip");
+        try{
+            FileOutputStream fos = new FileOutputStream(longFile);
+            fos.write(zipData);
+            fos.close();
+            ZipFile zip = new ZipFile(longFile);
+            try{
+                InputStream in = zip.getInputStream(zip.getEntry("long"));
+                ByteArrayOutputStream read = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int count;
+                while((count = in.read(buffer)) > 0){
+                    read.write(buffer, 0, count);
+                }
+                in.close();
+                assertArrayEquals(data, read.toByteArray());
+            }catch(ZipException ex){
+                // rejecting the entry is fine too
+            }finally{
+                zip.close();
+            }
+        }finally{
+            longFile.delete();
+        }
+    }
+
+
+    @Test
+    public void concurrentInputStreams() throws Exception{
+        final ZipFile zip = new ZipFile(file);
+        try{
+            final List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            final long[] expected = new long[entries.size()];
+            for(int i = 0; i < expected.length; i++){
+                expected[i] = checksum(zip, entries.get(i));
+            }
+            final Throwable[] failure = new Throwable[1];
+            Thread[] threads = new Thread[8];
+            for(int t = 0; t < threads.length; t++){
+                final int offset = t;
+                threads[t] = new Thread(){
+                    public void run(){
+                        try{
+                            for(int round = 0; round < 10; round++){
+                                for(int i = 0; i < expected.length; i++){
+                                    int index = (i + offset * 97) % expected.length;
+                                    assertEquals(expected[index], checksum(zip, entries.get(index)));
+                                }
+                            }
+                        }catch(Throwable th){
+                            synchronized(failure){
+                                failure[0] = th;
+                            }
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for(Thread thread : threads){
+                thread.join();
+            }
+            if(failure[0] != null){
+                throw new AssertionError(failure[0]);
+            }
+        }finally{
+            zip.close();
+        }
+    }
+
+
+    private static long checksum(ZipFile zip, ZipEntry entry) throws IOException{
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[1000];
+        InputStream in = zip.getInputStream(entry);
+        try{
+            int count;
+            while((count = in.read(buffer)) > 0){
+                crc.update(buffer, 0, count);
+            }
+        }finally{
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void closed() throws Exception{
+        ZipFile zip = new ZipFile(file);
+        zip.close();
+        zip.getEntry("package/Class1.class");
+    }
+
+
+    /**
+     * Lookups that race with close() must fail with IllegalStateException, not NullPointerException.
+     */
+    @Test
+    public void closeWhileReading() throws Exception{
+        for(int round = 0; round < 100; round++){
+            final ZipFile zip = new ZipFile(file);
+            final Throwable[] failure = new Throwable[1];
+            Thread reader = new Thread(){
+                public void run(){
+                    try{
+                        for(int i = 0;; i++){
+                            zip.getEntry("package/Class" + (i % 2000) + ".class");
+                            zip.size();
+                            for(Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();){
+                                e.nextElement();
+                            }
+                        }
+                    }catch(IllegalStateException ex){
+                        // expected once the file is closed
+                    }catch(Throwable th){
+                        failure[0] = th;
+                    }
+                }
+            };
+            reader.start();
+            Thread.sleep(round % 5);
+            zip.close();
+            reader.join();
+            if(failure[0] != null){
+                throw new AssertionError(failure[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+  Copyright (C) 2026 Jeroen Frijters
+
+  This software is provided 'as-is', without any express or implied
+  warranty.  In no event will the authors be held liable for any damages
+  arising from the use of this software.
+
+  Permission is granted to anyone to use this software for any purpose,
+  including commercial applications, and to alter it and redistribute it
+  freely, subject to the following restrictions:
+
+  1. The origin of this software must not be misrepresented; you must not
+     claim that you wrote the original software. If you use this software
+     in a product, an acknowledgment in the product documentation would be
+     appreciated but is not required.
+  2. Altered source versions must be plainly marked as such, and must not be
+     misrepresented as being the original software.
+  3. This notice may not be removed or altered from any source distribution.
+
+  Jeroen Frijters
+  jeroen@frijters.net
+  
+ */
+package junit.ikvm;
+
+import java.lang.reflect.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assume;
+
+/**
+ * Reflective access to the classes and members that only exist in IKVM, for the tests of IKVM's own additions. The
+ * tests are compiled with a Sun Java, so they can't call them directly. If a class or member doesn't exist, which is
+ * normal on other VMs, the calling test is skipped. Non public members are made accessible, exceptions thrown by the
+ * called code are rethrown as they are.
+ */
+public class Internals{
+
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<Class<?>, Class<?>>();
+    static{
+        WRAPPERS.put(boolean.class, Boolean.class);
+        WRAPPERS.put(byte.class, Byte.class);
+        WRAPPERS.put(char.class, Character.class);
+        WRAPPERS.put(short.class, Short.class);
+        WRAPPERS.put(int.class, Integer.class);
+        WRAPPERS.put(long.class, Long.class);
+        WRAPPERS.put(float.class, Float.class);
+        WRAPPERS.put(double.class, Double.class);
+    }
+
+
+    /**
+     * Returns the class with the given name, or skips the test if it doesn't exist.
+     */
+    public static Class<?> type(String name){
+        try{
+            return Class.forName(name);
+        }catch(ClassNotFoundException ex){
+            Assume.assumeTrue(false);
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the method with the given name and parameter types, declared by the type or one of its super classes,
+     * or skips the test if there is none.
+     */
+    public static Method method(Class<?> type, String name, Class<?>... parameterTypes){
+        for(Class<?> c = type; c != null; c = c.getSuperclass()){
+            try{
+                Method method = c.getDeclaredMethod(name, parameterTypes);
+                method.setAccessible(true);
+                return method;
+            }catch(NoSuchMethodException ex){
+                // try the super class
+            }
+        }
+        Assume.assumeTrue(false);
+        return null;
+    }
+
+
+    /**
+     * Calls the method, target is null for static methods.
+     */
+    public static Object call(Method method, Object target, Object... args) throws Exception{
+        try{
+            return method.invoke(target, args);
+        }catch(InvocationTargetException ex){
+            throw unwrap(ex);
+        }
+    }
+
+
+    /**
+     * Calls the method with the given name whose parameters take the arguments, target is the class for static
+     * methods. Skips the test if there is no such method.
+     */
+    public static Object invoke(Object target, String name, Object... args) throws Exception{
+        boolean isStatic = target instanceof Class;
+        for(Class<?> c = isStatic ? (Class<?>)target : target.getClass(); c != null; c = c.getSuperclass()){
+            for(Method method : c.getDeclaredMethods()){
+                if(method.getName().equals(name) && Modifier.isStatic(method.getModifiers()) == isStatic
+                        && accepts(method.getParameterTypes(), args)){
+                    method.setAccessible(true);
+                    return call(method, isStatic ? null : target, args);
+                }
+            }
+        }
+        Assume.assumeTrue(false);
+        return null;
+    }
+
+
+    /**
+     * Creates an instance with the constructor whose parameters take the arguments. Skips the test if there is no
+     * such constructor.
+     */
+    public static Object newInstance(Class<?> type, Object... args) throws Exception{
+        for(Constructor<?> constructor : type.getDeclaredConstructors()){
+            if(accepts(constructor.getParameterTypes(), args)){
+                constructor.setAccessible(true);
+                try{
+                    return constructor.newInstance(args);
+                }catch(InvocationTargetException ex){
+                    throw unwrap(ex);
+                }
+            }
+        }
+        Assume.assumeTrue(false);
+        return null;
+    }
+
+
+    /**
+     * Returns the value of the field with the given name, target is the class for static fields. Skips the test if
+     * there is no such field.
+     */
+    public static Object get(Object target, String name) throws Exception{
+        boolean isStatic = target instanceof Class;
+        for(Class<?> c = isStatic ? (Class<?>)target : target.getClass(); c != null; c = c.getSuperclass()){
+            try{
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(isStatic ? null : target);
+            }catch(NoSuchFieldException ex){
+                // try the super class
+            }
+        }
+        Assume.assumeTrue(false);
+        return null;
+    }
+
+
+    private static boolean accepts(Class<?>[] types, Object[] args){
+        if(types.length != args.length){
+            return false;
+        }
+        for(int i = 0; i < types.length; i++){
+            if(args[i] == null){
+                if(types[i].isPrimitive()){
+                    return false;
+                }
+            }else if(!(types[i].isPrimitive() ? WRAPPERS.get(types[i]) : types[i]).isInstance(args[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static Exception unwrap(InvocationTargetException ex){
+        Throwable cause = ex.getCause();
+        if(cause instanceof Error){
+            throw (Error)cause;
+        }
+        return cause instanceof Exception ? (Exception)cause : ex;
+    }
+}